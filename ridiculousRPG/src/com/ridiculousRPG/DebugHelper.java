@@ -16,15 +16,16 @@
 
 package com.ridiculousRPG;
 
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.BitmapFont.TextBounds;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer.ShapeType;
 import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.utils.Array;
@@ -35,6 +36,11 @@ import com.ridiculousRPG.service.Drawable;
 import com.ridiculousRPG.service.GameService;
 import com.ridiculousRPG.ui.DisplayPlainTextService;
 import com.ridiculousRPG.ui.DisplayPlainTextService.Alignment;
+import com.ridiculousRPG.util.FrameProfiler;
+import com.ridiculousRPG.util.LineMesh;
+import com.ridiculousRPG.util.RenderPassScheduler;
+import com.ridiculousRPG.util.FrameProfiler.Section;
+import com.ridiculousRPG.util.ScriptMetrics;
 
 /**
  * This class offers some debug functions.
@@ -42,11 +48,24 @@ import com.ridiculousRPG.ui.DisplayPlainTextService.Alignment;
  * @author Alexander Baumgartner
  */
 public final class DebugHelper {
-	private static ShapeRenderer debugRenderer;
+	// streams the debug rectangles (only used by the main thread)
+	private static LineMesh debugMesh;
+	private static final Matrix4 debugTransform = new Matrix4();
+	private static final float colorDrawBoundDebug = new Color(.7f, .7f, .7f,
+			1f).toFloatBits();
 	private static DisplayPlainTextService textMapDebugger;
 	private static DisplayPlainTextService textViewDebugger;
 	private static final float colorServiceDebug = new Color(1f, 1f, 0f, .5f)
 			.toFloatBits();
+	private static final float colorProfilerDebug = new Color(0f, 1f, 0f, .7f)
+			.toFloatBits();
+	private static final float colorMouseDebug = Color.MAGENTA.toFloatBits();
+	private static final float colorViewportDebug = Color.CYAN.toFloatBits();
+	// reused for all debug texts (only used by the main thread)
+	private static final StringBuilder text = new StringBuilder(1024);
+	// reused by drawProfiler every frame
+	private static final long[] profilerBuffer = new long[FrameProfiler.CAPACITY];
+	private static final List<Section> profilerSections = new ArrayList<Section>();
 
 	private DebugHelper() {
 	} // static container
@@ -55,19 +74,21 @@ public final class DebugHelper {
 			Camera camera, Array<Computable> computables,
 			Array<Drawable> drawables, GameService holdsAttention) {
 
-		String text = "";
+		text.setLength(0);
 		if (holdsAttention != null) {
-			text += holdsAttention.getClass().getName()
-					+ " holds attention!\n\n";
+			text.append(holdsAttention.getClass().getName()).append(
+					" holds attention!\n\n");
 		}
 
-		text += "Execution order of Computable services";
-		for (Computable c : computables) {
-			text += "\n        " + c.getClass().getName();
+		text.append("Execution order of Computable services");
+		for (int i = 0; i < computables.size; i++) {
+			text.append("\n        ").append(
+					computables.get(i).getClass().getName());
 		}
-		text += "\n\nExecution order of Drawable services";
-		for (Drawable d : drawables) {
-			text += "\n        " + d.getClass().getName();
+		text.append("\n\nExecution order of Drawable services");
+		for (int i = 0; i < drawables.size; i++) {
+			text.append("\n        ").append(
+					drawables.get(i).getClass().getName());
 		}
 
 		getTextViewDebugger().addMessage(text, colorServiceDebug,
@@ -75,98 +96,191 @@ public final class DebugHelper {
 				GameBase.$().getScreen().width, true);
 	}
 
+	/**
+	 * Displays the rolling p50/p95/p99 timings (in milliseconds) of all
+	 * profiled sections.
+	 */
+	public static void drawProfiler(FrameProfiler profiler) {
+		text.setLength(0);
+		text.append("Profiler (p50 / p95 / p99 ms)");
+		long[] v = profilerBuffer;
+		List<Section> sections = profilerSections;
+		sections.clear();
+		profiler.getSections(sections);
+		for (int i = 0, n = sections.size(); i < n; i++) {
+			Section s = sections.get(i);
+			int len = s.snapshot(v);
+			text.append("\n").append(s.getName()).append(": ");
+			appendMillis(text, FrameProfiler.percentile(v, len, .5)).append(
+					" / ");
+			appendMillis(text, FrameProfiler.percentile(v, len, .95)).append(
+					" / ");
+			appendMillis(text, FrameProfiler.percentile(v, len, .99));
+		}
+		getTextViewDebugger().addMessage(text, colorProfilerDebug,
+				Alignment.LEFT, Alignment.BOTTOM, 5f, 0f, true);
+	}
+
+	/**
+	 * Displays the batch cycles, projection switches and draw calls of the
+	 * last frame.
+	 */
+	public static void drawRenderPasses(RenderPassScheduler passes) {
+		getTextViewDebugger().addMessage(passes.toString(),
+				colorProfilerDebug, Alignment.CENTER, Alignment.BOTTOM, 0f,
+				GameBase.$().getScreen().width, true);
+	}
+
+	/**
+	 * Displays the script handlers with the highest cumulative execution
+	 * time.
+	 */
+	public static void drawScriptMetrics(ScriptMetrics metrics) {
+		text.setLength(0);
+		text.append("Script handlers (most expensive)\n");
+		metrics.appendReport(text, 8);
+		getTextViewDebugger().addMessage(text, colorProfilerDebug,
+				Alignment.RIGHT, Alignment.BOTTOM, 5f, 0f, true);
+	}
+
+	private static StringBuilder appendMillis(StringBuilder text, long nanos) {
+		long hundredth = nanos / 10000L;
+		text.append(hundredth / 100L).append('.');
+		if (hundredth % 100L < 10L)
+			text.append('0');
+		return text.append(hundredth % 100L);
+	}
+
 	public static void drawMousePosition(SpriteBatch spriteBatch, Camera camera) {
 		float x1 = Gdx.input.getX();
 		float y1 = GameBase.$().getScreen().height - Gdx.input.getY();
 
-		String text = "( " + (int) x1 + " / " + (int) y1 + " ) Screen\n";
+		text.setLength(0);
+		text.append("( ").append((int) x1).append(" / ").append((int) y1)
+				.append(" ) Screen\n");
 		float x2 = camera.position.x + x1 * camera.viewportWidth
 				/ GameBase.$().getScreen().width;
 		float y2 = camera.position.y + y1 * camera.viewportHeight
 				/ GameBase.$().getScreen().height;
-		text += "( " + (int) x2 + " / " + (int) y2 + " ) Camera\n";
+		text.append("( ").append((int) x2).append(" / ").append((int) y2)
+				.append(" ) Camera\n");
 		float x3 = GameBase.$().getPlane().width - x2;
 		float y3 = GameBase.$().getPlane().height - y2;
-		text += "( " + (int) x3 + " / " + (int) y3 + " ) Origin top right";
+		text.append("( ").append((int) x3).append(" / ").append((int) y3)
+				.append(" ) Origin top right");
 
-		TextBounds b = getTextViewDebugger().getFont().getMultiLineBounds(text);
+		BitmapFontCache msg = getTextViewDebugger().addMessage(text,
+				colorMouseDebug, 0f, 0f, 0f, true);
+		TextBounds b = msg.getBounds();
 		float x = Math.max(Math.min(x1 + 10, GameBase.$().getScreen().width
 				- b.width), 0f);
 		float y = Math.max(Math.min(y1, GameBase.$().getScreen().height),
 				b.height);
-
-		getTextViewDebugger().addMessage(text, Color.MAGENTA.toFloatBits(), x,
-				y, 0f, true);
+		msg.setPosition(x, y);
 	}
 
 	public static void drawViewportCorners(SpriteBatch spriteBatch,
 			Camera camera) {
 		float x = Math.max(0f, camera.position.x);
 		float y = Math.max(0f, camera.position.y);
-		String text = "( " + (int) x + " / " + (int) y + " )";
-		getTextMapDebugger().addMessage(text, Color.CYAN.toFloatBits(), x,
+		text.setLength(0);
+		text.append("( ").append((int) x).append(" / ").append((int) y)
+				.append(" )");
+		getTextMapDebugger().addMessage(text, colorViewportDebug, x,
 				y + getTextMapDebugger().getFont().getLineHeight(), 0f, true);
 
 		x += Math.min(camera.viewportWidth, GameBase.$().getPlane().width);
 		y += Math.min(camera.viewportHeight, GameBase.$().getPlane().height);
-		text = "( " + (int) x + " / " + (int) y + " )";
-		TextBounds b = getTextViewDebugger().getFont().getMultiLineBounds(text);
-		getTextMapDebugger().addMessage(text, Color.CYAN.toFloatBits(),
-				x - b.width, y, 0f, true);
+		text.setLength(0);
+		text.append("( ").append((int) x).append(" / ").append((int) y)
+				.append(" )");
+		BitmapFontCache msg = getTextMapDebugger().addMessage(text,
+				colorViewportDebug, 0f, 0f, 0f, true);
+		msg.setPosition(x - msg.getBounds().width, y);
 	}
 
+	/**
+	 * Draws the bounds of all events with one draw call. Only the events in
+	 * view are labeled with their names.<br>
+	 * Must be called without the sprite batch (see
+	 * {@link RenderPassScheduler#suspend()}).
+	 */
 	public static void debugEvents(List<EventObject> dynamicRegions) {
-		if (debugRenderer == null)
-			debugRenderer = new ShapeRenderer();
-		debugRenderer.setProjectionMatrix(GameBase.$().getCamera().projection);
-		debugRenderer.begin(ShapeType.Rectangle);
-		for (EventObject ev : dynamicRegions) {
-			if (ev.visible) {
-				debugRenderer.setColor(.7f, .7f, .7f, 1f);
-				debugRenderer.rect(ev.drawBound.x, ev.drawBound.y,
-						ev.drawBound.width, ev.drawBound.height);
-			}
-			debugRenderer.setColor(ev.blockingBehavior.color);
-			debugRenderer.rect(ev.getX(), ev.getY(),
-					Math.max(1, ev.getWidth()), Math.max(1, ev.getHeight()));
-			if (ev.name != null) {
-				getTextMapDebugger().addMessage(ev.name,
-						ev.blockingBehavior.color.toFloatBits(),
-						ev.drawBound.x + 2f,
-						ev.drawBound.y + ev.drawBound.height - 2, 0f, true);
+		Camera camera = GameBase.$().getCamera();
+		float camX1 = camera.position.x;
+		float camX2 = camera.position.x + camera.viewportWidth;
+		float camY1 = camera.position.y;
+		float camY2 = camera.position.y + camera.viewportHeight;
+		LineMesh mesh = getDebugMesh();
+		mesh.clear();
+		for (int i = 0, len = dynamicRegions.size(); i < len; i++) {
+			EventObject ev = dynamicRegions.get(i);
+			Rectangle2D.Float b = ev.drawBound;
+			if (ev.visible)
+				mesh.rect(b.x, b.y, b.width, b.height, colorDrawBoundDebug);
+			float colorBits = ev.blockingBehavior.color.toFloatBits();
+			mesh.rect(ev.getX(), ev.getY(), Math.max(1, ev.getWidth()), Math
+					.max(1, ev.getHeight()), colorBits);
+			if (ev.name != null && b.x < camX2 && b.y < camY2
+					&& b.x + b.width > camX1 && b.y + b.height > camY1) {
+				getTextMapDebugger().addMessage(ev.name, colorBits, b.x + 2f,
+						b.y + b.height - 2, 0f, true);
 			}
 		}
-		debugRenderer.end();
+		mesh.upload();
+		mesh.render(camera.projection);
 	}
 
+	/**
+	 * Draws the rectangles with one draw call.<br>
+	 * Must be called without the sprite batch (see
+	 * {@link RenderPassScheduler#suspend()}).
+	 */
 	public static void debugRectangle(Color color, Matrix4 transform,
 			Rectangle... rects) {
-		if (debugRenderer == null)
-			debugRenderer = new ShapeRenderer();
-		debugRenderer.setProjectionMatrix(GameBase.$().getCamera().projection);
-		if (transform != null)
-			debugRenderer.setTransformMatrix(transform);
-		debugRenderer.begin(ShapeType.Rectangle);
-		debugRenderer.setColor(color);
+		LineMesh mesh = getDebugMesh();
+		mesh.clear();
+		float colorBits = color.toFloatBits();
 		for (Rectangle r : rects) {
-			debugRenderer.rect(r.x, r.y, r.width, r.height);
+			mesh.rect(r.x, r.y, r.width, r.height, colorBits);
 		}
+		mesh.upload();
+		Matrix4 projection = GameBase.$().getCamera().projection;
 		if (transform != null)
-			debugRenderer.identity();
-		debugRenderer.end();
+			projection = debugTransform.set(projection).mul(transform);
+		mesh.render(projection);
+	}
+
+	private static LineMesh getDebugMesh() {
+		if (debugMesh == null)
+			debugMesh = new LineMesh(false, 256);
+		return debugMesh;
 	}
 
+	/**
+	 * Labels the nodes of all polygons in view with their indices.
+	 */
 	public static void debugPolygons(List<PolygonObject> polyList) {
+		Camera camera = GameBase.$().getCamera();
+		float camX1 = camera.position.x;
+		float camX2 = camera.position.x + camera.viewportWidth;
+		float camY1 = camera.position.y;
+		float camY2 = camera.position.y + camera.viewportHeight;
 		for (PolygonObject poly : polyList) {
-			for (int i = poly.vertexX.length - 1; i >= 0; i--) {
-				float x = poly.vertexX[i];
+			if (poly.minX > camX2 || poly.minY > camY2 || poly.maxX < camX1
+					|| poly.maxY < camY1)
+				continue;
+			for (int i = poly.getVertexCount() - 1; i >= 0; i--) {
+				float x = poly.getX(i);
 				Color c = poly.getColor();
 				if (c == null)
 					c = poly.blockingBehavior.color;
 				if (poly.loop && i == 0)
 					x -= 20;
-				getTextMapDebugger().addMessage("#" + i, c.toFloatBits(), x,
-						poly.vertexY[i], 0f, true);
+				text.setLength(0);
+				text.append('#').append(i);
+				getTextMapDebugger().addMessage(text, c.toFloatBits(), x,
+						poly.getY(i), 0f, true);
 			}
 		}
 	}
@@ -52,7 +52,6 @@ import com.badlogic.gdx.graphics.Pixmap.Blending;
 import com.badlogic.gdx.graphics.Pixmap.Format;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.math.Rectangle;
-import com.badlogic.gdx.utils.Array;
 import com.ridiculousRPG.camera.CameraSimpleOrtho2D;
 import com.ridiculousRPG.camera.CameraTrackMovableService;
 import com.ridiculousRPG.event.EventObject;
@@ -66,9 +65,12 @@ import com.ridiculousRPG.service.GestureDetectorService;
 import com.ridiculousRPG.ui.DisplayErrorService;
 import com.ridiculousRPG.ui.MenuService;
 import com.ridiculousRPG.util.ColorSerializable;
+import com.ridiculousRPG.util.DistanceFieldFont;
 import com.ridiculousRPG.util.ExecInMainThread;
 import com.ridiculousRPG.util.ExecWithGlContext;
 import com.ridiculousRPG.util.ObjectState;
+import com.ridiculousRPG.util.ParticleEffectLoader;
+import com.ridiculousRPG.util.ServiceRegistry.ServiceList;
 import com.ridiculousRPG.util.Speed;
 import com.ridiculousRPG.util.Zipper;
 
@@ -122,6 +124,13 @@ public abstract class GameBase extends GameServiceDefaultImpl implements
 		camera = new CameraSimpleOrtho2D();
 		globalState = new ObjectState();
 		serviceProvider = new GameServiceProvider();
+		serviceProvider.getSimulationTimestep().setTickRate(
+				options.simulationTickRate);
+		ParticleEffectLoader.setParticleBudget(options.particleBudget);
+		serviceProvider.getProfiler().setEnabled(options.profile);
+		serviceProvider.getScriptMetrics().setEnabled(options.scriptMetrics);
+		serviceProvider.getScriptMetrics().setSlowThreshold(
+				options.scriptSlowThreshold);
 		options.width = Gdx.graphics.getWidth();
 		options.height = Gdx.graphics.getHeight();
 		plane.width = camera.viewportWidth = screen.width = Gdx.graphics
@@ -145,6 +154,7 @@ public abstract class GameBase extends GameServiceDefaultImpl implements
 		if (!isInitialized())
 			instance = this;
 
+		openScriptBundle();
 		try {
 			scriptFactory.evalAllScripts(getSharedEngine(),
 					GameBase.$options().initScript, false);
@@ -156,6 +166,29 @@ public abstract class GameBase extends GameServiceDefaultImpl implements
 		// restore last display mode and language
 		loadUserContext();
 		camera.update();
+		if (options.pipelinedSimulation)
+			serviceProvider.startSimulationThread();
+	}
+
+	private void openScriptBundle() {
+		if (options.scriptBundle == null)
+			return;
+		FileHandle bundleFile = Gdx.files.internal(options.scriptBundle);
+		if (!bundleFile.exists())
+			return;
+		try {
+			File file = bundleFile.file();
+			// internal files may not be on the file system (Android assets),
+			// those can't be memory-mapped
+			ScriptBundle bundle = file.isFile() ? ScriptBundle.open(file)
+					: ScriptBundle.open(bundleFile.read());
+			bundle.setCheckModified(options.debug);
+			scriptFactory.setBundle(bundle);
+		} catch (IOException e) {
+			GameBase.$error("GameBase.openScriptBundle",
+					"Could not open script bundle " + bundleFile
+							+ " - reading the script files", e);
+		}
 	}
 
 	public synchronized static void $error(String tag, String message,
@@ -307,9 +340,9 @@ public abstract class GameBase extends GameServiceDefaultImpl implements
 				longPressTime += Gdx.graphics.getDeltaTime();
 				if (!longPress && longPressTime > .3f) {
 					longPress = true;
-					Array<GestureDetectorService> services = serviceProvider
-							.getServices(GestureDetectorService.class);
-					for (int i = 0; i < services.size; i++) {
+					ServiceList<GestureDetectorService> services = serviceProvider
+							.getServiceList(GestureDetectorService.class);
+					for (int i = 0; i < services.size(); i++) {
 						services.get(i).reset();
 					}
 				}
@@ -374,10 +407,25 @@ public abstract class GameBase extends GameServiceDefaultImpl implements
 	 * @throws ScriptException
 	 */
 	public Object eval(String script) throws ScriptException {
-		ScriptEngine sharedEngine = getSharedEngine();
-		Object result = sharedEngine
-				.eval(loadWithLogInfo(script, sharedEngine));
-		sharedEngine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
+		return eval(getSharedEngine(), script);
+	}
+
+	/**
+	 * Evaluates the given script term with the given engine and returns the
+	 * result.
+	 * 
+	 * @param engine
+	 *            The engine to use (see {@link ScriptFactory#obtainEngine()})
+	 * @param script
+	 *            The script to evaluate (Either the path to the script or the
+	 *            script itself)
+	 * @return The result from this evaluation.
+	 * @throws ScriptException
+	 */
+	public Object eval(ScriptEngine engine, String script)
+			throws ScriptException {
+		Object result = engine.eval(loadWithLogInfo(script, engine));
+		engine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
 		return result;
 	}
 
@@ -412,16 +460,38 @@ public abstract class GameBase extends GameServiceDefaultImpl implements
 	 */
 	public Object invokeFunction(String script, String fncName, Object... args)
 			throws ScriptException, NoSuchMethodException {
-		ScriptEngine sharedEngine = getSharedEngine();
+		return invokeFunction(getSharedEngine(), script, fncName, args);
+	}
+
+	/**
+	 * Invokes the function which is defined inside the given script with the
+	 * given engine, using the given arguments.
+	 * 
+	 * @param engine
+	 *            The engine to use (see {@link ScriptFactory#obtainEngine()})
+	 * @param script
+	 *            The script containing the function to invoke (Either the path
+	 *            to the script or the script itself)
+	 * @param fncName
+	 *            The function to invoke
+	 * @param args
+	 *            Arguments for the function
+	 * @return The result which was returned by the invoked function
+	 * @throws ScriptException
+	 * @throws NoSuchMethodException
+	 */
+	public Object invokeFunction(ScriptEngine engine, String script,
+			String fncName, Object... args) throws ScriptException,
+			NoSuchMethodException {
 		try {
-			if (sharedEngine instanceof Invocable) {
-				sharedEngine.eval(loadWithLogInfo(script, sharedEngine));
-				return ((Invocable) sharedEngine).invokeFunction(fncName, args);
+			if (engine instanceof Invocable) {
+				engine.eval(loadWithLogInfo(script, engine));
+				return ((Invocable) engine).invokeFunction(fncName, args);
 			} else {
 				throw new ScriptException("ScriptEngine not Invocable!");
 			}
 		} finally {
-			sharedEngine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
+			engine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
 		}
 	}
 
@@ -686,14 +756,28 @@ public abstract class GameBase extends GameServiceDefaultImpl implements
 			terminating = true;
 			if (fullscreen)
 				toggleFullscreen();
+			if (options.profile && options.profileExport != null)
+				exportProfile();
 			serviceProvider.dispose();
 			if (spriteBatch != null)
 				spriteBatch.dispose();
+			ParticleEffectLoader.clearCache();
+			DistanceFieldFont.disposeShared();
 			clearTmpFiles();
 		} catch (Exception ignored) {
 		}
 	}
 
+	private void exportProfile() {
+		try {
+			serviceProvider.getProfiler().export(
+					Gdx.files.external(options.profileExport));
+		} catch (Exception e) {
+			$error("GameBase.exportProfile", "Could not export the profile",
+					e);
+		}
+	}
+
 	/**
 	 * Exits the running game
 	 */
@@ -1023,6 +1107,7 @@ public abstract class GameBase extends GameServiceDefaultImpl implements
 					globalState.clear();
 					serviceProvider.clearServices();
 					scriptFactory.clearGlobalState();
+					scriptFactory.clearScriptCache();
 					DebugHelper.clear();
 
 					scriptFactory.evalAllScripts(sharedEngine, GameBase
@@ -1115,9 +1200,9 @@ public abstract class GameBase extends GameServiceDefaultImpl implements
 		if (s.getTrackObj() == null)
 			s = null;
 		if (s == null) {
-			Array<CameraTrackMovableService> s2 = serviceProvider
-					.getServices(CameraTrackMovableService.class);
-			for (int i = 0; s == null && i < s2.size; i++) {
+			ServiceList<CameraTrackMovableService> s2 = serviceProvider
+					.getServiceList(CameraTrackMovableService.class);
+			for (int i = 0; s == null && i < s2.size(); i++) {
 				s = s2.get(i);
 				if (s.getTrackObj() == null)
 					s = null;
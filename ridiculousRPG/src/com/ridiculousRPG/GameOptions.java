@@ -16,6 +16,8 @@
 
 package com.ridiculousRPG;
 
+import com.ridiculousRPG.util.ObjectState;
+
 /**
  * This class is used to define the initial values for your game.
  * 
@@ -37,6 +39,60 @@ public class GameOptions {
 	public boolean resize = false;
 	public boolean vSyncEnabled = false;
 	public boolean debug = false;
+	/**
+	 * Number of threads used to compute the moves of the events. 0 means one
+	 * thread per available processor.
+	 */
+	public int moveThreads = 0;
+	/**
+	 * Number of threads executing the posted scripts. Every thread has its own
+	 * script engine. Scripts of the same event are executed in order, scripts
+	 * of different events may run in parallel. Therefore scripts should modify
+	 * shared state only by the cas methods of {@link ObjectState}. 0 means one
+	 * thread per available processor.
+	 */
+	public int scriptThreads = 1;
+	/**
+	 * Simulation ticks per second for moving the events. 0 means one tick per
+	 * frame (variable timestep). With a fixed tick rate the drawing is
+	 * interpolated between the last two ticks.
+	 */
+	public int simulationTickRate = 0;
+	/**
+	 * Simulates the next frame on a separate thread while the main thread
+	 * draws a snapshot of the actual frame. Only services implementing
+	 * {@link com.ridiculousRPG.service.DoubleBuffered} (e.g. the map) are
+	 * simulated by the simulation thread. Useful on multicore machines with
+	 * simulation-heavy maps. The drawing lags one frame behind the
+	 * simulation.
+	 */
+	public boolean pipelinedSimulation = false;
+	/**
+	 * Maximum number of active particles of all event effects. 0 means no
+	 * limit. If the budget is exceeded, the emission is scaled down.
+	 */
+	public int particleBudget = 0;
+	/**
+	 * Records the time of every service and map phase per frame. The timings
+	 * are displayed in debug mode.
+	 */
+	public boolean profile = false;
+	/**
+	 * If profiling is enabled, the timings are exported to this (external)
+	 * file when the game ends. Use the extension .json for JSON, otherwise
+	 * CSV is written. null disables the export.
+	 */
+	public String profileExport = null;
+	/**
+	 * Records the invocations, time and exceptions of every script handler.
+	 * The most expensive handlers are displayed in debug mode.
+	 */
+	public boolean scriptMetrics = false;
+	/**
+	 * If script metrics are enabled, scripts running longer than this number
+	 * of milliseconds are logged. 0 disables the logging.
+	 */
+	public float scriptSlowThreshold = 0f;
 	public String savePath = "ridiculousRPG/";
 	public String i18nPath = "data/i18n";
 	public String i18nDefault = "en";
@@ -44,7 +100,26 @@ public class GameOptions {
 	public String scriptLanguage = "JavaScript";
 	public String[] scriptFileExtension = { ".js", ".jscript" };
 	public String initScript = "data/script/initGameEngine.js";
+	/**
+	 * All script files and templates are read from this bundle if it exists.
+	 * The bundle is created by {@link ScriptBundle#main(String[])}. null
+	 * disables the bundle.
+	 */
+	public String scriptBundle = "data/scripts.bundle";
 	public String messageCallBackScript = "data/script/engine/messaging/defaultMessageBox.js";
+	/**
+	 * Distance field font (.fnt file with one atlas page) which is used by
+	 * all text services instead of the default bitmap font. It's rendered
+	 * sharp at any scale. Generate it with
+	 * {@link com.ridiculousRPG.util.DistanceFieldFontGenerator}. Null means
+	 * the default bitmap font is used.
+	 */
+	public String distanceFieldFont = null;
+	/**
+	 * Text size of the distance field font (in pixels, multiplied by the
+	 * screen density)
+	 */
+	public float distanceFieldFontSize = 15f;
 	public String uiSkinNormalJson = "data/uiskin/skinNormal.json";
 	public String uiSkinNormalAtlas = "data/uiskin/skinNormal.atlas";
 	public String uiSkinFocusJson = "data/uiskin/skinFocus.json";
@@ -93,6 +93,52 @@ public class GameOptionsDefaultConfigReader {
 				options.height = Integer.parseInt(propTmp.trim());
 			}
 
+			propTmp = props.getProperty("MOVE_THREADS");
+			if (propTmp != null && propTmp.trim().length() > 0) {
+				options.moveThreads = Integer.parseInt(propTmp.trim());
+			}
+
+			propTmp = props.getProperty("SCRIPT_THREADS");
+			if (propTmp != null && propTmp.trim().length() > 0) {
+				options.scriptThreads = Integer.parseInt(propTmp.trim());
+			}
+
+			propTmp = props.getProperty("SIMULATION_TICK_RATE");
+			if (propTmp != null && propTmp.trim().length() > 0) {
+				options.simulationTickRate = Integer.parseInt(propTmp.trim());
+			}
+
+			propTmp = props.getProperty("PIPELINED_SIMULATION");
+			if (propTmp != null && propTmp.trim().length() > 0) {
+				options.pipelinedSimulation = "true".equalsIgnoreCase(propTmp
+						.trim());
+			}
+
+			propTmp = props.getProperty("PARTICLE_BUDGET");
+			if (propTmp != null && propTmp.trim().length() > 0) {
+				options.particleBudget = Integer.parseInt(propTmp.trim());
+			}
+
+			propTmp = props.getProperty("PROFILE");
+			if (propTmp != null && propTmp.trim().length() > 0) {
+				options.profile = "true".equalsIgnoreCase(propTmp.trim());
+			}
+
+			propTmp = props.getProperty("PROFILE_EXPORT");
+			if (propTmp != null && propTmp.trim().length() > 0) {
+				options.profileExport = propTmp.trim();
+			}
+
+			propTmp = props.getProperty("SCRIPT_METRICS");
+			if (propTmp != null && propTmp.trim().length() > 0) {
+				options.scriptMetrics = "true".equalsIgnoreCase(propTmp.trim());
+			}
+
+			propTmp = props.getProperty("SCRIPT_SLOW_THRESHOLD");
+			if (propTmp != null && propTmp.trim().length() > 0) {
+				options.scriptSlowThreshold = Float.parseFloat(propTmp.trim());
+			}
+
 			propTmp = props.getProperty("ENCODING");
 			if (propTmp != null && propTmp.trim().length() > 0) {
 				options.encoding = propTmp.trim();
@@ -153,11 +199,27 @@ public class GameOptionsDefaultConfigReader {
 				options.initScript = propTmp;
 			}
 
+			propTmp = props.getProperty("SCRIPT_BUNDLE");
+			if (propTmp != null) {
+				propTmp = propTmp.trim();
+				options.scriptBundle = propTmp.length() == 0 ? null : propTmp;
+			}
+
 			propTmp = props.getProperty("MESSAGE_CALLBACK_SCRIPT");
 			if (propTmp != null && propTmp.trim().length() > 0) {
 				options.messageCallBackScript = propTmp.trim();
 			}
 
+			propTmp = props.getProperty("DISTANCE_FIELD_FONT");
+			if (propTmp != null && propTmp.trim().length() > 0) {
+				options.distanceFieldFont = propTmp.trim();
+			}
+
+			propTmp = props.getProperty("DISTANCE_FIELD_FONT_SIZE");
+			if (propTmp != null && propTmp.trim().length() > 0) {
+				options.distanceFieldFontSize = Float.parseFloat(propTmp.trim());
+			}
+
 			propTmp = props.getProperty("UI_SKIN_NORMAL");
 			if (propTmp != null && propTmp.trim().length() > 0) {
 				options.uiSkinNormalJson = propTmp + ".json";
@@ -23,6 +23,7 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.InputMultiplexer;
@@ -30,33 +31,78 @@ import com.badlogic.gdx.InputProcessor;
 import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.GL10;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
 import com.ridiculousRPG.service.Computable;
+import com.ridiculousRPG.service.DoubleBuffered;
 import com.ridiculousRPG.service.Drawable;
 import com.ridiculousRPG.service.GameService;
 import com.ridiculousRPG.service.ResizeListener;
+import com.ridiculousRPG.service.Scheduled;
+import com.ridiculousRPG.util.FixedTimestep;
+import com.ridiculousRPG.util.FrameProfiler;
+import com.ridiculousRPG.util.ParticleEffectLoader;
+import com.ridiculousRPG.util.RenderPassScheduler;
+import com.ridiculousRPG.util.ScriptMetrics;
+import com.ridiculousRPG.util.ScriptScheduler;
+import com.ridiculousRPG.util.ServiceRegistry;
+import com.ridiculousRPG.util.ServiceScheduler;
+import com.ridiculousRPG.util.FrameProfiler.Section;
+import com.ridiculousRPG.util.ServiceRegistry.ServiceList;
+import com.ridiculousRPG.util.ServiceScheduler.Tick;
 
 /**
  * This class handles the GameServices. The services are executed in the same
  * order they are added. In the most cases you probably want to draw a map
  * before drawing something else.<br>
- * Every service of the same type(=class) can only be provided once!
+ * Every service of the same type(=class) can only be provided once!<br>
+ * The services which are computed and drawn in the current attention and
+ * freeze state are kept by a {@link ServiceScheduler}. A service which
+ * doesn't need to be computed every frame should implement
+ * {@link Scheduled}.
  * 
  * @author Alexander Baumgartner
  */
 public class GameServiceProvider {
-	private Map<String, GameService> services = new HashMap<String, GameService>();
+	private ServiceRegistry services = new ServiceRegistry();
 	private AtomicReference<GameService> hasAttention = new AtomicReference<GameService>();
 	private int attentionCount = 0;
-	private boolean freezeTheWorld = false;
-	private boolean clearTheScreen = false;
+	private volatile boolean freezeTheWorld = false;
+	private volatile boolean clearTheScreen = false;
 
 	private InputMultiplexer inputMultiplexer = new InputMultiplexer();
 	private InputMultiplexer attentionInputMultiplexer = new InputMultiplexer();
 	private Array<Computable> computables = new Array<Computable>();
 	private Array<Drawable> drawables = new Array<Drawable>();
 	private Array<ResizeListener> resizeListener = new Array<ResizeListener>();
+	// all services which have been frozen because the world is frozen
+	private Array<GameService> frozen = new Array<GameService>();
+	private ServiceScheduler scheduler = new ServiceScheduler(computables,
+			drawables, new ServiceScheduler.State() {
+				public boolean isFrozen() {
+					return freezeTheWorld;
+				}
+
+				public boolean isScreenCleared() {
+					return clearTheScreen;
+				}
+
+				public GameService getAttention() {
+					return hasAttention.get();
+				}
+
+				public boolean isPipelined() {
+					return simulation != null;
+				}
+			});
+	private FixedTimestep simulationTimestep = new FixedTimestep(0);
+	private FrameProfiler profiler = new FrameProfiler();
+	private Section computeAllSection = profiler.getSection("frame.compute");
+	private Section drawAllSection = profiler.getSection("frame.draw");
+	private ScriptMetrics scriptMetrics = new ScriptMetrics();
+	private ScriptScheduler scriptScheduler = new ScriptScheduler();
+	private RenderPassScheduler renderPasses = new RenderPassScheduler();
+	private Simulation simulation;
 
 	public GameServiceProvider() {
 		Gdx.input.setInputProcessor(inputMultiplexer);
@@ -75,6 +121,33 @@ public class GameServiceProvider {
 		return services.get(name);
 	}
 
+	/**
+	 * Returns the handle of a service name. Looking up a service by its handle
+	 * is faster than looking it up by its name. The handle stays valid if the
+	 * service is replaced or removed.
+	 * 
+	 * @param name
+	 *            The name of the service.
+	 * @return the handle of the name
+	 * @see #getService(int)
+	 */
+	public int getServiceHandle(String name) {
+		return services.handle(name);
+	}
+
+	/**
+	 * Returns a {@link GameService} by its handle.
+	 * 
+	 * @param handle
+	 *            The handle of the service name.
+	 * @return The {@link GameService} or null if no service with the name of
+	 *         the handle exists
+	 * @see #getServiceHandle(String)
+	 */
+	public GameService getService(int handle) {
+		return services.get(handle);
+	}
+
 	/**
 	 * A convenience method which checks if the {@link GameService} is from the
 	 * specified type. If not it will return null.
@@ -95,20 +168,32 @@ public class GameServiceProvider {
 
 	/**
 	 * Returns all services which are from the specified type or extend from the
-	 * specified type.
+	 * specified type.<br>
+	 * A new {@link Array} is created at every call. Use
+	 * {@link #getServiceList(Class)} if you don't need a copy.
 	 * 
 	 * @param clazz
 	 *            The type of services to return.
 	 * @return An {@link Array} with all services from type clazz.
 	 */
-	@SuppressWarnings("unchecked")
 	public <T extends GameService> Array<T> getServices(Class<T> clazz) {
-		Array<T> ret = new Array<T>();
-		for (GameService s : services.values()) {
-			if (clazz.isInstance(s))
-				ret.add((T) s);
-		}
-		return ret;
+		return services.list(clazz).toArray();
+	}
+
+	/**
+	 * Returns the read only list of all services which are from the specified
+	 * type or extend from the specified type. The list is cached and updated
+	 * whenever a service is put or removed, therefore it doesn't allocate
+	 * anything.<br>
+	 * Other threads than the main thread should iterate
+	 * {@link ServiceList#snapshot()}.
+	 * 
+	 * @param clazz
+	 *            The type of services to return.
+	 * @return A {@link ServiceList} with all services from type clazz.
+	 */
+	public <T extends GameService> ServiceList<T> getServiceList(Class<T> clazz) {
+		return services.list(clazz);
 	}
 
 	/**
@@ -199,6 +284,16 @@ public class GameServiceProvider {
 	private <T> void shiftPos(Array<T> array, T service, T ref, int offset) {
 		array.removeValue(service, true);
 		array.insert(array.indexOf(ref, true) + offset, service);
+		scheduler.invalidate();
+	}
+
+	private void replaced(GameService old, GameService service) {
+		if (old != null) {
+			synchronized (frozen) {
+				frozen.removeValue(old, true);
+			}
+		}
+		scheduler.invalidate();
 	}
 
 	/**
@@ -264,6 +359,7 @@ public class GameServiceProvider {
 		} else if (service instanceof InputProcessor) {
 			inputMultiplexer.getProcessors().add((InputProcessor) service);
 		}
+		replaced(old, service);
 		return old;
 	}
 
@@ -332,6 +428,7 @@ public class GameServiceProvider {
 			inputMultiplexer.getProcessors()
 					.insert(0, (InputProcessor) service);
 		}
+		replaced(old, service);
 		return old;
 	}
 
@@ -358,6 +455,7 @@ public class GameServiceProvider {
 			drawables.removeValue((Drawable) old, true);
 		if (old instanceof ResizeListener)
 			resizeListener.removeValue((ResizeListener) old, true);
+		replaced(old, null);
 		return old;
 	}
 
@@ -424,20 +522,20 @@ public class GameServiceProvider {
 			boolean clearTheScreen) {
 		if (freezeTheWorld) {
 			if (!this.freezeTheWorld) {
-				for (GameService s : services.values()) {
-					if (s != service && !s.essential())
-						s.freeze();
-				}
-				this.freezeTheWorld = freezeTheWorld;
+				this.freezeTheWorld = true;
+				updateFrozen(service);
 			}
 		} else if (this.freezeTheWorld) {
 			this.freezeTheWorld = false;
-			for (GameService s : services.values()) {
-				if (s != service && !s.essential())
-					s.unfreeze();
+			synchronized (frozen) {
+				for (int i = 0, len = frozen.size; i < len; i++)
+					frozen.get(i).unfreeze();
+				frozen.clear();
 			}
 		}
 		this.clearTheScreen = clearTheScreen;
+		// the attention or the freeze state may have changed
+		scheduler.invalidate();
 	}
 
 	/**
@@ -475,8 +573,112 @@ public class GameServiceProvider {
 		return hasAttention.get();
 	}
 
+	/**
+	 * The timestep is advanced once per frame before all services are
+	 * computed. Simulating services (e.g. maps) use it to compute a fixed
+	 * number of ticks per frame and to interpolate the drawing.
+	 * 
+	 * @return the timestep of the simulation
+	 * @see GameOptions#simulationTickRate
+	 */
+	public FixedTimestep getSimulationTimestep() {
+		return simulationTimestep;
+	}
+
+	/**
+	 * The profiler records the time of every compute and draw call if it's
+	 * enabled.
+	 * 
+	 * @return the frame profiler
+	 * @see GameOptions#profile
+	 */
+	public FrameProfiler getProfiler() {
+		return profiler;
+	}
+
+	/**
+	 * The script metrics record the execution time of every script handler
+	 * if they are enabled.
+	 * 
+	 * @return the script metrics
+	 * @see GameOptions#scriptMetrics
+	 */
+	public ScriptMetrics getScriptMetrics() {
+		return scriptMetrics;
+	}
+
+	/**
+	 * The script scheduler is stepped once per frame before all services are
+	 * computed (also if the world is frozen). Scripts use it to wait for user
+	 * choices, fades and moves without blocking a thread.
+	 * 
+	 * @return the script scheduler
+	 */
+	public ScriptScheduler getScriptScheduler() {
+		return scriptScheduler;
+	}
+
+	/**
+	 * All drawables are rendered through the render pass scheduler. Drawables
+	 * which have to render without the sprite batch (e.g. shapes) must use
+	 * {@link RenderPassScheduler#suspend()} and
+	 * {@link RenderPassScheduler#resume()}.
+	 * 
+	 * @return the render pass scheduler
+	 */
+	public RenderPassScheduler getRenderPassScheduler() {
+		return renderPasses;
+	}
+
+	/**
+	 * Requests the computation of a {@link Scheduled#ON_DEMAND} service within
+	 * the next frame. May be called by any thread.
+	 * 
+	 * @param service
+	 * @return false if the service isn't provided
+	 * @see Scheduled
+	 */
+	public boolean requestCompute(Computable service) {
+		return scheduler.request(service);
+	}
+
+	/**
+	 * Reads the tick intervals of all {@link Scheduled} services again. Call
+	 * this method after the tick interval of a service has changed.
+	 */
+	public void reschedule() {
+		scheduler.invalidate();
+	}
+
+	/**
+	 * Starts the simulation thread. From now on all {@link DoubleBuffered}
+	 * services are computed by the simulation thread while the main thread
+	 * draws the snapshot of the last simulated frame.
+	 * 
+	 * @see GameOptions#pipelinedSimulation
+	 */
+	void startSimulationThread() {
+		if (simulation == null) {
+			simulation = new Simulation();
+			simulation.start();
+			scheduler.invalidate();
+		}
+	}
+
+	/**
+	 * @return true if the {@link DoubleBuffered} services are computed by the
+	 *         simulation thread
+	 * @see GameOptions#pipelinedSimulation
+	 */
+	public boolean isPipelined() {
+		return simulation != null;
+	}
+
 	public void dispose() {
 		clearServices();
+		scriptScheduler.dispose();
+		if (simulation != null)
+			simulation.dispose();
 	}
 
 	void computeAll() {
@@ -485,35 +687,92 @@ public class GameServiceProvider {
 		// 10 FPS
 		if (deltaTime > .1f)
 			deltaTime = .1f;
+		if (simulation == null)
+			advanceTimestep(deltaTime, freezeTheWorld);
+		boolean profile = profiler.isEnabled();
+		long start = profile ? System.nanoTime() : 0L;
 		boolean actionKeyPressed = GameBase.$().isActionKeyDown();
-		GameService holdsAttention = hasAttention.get();
-		if (freezeTheWorld) {
-			for (int i = 0, len = computables.size; i < len; i++) {
-				Computable c = computables.get(i);
-				if (c == holdsAttention) {
-					holdsAttention = null;
-					c.compute(deltaTime, actionKeyPressed);
-				} else if (((GameService) c).essential()) {
-					c.compute(deltaTime, actionKeyPressed);
+		updateSchedule();
+		if (simulation != null)
+			simulation.sync(deltaTime, actionKeyPressed);
+		scriptScheduler.step(deltaTime);
+		ParticleEffectLoader.updateEmissionScale(deltaTime);
+		computeServices(scheduler.getMainTicks(), deltaTime, actionKeyPressed,
+				profile);
+		if (profile)
+			computeAllSection.record(System.nanoTime() - start);
+	}
+
+	// the events are not moved while the world is frozen, therefore the
+	// interpolation must not continue
+	private void advanceTimestep(float deltaTime, boolean frozen) {
+		if (frozen)
+			simulationTimestep.hold();
+		else
+			simulationTimestep.advance(deltaTime);
+	}
+
+	private void updateSchedule() {
+		if (scheduler.update() && freezeTheWorld)
+			updateFrozen(hasAttention.get());
+	}
+
+	// A service may become essential or non essential while the world is
+	// frozen. Therefore the frozen services are evaluated whenever the world
+	// gets frozen and with every rebuild of the schedule.
+	private void updateFrozen(GameService holdsAttention) {
+		Array<GameService> all = services.getServices();
+		synchronized (frozen) {
+			for (int i = frozen.size - 1; i > -1; i--) {
+				GameService s = frozen.get(i);
+				if (s == holdsAttention || s.essential()) {
+					frozen.removeIndex(i);
+					s.unfreeze();
 				}
 			}
-		} else {
-			for (int i = 0, len = computables.size; i < len; i++) {
-				Computable c = computables.get(i);
-				if (c == holdsAttention) {
-					holdsAttention = null;
+			for (int i = 0, len = all.size; i < len; i++) {
+				GameService s = all.get(i);
+				if (s != holdsAttention && !s.essential()
+						&& !frozen.contains(s, true)) {
+					frozen.add(s);
+					s.freeze();
 				}
-				c.compute(deltaTime, actionKeyPressed);
 			}
 		}
-		if (holdsAttention instanceof Computable) {
-			((Computable) holdsAttention).compute(deltaTime, actionKeyPressed);
+	}
+
+	private void computeServices(Array<Tick> ticks, float deltaTime,
+			boolean actionKeyPressed, boolean profile) {
+		for (int i = 0, len = ticks.size; i < len; i++) {
+			Tick t = ticks.get(i);
+			if (t.advance(deltaTime, actionKeyPressed)) {
+				compute(t.getService(), t.getElapsed(), t.isActionKeyDown(),
+						profile);
+				t.consume();
+			}
+		}
+	}
+
+	private void compute(Computable c, float deltaTime,
+			boolean actionKeyPressed, boolean profile) {
+		if (profile) {
+			long start = System.nanoTime();
+			c.compute(deltaTime, actionKeyPressed);
+			profiler.getComputeSection(c).record(System.nanoTime() - start);
+		} else {
+			c.compute(deltaTime, actionKeyPressed);
 		}
 	}
 
 	void drawAll(boolean debug) {
 		try {
-			drawAllInternal(debug);
+			if (profiler.isEnabled()) {
+				long start = System.nanoTime();
+				drawAllInternal(debug);
+				drawAllSection.record(System.nanoTime() - start);
+			} else {
+				drawAllInternal(debug);
+			}
 		} catch (Exception e) {
 			// after an exception while drawing, spriteBatch has an undefined
 			// state, that's why we throw it away and create a new one.
@@ -532,43 +791,25 @@ public class GameServiceProvider {
 		float tintColorBits = GameBase.$().getGameColorBits();
 		SpriteBatch spriteBatch = GameBase.$().getSpriteBatch();
 		Camera camera = GameBase.$().getCamera();
-		GameService holdsAttention = hasAttention.get();
-		Matrix4 proj = null;
-		if (clearTheScreen) {
-			for (int i = drawables.size - 1; i > -1; i--) {
-				Drawable d = drawables.get(i);
-				if (d == holdsAttention) {
-					holdsAttention = null;
-					proj = drawWithMatrix(debug, spriteBatch, camera, proj, d,
-							tintColorBits);
-				} else if (((GameService) d).essential()) {
-					proj = drawWithMatrix(debug, spriteBatch, camera, proj, d,
-							tintColorBits);
-				}
-			}
-		} else {
-			for (int i = drawables.size - 1; i > -1; i--) {
-				Drawable d = drawables.get(i);
-				if (d == holdsAttention) {
-					holdsAttention = null;
-				}
-				proj = drawWithMatrix(debug, spriteBatch, camera, proj, d,
-						tintColorBits);
-			}
-		}
-		if (holdsAttention instanceof Drawable) {
-			Drawable d = (Drawable) holdsAttention;
-			proj = drawWithMatrix(debug, spriteBatch, camera, proj, d,
+		updateSchedule();
+		Array<Drawable> drawOrder = scheduler.getDrawOrder();
+		renderPasses.beginFrame(spriteBatch);
+		for (int i = 0, len = drawOrder.size; i < len; i++) {
+			drawWithMatrix(debug, spriteBatch, camera, drawOrder.get(i),
 					tintColorBits);
 		}
-		if (proj != null) {
-			spriteBatch.end();
-		}
+		renderPasses.endFrame();
 		if (debug) {
 			DebugHelper.drawViewportCorners(spriteBatch, camera);
 			DebugHelper.drawMousePosition(spriteBatch, camera);
 			DebugHelper.drawServiceExecutionOrder(spriteBatch, camera,
 					computables, drawables, hasAttention.get());
+			if (profiler.isEnabled()) {
+				DebugHelper.drawProfiler(profiler);
+				DebugHelper.drawRenderPasses(renderPasses);
+			}
+			if (scriptMetrics.isEnabled())
+				DebugHelper.drawScriptMetrics(scriptMetrics);
 		}
 	}
 
@@ -578,27 +819,107 @@ public class GameServiceProvider {
 		}
 	}
 
-	private Matrix4 drawWithMatrix(boolean debug, SpriteBatch spriteBatch,
-			Camera camera, Matrix4 old, Drawable d, float tintColorBits) {
-		if (d.projectionMatrix(camera) != old) {
-			if (old != null) {
-				spriteBatch.end();
+	private void drawWithMatrix(boolean debug, SpriteBatch spriteBatch,
+			Camera camera, Drawable d, float tintColorBits) {
+		// the batch is only flushed if the projection has changed
+		renderPasses.pass(d.projectionMatrix(camera));
+		spriteBatch.setColor(tintColorBits);
+		if (profiler.isEnabled()) {
+			long start = System.nanoTime();
+			d.draw(spriteBatch, camera, debug);
+			profiler.getDrawSection(d).record(System.nanoTime() - start);
+		} else {
+			d.draw(spriteBatch, camera, debug);
+		}
+	}
+
+	/**
+	 * Computes the {@link DoubleBuffered} services while the main thread
+	 * draws. The main thread never waits for the simulation thread: if the
+	 * next frame isn't simulated yet, the last snapshot is drawn again and the
+	 * elapsed time is added to the next simulated frame.
+	 */
+	private class Simulation extends Thread implements Disposable {
+		private final Section section = profiler.getSection("frame.simulate");
+		private volatile boolean busy;
+		private volatile boolean disposed;
+		// only accessed by the main thread
+		private float pendingDeltaTime;
+		private boolean pendingActionKey;
+		// written by the main thread before busy is set
+		private float deltaTime;
+		private boolean actionKeyPressed;
+		private boolean frozen;
+		private Array<Tick> ticks;
+
+		public Simulation() {
+			super("Simulation");
+			setDaemon(true);
+		}
+
+		/**
+		 * Called by the main thread once per frame. If the simulation thread
+		 * is idle, the snapshots of all {@link DoubleBuffered} services are
+		 * taken and the simulation of the next frame is started.
+		 */
+		public void sync(float deltaTime, boolean actionKeyPressed) {
+			pendingDeltaTime += deltaTime;
+			pendingActionKey |= actionKeyPressed;
+			if (busy)
+				return;
+			Camera camera = GameBase.$().getCamera();
+			for (int i = 0, len = computables.size; i < len; i++) {
+				Computable c = computables.get(i);
+				if (c instanceof DoubleBuffered)
+					((DoubleBuffered) c).snapshot(camera);
 			}
-			old = d.projectionMatrix(camera);
-			spriteBatch.setProjectionMatrix(old);
-			spriteBatch.begin();
+			this.deltaTime = Math.min(pendingDeltaTime, .1f);
+			this.actionKeyPressed = pendingActionKey;
+			this.frozen = freezeTheWorld;
+			this.ticks = scheduler.getSimulationTicks();
+			pendingDeltaTime = 0f;
+			pendingActionKey = false;
+			busy = true;
+			LockSupport.unpark(this);
+		}
+
+		@Override
+		public void run() {
+			GameBase.$().registerGlContextThread();
+			while (!disposed) {
+				if (!busy) {
+					LockSupport.park(this);
+					continue;
+				}
+				boolean profile = profiler.isEnabled();
+				long start = profile ? System.nanoTime() : 0L;
+				try {
+					advanceTimestep(deltaTime, frozen);
+					computeServices(ticks, deltaTime, actionKeyPressed,
+							profile);
+				} catch (Exception e) {
+					GameBase.$error("ServiceProvider.simulate",
+							"Error while simulating the game - continuing", e);
+				}
+				if (profile)
+					section.record(System.nanoTime() - start);
+				busy = false;
+			}
+		}
+
+		public void dispose() {
+			disposed = true;
+			LockSupport.unpark(this);
 		}
-		spriteBatch.setColor(tintColorBits);
-		d.draw(spriteBatch, camera, debug);
-		return old;
 	}
 
 	protected void saveSerializableServices(ObjectOutputStream oOut)
 			throws IOException {
 		Map<String, GameService> serializeIt = new HashMap<String, GameService>();
-		for (Map.Entry<String, GameService> es : services.entrySet()) {
-			if (es.getValue() instanceof Serializable) {
-				serializeIt.put(es.getKey(), es.getValue());
+		for (int i = 0, len = services.getHandleCount(); i < len; i++) {
+			GameService s = services.get(i);
+			if (s instanceof Serializable) {
+				serializeIt.put(services.getName(i), s);
 			}
 		}
 		oOut.writeObject(serializeIt);
@@ -628,7 +949,9 @@ public class GameServiceProvider {
 
 	public void clearServices() {
 		forceAttentionReset();
-		for (GameService service : services.values()) {
+		Array<GameService> all = services.getServices();
+		for (int i = 0; i < all.size; i++) {
+			GameService service = all.get(i);
 			try {
 				service.dispose();
 			} catch (Exception ignored) {
@@ -638,6 +961,10 @@ public class GameServiceProvider {
 		inputMultiplexer.clear();
 		computables.clear();
 		drawables.clear();
+		synchronized (frozen) {
+			frozen.clear();
+		}
+		scheduler.invalidate();
 		freezeTheWorld = false;
 		clearTheScreen = false;
 	}
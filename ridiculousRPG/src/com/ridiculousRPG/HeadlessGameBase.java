@@ -0,0 +1,242 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Application.ApplicationType;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Graphics;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.backends.lwjgl.LwjglFiles;
+import com.badlogic.gdx.backends.lwjgl.LwjglNativesLoader;
+import com.badlogic.gdx.graphics.GL10;
+
+/**
+ * A game without window and without OpenGL context.<br>
+ * The libgdx modules Gdx.app, Gdx.graphics, Gdx.input and Gdx.gl are replaced
+ * by stubs. All OpenGL calls are ignored, therefore textures, tile atlases,
+ * sprite batches and fonts can be loaded and "drawn" without graphics card.
+ * The files are read from the file system. Audio is not available.<br>
+ * <br>
+ * The game is driven by calling {@link #frame(float)}. Runnables posted to the
+ * application are executed by the thread which started the game at the
+ * beginning of the next frame (see {@link #runPostedRunnables()}). All threads
+ * which register as gl context thread execute
+ * {@link com.ridiculousRPG.util.ExecWithGlContext} immediately.<br>
+ * <br>
+ * This class is used to drive maps, events, movements and scripts on a
+ * machine without GPU (e.g. for benchmarks).
+ * 
+ * @author Alexander Baumgartner
+ */
+public class HeadlessGameBase extends GameBase {
+	private final ConcurrentLinkedQueue<Runnable> runnables = new ConcurrentLinkedQueue<Runnable>();
+	private volatile float deltaTime = 1f / 60f;
+	private volatile boolean exitRequested;
+	private long frameId;
+
+	public HeadlessGameBase(GameOptions options) {
+		super(options);
+	}
+
+	/**
+	 * Installs the stubs and creates a new headless game. The calling thread
+	 * becomes the main thread of the game.
+	 * 
+	 * @param options
+	 * @return the initialized game
+	 */
+	public static HeadlessGameBase start(GameOptions options) {
+		HeadlessGameBase game = new HeadlessGameBase(options);
+		game.installStubs();
+		game.create();
+		return game;
+	}
+
+	/**
+	 * Loads the native libraries and replaces the libgdx modules by stubs.
+	 * Gdx.files is only set if it's not set yet.
+	 */
+	protected void installStubs() {
+		LwjglNativesLoader.load();
+		if (Gdx.files == null)
+			Gdx.files = new LwjglFiles();
+		InvocationHandler handler = new StubHandler();
+		Gdx.app = stub(Application.class, handler);
+		Gdx.graphics = stub(Graphics.class, handler);
+		Gdx.input = stub(Input.class, handler);
+		GL10 gl = stub(GL10.class, handler);
+		Gdx.gl = gl;
+		Gdx.gl10 = gl;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T stub(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(type.getClassLoader(),
+				new Class<?>[] { type }, handler);
+	}
+
+	/**
+	 * Computes and draws one frame. Must be called by the thread which
+	 * started the game.
+	 * 
+	 * @param deltaTime
+	 *            The time of this frame in seconds
+	 */
+	public void frame(float deltaTime) {
+		this.deltaTime = deltaTime;
+		frameId++;
+		runPostedRunnables();
+		render();
+	}
+
+	/**
+	 * Computes and draws the given number of frames.
+	 * 
+	 * @param count
+	 * @param deltaTime
+	 *            The time of every frame in seconds
+	 */
+	public void frames(int count, float deltaTime) {
+		for (int i = 0; i < count && !exitRequested; i++)
+			frame(deltaTime);
+	}
+
+	/**
+	 * Executes the runnables which have been posted to the application.
+	 * Runnables which are posted while executing are executed by the next
+	 * call.<br>
+	 * Must be called by the thread which started the game.
+	 */
+	public void runPostedRunnables() {
+		for (int n = runnables.size(); n > 0; n--) {
+			Runnable r = runnables.poll();
+			if (r == null)
+				return;
+			try {
+				r.run();
+			} catch (Exception e) {
+				GameBase.$error("HeadlessGameBase.runPostedRunnables",
+						"Exception in posted runnable", e);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of frames computed since the game has been started
+	 */
+	public long getFrameId() {
+		return frameId;
+	}
+
+	/**
+	 * @return true if the game called Gdx.app.exit()
+	 */
+	public boolean isExitRequested() {
+		return exitRequested;
+	}
+
+	/**
+	 * There is no OpenGL context, therefore every thread may "share" it.
+	 */
+	@Override
+	protected boolean shareGLContext() {
+		return true;
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (!type.isPrimitive() || type == void.class)
+			return null;
+		if (type == boolean.class)
+			return Boolean.FALSE;
+		if (type == char.class)
+			return Character.valueOf((char) 0);
+		if (type == byte.class)
+			return Byte.valueOf((byte) 0);
+		if (type == short.class)
+			return Short.valueOf((short) 0);
+		if (type == int.class)
+			return Integer.valueOf(0);
+		if (type == long.class)
+			return Long.valueOf(0L);
+		if (type == float.class)
+			return Float.valueOf(0f);
+		return Double.valueOf(0d);
+	}
+
+	/**
+	 * Implements the few methods of the libgdx modules which are needed
+	 * without window. All other methods do nothing and return 0, false or
+	 * null.
+	 */
+	private class StubHandler implements InvocationHandler {
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			String name = method.getName();
+			Class<?> declaring = method.getDeclaringClass();
+			if (declaring == Object.class) {
+				if ("equals".equals(name))
+					return proxy == args[0];
+				if ("hashCode".equals(name))
+					return System.identityHashCode(proxy);
+				return "Headless"
+						+ proxy.getClass().getInterfaces()[0].getSimpleName();
+			}
+			if (declaring == Application.class) {
+				if ("postRunnable".equals(name)) {
+					runnables.add((Runnable) args[0]);
+				} else if ("log".equals(name) || "error".equals(name)) {
+					log("error".equals(name), args);
+				} else if ("exit".equals(name)) {
+					exitRequested = true;
+				} else if ("getType".equals(name)) {
+					return ApplicationType.Desktop;
+				}
+			} else if (declaring == Graphics.class) {
+				if ("getWidth".equals(name))
+					return getOptions().width;
+				if ("getHeight".equals(name))
+					return getOptions().height;
+				if ("getDeltaTime".equals(name)
+						|| "getRawDeltaTime".equals(name))
+					return deltaTime;
+				if ("getFramesPerSecond".equals(name))
+					return deltaTime > 0f ? (int) (1f / deltaTime) : 0;
+				if ("getFrameId".equals(name))
+					return frameId;
+				if ("getGL10".equals(name) || "getGLCommon".equals(name))
+					return Gdx.gl10;
+			}
+			return defaultValue(method.getReturnType());
+		}
+
+		private void log(boolean error, Object[] args) {
+			String msg = args[0] + ": " + args[1];
+			if (error) {
+				System.err.println(msg);
+			} else {
+				System.out.println(msg);
+			}
+			if (args.length > 2 && args[2] instanceof Throwable)
+				((Throwable) args[2]).printStackTrace();
+		}
+	}
+}
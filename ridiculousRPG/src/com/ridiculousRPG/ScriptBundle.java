@@ -0,0 +1,348 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.badlogic.gdx.Gdx;
+
+/**
+ * One indexed file containing all script files and templates of the game.<br>
+ * The bundle is created by a build step (see {@link #main(String[])}) and
+ * memory-mapped at launch (if the bundle can't be mapped, e.g. on Android,
+ * it's read into memory). Reading a script from the bundle doesn't touch the
+ * file system. Every entry is validated by its content hash (CRC32) when
+ * it's read the first time. In debug mode every entry is also compared with
+ * the modification time of the original file, therefore a modified script
+ * is read from the disk without rebuilding the bundle.<br>
+ * The entries are stored with the internal path of the original file (e.g.
+ * data/script/global/messaging.js). The files of a directory are sorted by
+ * name.<br>
+ * <br>
+ * File format: magic number, version, entry count, the index (path, offset,
+ * length, hash and modification time of every entry) and the raw file
+ * contents.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class ScriptBundle {
+	private static final int MAGIC = 0x52525342; // RRSB
+	private static final int VERSION = 1;
+
+	private final ByteBuffer data;
+	private final HashMap<String, Entry> entries = new HashMap<String, Entry>();
+	// all paths in the order of the index
+	private final String[] paths;
+	private boolean checkModified;
+
+	private ScriptBundle(ByteBuffer buffer) throws IOException {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			throw new IOException("Not a script bundle (or wrong version)");
+		int count = buffer.getInt();
+		paths = new String[count];
+		for (int i = 0; i < count; i++) {
+			byte[] path = new byte[buffer.getInt()];
+			buffer.get(path);
+			Entry e = new Entry(buffer.getInt(), buffer.getInt(), buffer
+					.getLong(), buffer.getLong());
+			paths[i] = new String(path, "UTF-8");
+			entries.put(paths[i], e);
+		}
+		data = buffer.slice();
+	}
+
+	/**
+	 * Memory-maps the given bundle file.
+	 * 
+	 * @param bundleFile
+	 * @return the opened bundle
+	 * @throws IOException
+	 *             if the file is missing or not a valid bundle
+	 */
+	public static ScriptBundle open(File bundleFile) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(bundleFile, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			// the mapping stays valid after closing the file
+			return new ScriptBundle(channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads the given bundle into memory. Use this method if the bundle isn't
+	 * a file on the file system (e.g. an Android asset).
+	 * 
+	 * @param in
+	 *            The stream is closed by this method
+	 * @return the opened bundle
+	 * @throws IOException
+	 *             if the stream can't be read or is not a valid bundle
+	 */
+	public static ScriptBundle open(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1)
+				bytes.write(buffer, 0, n);
+			return new ScriptBundle(ByteBuffer.wrap(bytes.toByteArray()));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * If true, every entry is compared with the modification time of the
+	 * original file (should only be used in debug mode).
+	 * 
+	 * @param checkModified
+	 */
+	public void setCheckModified(boolean checkModified) {
+		this.checkModified = checkModified;
+	}
+
+	/**
+	 * Returns the content of the given file.
+	 * 
+	 * @param path
+	 *            The internal path of the file
+	 * @param encoding
+	 * @return the content or null if the file isn't in the bundle, the entry
+	 *         is corrupt or the original file has been modified
+	 */
+	public String get(String path, String encoding) {
+		Entry e = entries.get(normalize(path));
+		if (e == null || !isValid(path, e))
+			return null;
+		try {
+			return new String(read(e), encoding);
+		} catch (UnsupportedEncodingException ex) {
+			GameBase.$error("ScriptBundle.get", "Unsupported encoding "
+					+ encoding, ex);
+			return null;
+		}
+	}
+
+	/**
+	 * @param path
+	 * @return true if the file is in the bundle and the entry is up to date
+	 */
+	public boolean contains(String path) {
+		Entry e = entries.get(normalize(path));
+		return e != null && isValid(path, e);
+	}
+
+	/**
+	 * @param path
+	 * @return true if the bundle contains a file (not a directory) with the
+	 *         given path
+	 */
+	public boolean isFile(String path) {
+		return entries.containsKey(normalize(path));
+	}
+
+	/**
+	 * Returns the given file or all files of the given directory. The files
+	 * are returned in the order they should be evaluated.
+	 * 
+	 * @param path
+	 *            The internal path of a file or directory
+	 * @param recurse
+	 *            Also return the files of the sub directories
+	 * @return the paths or null if the path isn't in the bundle
+	 */
+	public List<String> list(String path, boolean recurse) {
+		path = normalize(path);
+		if (entries.containsKey(path))
+			return Arrays.asList(path);
+		String prefix = path + "/";
+		List<String> result = null;
+		for (String p : paths) {
+			if (p.startsWith(prefix)
+					&& (recurse || p.indexOf('/', prefix.length()) == -1)) {
+				if (result == null)
+					result = new ArrayList<String>();
+				result.add(p);
+			}
+		}
+		return result;
+	}
+
+	private boolean isValid(String path, Entry e) {
+		if (e.corrupt)
+			return false;
+		if (!e.verified) {
+			CRC32 crc = new CRC32();
+			crc.update(read(e));
+			if (crc.getValue() != e.hash) {
+				// the hash is only computed and logged once
+				e.corrupt = true;
+				GameBase.$info("ScriptBundle.corrupt", "The bundle entry "
+						+ path + " is corrupt - reading the original file",
+						null);
+				return false;
+			}
+			e.verified = true;
+		}
+		if (checkModified
+				&& Gdx.files.internal(path).lastModified() != e.lastModified)
+			return false;
+		return true;
+	}
+
+	private byte[] read(Entry e) {
+		byte[] bytes = new byte[e.length];
+		ByteBuffer b = data.duplicate();
+		b.position(e.offset);
+		b.get(bytes);
+		return bytes;
+	}
+
+	private static String normalize(String path) {
+		path = path.replace('\\', '/');
+		while (path.endsWith("/"))
+			path = path.substring(0, path.length() - 1);
+		return path;
+	}
+
+	/**
+	 * Writes a new bundle containing the given files and all files of the
+	 * given directories (recursively).
+	 * 
+	 * @param bundleFile
+	 * @param sources
+	 *            Files or directories. The paths must be relative to the
+	 *            games directory (the same paths as used for internal files).
+	 * @return the number of bundled files
+	 * @throws IOException
+	 */
+	public static int write(File bundleFile, String... sources)
+			throws IOException {
+		List<String> paths = new ArrayList<String>();
+		for (String source : sources)
+			collect(new File(source), normalize(source), paths);
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		ByteArrayOutputStream index = new ByteArrayOutputStream();
+		DataOutputStream indexOut = new DataOutputStream(index);
+		CRC32 crc = new CRC32();
+		for (String path : paths) {
+			File f = new File(path);
+			byte[] bytes = readFully(f);
+			crc.reset();
+			crc.update(bytes);
+			byte[] p = path.getBytes("UTF-8");
+			indexOut.writeInt(p.length);
+			indexOut.write(p);
+			indexOut.writeInt(content.size());
+			indexOut.writeInt(bytes.length);
+			indexOut.writeLong(crc.getValue());
+			indexOut.writeLong(f.lastModified());
+			content.write(bytes);
+		}
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(bundleFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(paths.size());
+			index.writeTo(out);
+			content.writeTo(out);
+		} finally {
+			out.close();
+		}
+		return paths.size();
+	}
+
+	private static void collect(File file, String path, List<String> paths) {
+		if (file.isDirectory()) {
+			String[] children = file.list();
+			Arrays.sort(children);
+			for (String child : children)
+				collect(new File(file, child), path + "/" + child, paths);
+		} else if (file.isFile()) {
+			paths.add(path);
+		}
+	}
+
+	private static byte[] readFully(File f) throws IOException {
+		byte[] bytes = new byte[(int) f.length()];
+		InputStream in = new FileInputStream(f);
+		try {
+			int off = 0;
+			while (off < bytes.length) {
+				int n = in.read(bytes, off, bytes.length - off);
+				if (n < 0)
+					throw new IOException("Unexpected end of file " + f);
+				off += n;
+			}
+		} finally {
+			in.close();
+		}
+		return bytes;
+	}
+
+	/**
+	 * The build step. Run it from the games directory.<br>
+	 * Usage: <code>ScriptBundle [bundleFile] [source...]</code><br>
+	 * The defaults are data/scripts.bundle and data/script.
+	 * 
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		String bundle = args.length > 0 ? args[0] : "data/scripts.bundle";
+		String[] sources = args.length > 1 ? Arrays.copyOfRange(args, 1,
+				args.length) : new String[] { "data/script" };
+		int count = write(new File(bundle), sources);
+		System.out.println(count + " files written to " + bundle);
+	}
+
+	private static class Entry {
+		private final int offset;
+		private final int length;
+		private final long hash;
+		private final long lastModified;
+		private volatile boolean verified;
+		private volatile boolean corrupt;
+
+		public Entry(int offset, int length, long hash, long lastModified) {
+			this.offset = offset;
+			this.length = length;
+			this.hash = hash;
+			this.lastModified = lastModified;
+		}
+	}
+}
@@ -16,14 +16,19 @@
 
 package com.ridiculousRPG;
 
+import java.util.List;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.Invocable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
@@ -31,7 +36,10 @@ import com.badlogic.gdx.files.FileHandle;
 /**
  * This class loads global scripts and generates new script engines.<br>
  * The currently running {@link ScriptEngine} is exposed by the variable
- * $scriptEngine.
+ * $scriptEngine.<br>
+ * If a {@link ScriptBundle} is set, all script files and templates are read
+ * from the bundle. Bundled scripts are compiled once if the engine supports
+ * it (see {@link Compilable}).
  * 
  * @author Alexander Baumgartner
  */
@@ -40,6 +48,13 @@ public class ScriptFactory {
 	private String scriptLanguage;
 	private String[] scriptFileExtension;
 	private static final String TEMPLATE_LINE_MARK = "#codeLine#";
+	private ScriptBundle bundle;
+	// compiled bundle entries
+	private final ConcurrentHashMap<String, CompiledScript> compiledScripts = new ConcurrentHashMap<String, CompiledScript>();
+	// path -> loaded script (also paths which don't exist)
+	private final ConcurrentHashMap<String, LoadedScript> loadedScripts = new ConcurrentHashMap<String, LoadedScript>();
+	private static final int MAX_LOADED_SCRIPTS = 4096;
+	private static final int MAX_PATH_LENGTH = 255;
 
 	/**
 	 * @see #evalAllGlobalScripts(FileHandle, boolean)
@@ -126,20 +141,49 @@ public class ScriptFactory {
 	 */
 	public int evalAllScripts(ScriptEngine engine, FileHandle path,
 			boolean recurse, Bindings bindings) {
-		try {
-			engine.getBindings(ScriptContext.ENGINE_SCOPE).put(
-					ScriptEngine.FILENAME, path.path());
-			if (path.isDirectory()) {
+		ScriptBundle bundle = this.bundle;
+		// in debug mode the directories are listed from the disk, therefore
+		// added and removed files are noticed without rebuilding the bundle
+		if (bundle != null && !(GameBase.$options().debug && path.exists())) {
+			List<String> bundled = bundle.list(path.path(), recurse);
+			if (bundled != null) {
+				boolean file = bundle.isFile(path.path());
 				int count = 0;
-				for (FileHandle child : path.list()) {
-					if ((recurse && child.isDirectory())
-							|| hasAllowedSuffix(child)) {
-						count += evalAllScripts(engine, child, recurse,
-								bindings);
-					}
+				for (String p : bundled) {
+					if (file || hasAllowedSuffix(p))
+						count += evalBundled(engine, p, bindings);
 				}
 				return count;
-			} else if (bindings == null) {
+			}
+		}
+		return evalFiles(engine, path, recurse, bindings);
+	}
+
+	private int evalFiles(ScriptEngine engine, FileHandle path,
+			boolean recurse, Bindings bindings) {
+		if (path.isDirectory()) {
+			int count = 0;
+			for (FileHandle child : path.list()) {
+				if ((recurse && child.isDirectory())
+						|| hasAllowedSuffix(child)) {
+					count += evalFiles(engine, child, recurse, bindings);
+				}
+			}
+			return count;
+		}
+		// unmodified files are still taken from the bundle
+		ScriptBundle bundle = this.bundle;
+		if (bundle != null && bundle.isFile(path.path()))
+			return evalBundled(engine, path.path(), bindings);
+		return evalFile(engine, path, bindings);
+	}
+
+	private int evalFile(ScriptEngine engine, FileHandle path,
+			Bindings bindings) {
+		try {
+			engine.getBindings(ScriptContext.ENGINE_SCOPE).put(
+					ScriptEngine.FILENAME, path.path());
+			if (bindings == null) {
 				engine.eval(path.readString(GameBase.$options().encoding));
 				return 1;
 			} else {
@@ -159,6 +203,52 @@ public class ScriptFactory {
 		}
 	}
 
+	private int evalBundled(ScriptEngine engine, String path, Bindings bindings) {
+		CompiledScript compiled = compiledScripts.get(path);
+		String script = null;
+		if (compiled == null || !bundle.contains(path)) {
+			compiled = null;
+			script = bundle.get(path, GameBase.$options().encoding);
+			if (script == null) // modified or corrupt
+				return evalFile(engine, Gdx.files.internal(path), bindings);
+		}
+		try {
+			engine.getBindings(ScriptContext.ENGINE_SCOPE).put(
+					ScriptEngine.FILENAME, path);
+			if (bindings != null)
+				bindings.put(ScriptEngine.FILENAME, path);
+			if (compiled == null && engine instanceof Compilable) {
+				compiled = ((Compilable) engine).compile(script);
+				compiledScripts.put(path, compiled);
+			}
+			if (compiled == null) {
+				if (bindings == null)
+					engine.eval(script);
+				else
+					engine.eval(script, bindings);
+			} else if (bindings == null) {
+				compiled.eval(engine.getContext());
+			} else {
+				ScriptContext context = new SimpleScriptContext();
+				context.setBindings(engine
+						.getBindings(ScriptContext.GLOBAL_SCOPE),
+						ScriptContext.GLOBAL_SCOPE);
+				context.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+				compiled.eval(context);
+			}
+			return 1;
+		} catch (ScriptException e) {
+			GameBase.$error("ScriptFactory.evalAllScripts",
+					"Problem evaluating script file " + path, e);
+			return 0;
+		} finally {
+			if (bindings != null)
+				bindings.remove(ScriptEngine.FILENAME);
+			engine.getBindings(ScriptContext.ENGINE_SCOPE).remove(
+					ScriptEngine.FILENAME);
+		}
+	}
+
 	/**
 	 * Determines if the file has an suffix which matches the list of allowed
 	 * suffixes for this {@link ScriptFactory}. The comparison is case
@@ -170,7 +260,16 @@ public class ScriptFactory {
 	 *         {@link #getAllowedSuffix()}
 	 */
 	public boolean hasAllowedSuffix(FileHandle file) {
-		String nameLC = file.name().toLowerCase();
+		return hasAllowedSuffix(file.name());
+	}
+
+	/**
+	 * @param fileName
+	 *            The name or path of the file
+	 * @see #hasAllowedSuffix(FileHandle)
+	 */
+	public boolean hasAllowedSuffix(String fileName) {
+		String nameLC = fileName.toLowerCase();
 		for (String allowedSuffix : getScriptFileExtension()) {
 			if (nameLC.endsWith(allowedSuffix)) {
 				return true;
@@ -181,23 +280,129 @@ public class ScriptFactory {
 
 	/**
 	 * This method loads a script from the specified path or returns the String
-	 * unchanged, if it's not a valid path.
+	 * unchanged, if it's not a valid path.<br>
+	 * Strings which can't be a path (multi line code or too long) are returned
+	 * without touching the file system. For all other strings the existence
+	 * of the file is checked. The result for every path is cached, also if the
+	 * file doesn't exist. In debug mode the modification time of a cached file
+	 * is checked on every call and missing files aren't cached (a file may be
+	 * created later), otherwise the file system is only accessed once per
+	 * path.
 	 * 
 	 * @param scriptCodeOrPath
 	 * @return The script code
 	 */
 	public String loadScript(String scriptCodeOrPath) {
-		FileHandle fh = null;
+		if (!isPossiblePath(scriptCodeOrPath))
+			return scriptCodeOrPath;
+		LoadedScript loaded = loadedScripts.get(scriptCodeOrPath);
+		if (loaded != null) {
+			if (loaded.script == null)
+				return scriptCodeOrPath;
+			if (!GameBase.$options().debug
+					|| loaded.file.lastModified() == loaded.lastModified)
+				return loaded.script;
+		}
+		loaded = resolveScript(scriptCodeOrPath);
+		if (loaded.script == null && GameBase.$options().debug)
+			return scriptCodeOrPath;
+		if (loadedScripts.size() >= MAX_LOADED_SCRIPTS)
+			loadedScripts.clear();
+		loadedScripts.put(scriptCodeOrPath, loaded);
+		return loaded.script == null ? scriptCodeOrPath : loaded.script;
+	}
+
+	private LoadedScript resolveScript(String path) {
+		ScriptBundle bundle = this.bundle;
+		FileHandle fh;
+		boolean exists;
+		try {
+			fh = Gdx.files.internal(path);
+			exists = fh.exists();
+		} catch (Exception e) {
+			// not a valid file name, therefore it's script code
+			return new LoadedScript(null, null, 0L);
+		}
+		boolean bundled = bundle != null && bundle.isFile(path);
+		if (!exists && !bundled)
+			return new LoadedScript(null, null, 0L);
 		try {
-			fh = Gdx.files.internal(scriptCodeOrPath);
-			if (fh.exists()) {
-				return fh.readString(GameBase.$options().encoding);
+			boolean debug = GameBase.$options().debug;
+			if (bundled) {
+				String s = bundle.get(path, GameBase.$options().encoding);
+				if (s != null)
+					return new LoadedScript(s, fh, debug ? fh.lastModified()
+							: 0L);
+			}
+			if (exists) {
+				long lastModified = debug ? fh.lastModified() : 0L;
+				return new LoadedScript(fh.readString(GameBase.$options()
+						.encoding), fh, lastModified);
 			}
 		} catch (Exception e) {
 			GameBase.$error("ScriptFactory.loadScript",
 					"Failed to load script '" + fh + "'", e);
 		}
-		return scriptCodeOrPath;
+		return new LoadedScript(null, null, 0L);
+	}
+
+	// file names may contain almost any character, only line breaks are
+	// excluded
+	private static boolean isPossiblePath(String s) {
+		int len = s.length();
+		if (len == 0 || len > MAX_PATH_LENGTH)
+			return false;
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c == '\n' || c == '\r')
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Removes all cached results of {@link #loadScript(String)}. Modified
+	 * script files are read again.
+	 */
+	public void clearScriptCache() {
+		loadedScripts.clear();
+		compiledScripts.clear();
+	}
+
+	/**
+	 * Removes the cached result of {@link #loadScript(String)} and the
+	 * compiled script of the given file. The file is read again the next time
+	 * it's used.
+	 * 
+	 * @param path
+	 *            The path of the modified script file
+	 */
+	public void invalidateScript(String path) {
+		loadedScripts.remove(path);
+		compiledScripts.remove(path);
+		// the file has been modified, the bundle entry is outdated
+		ScriptBundle bundle = this.bundle;
+		if (bundle != null)
+			bundle.setCheckModified(true);
+	}
+
+	/**
+	 * Reads an internal file (e.g. a template) from the script bundle. If
+	 * there is no bundle or the file isn't in the bundle, the file is read
+	 * from the disk.
+	 * 
+	 * @param internalPath
+	 * @return The content of the file
+	 */
+	public String readFile(String internalPath) {
+		ScriptBundle bundle = this.bundle;
+		if (bundle != null) {
+			String s = bundle.get(internalPath, GameBase.$options().encoding);
+			if (s != null)
+				return s;
+		}
+		return Gdx.files.internal(internalPath).readString(
+				GameBase.$options().encoding);
 	}
 
 	/**
@@ -333,7 +538,34 @@ public class ScriptFactory {
 		return scriptFileExtension;
 	}
 
+	/**
+	 * Sets the bundle containing all script files and templates. Null reads
+	 * all files from the disk.
+	 * 
+	 * @param bundle
+	 */
+	public void setBundle(ScriptBundle bundle) {
+		this.bundle = bundle;
+		clearScriptCache();
+	}
+
+	public ScriptBundle getBundle() {
+		return bundle;
+	}
+
 	public void clearGlobalState() {
 		ENGINE_FACTORY.getBindings().clear();
 	}
+
+	private static class LoadedScript {
+		private final String script;
+		private final FileHandle file;
+		private final long lastModified;
+
+		public LoadedScript(String script, FileHandle file, long lastModified) {
+			this.script = script;
+			this.file = file;
+			this.lastModified = lastModified;
+		}
+	}
 }
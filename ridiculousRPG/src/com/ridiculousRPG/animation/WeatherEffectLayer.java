@@ -19,8 +19,6 @@ package com.ridiculousRPG.animation;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 import com.badlogic.gdx.Gdx;
@@ -29,13 +27,15 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.math.Matrix4;
-import com.badlogic.gdx.math.Rectangle;
 import com.ridiculousRPG.util.TextureRegionLoader;
 import com.ridiculousRPG.util.TextureRegionLoader.TextureRegionRef;
 
 /**
  * A Layer for a weather effect. Every effect layer is simulated by a texture.
- * The texture is tiled to fill the map (or whatever display-region is used).
+ * The texture is tiled to fill the map (or whatever display-region is used).<br>
+ * The tiles are stored row by row in flat float arrays. The rows form a ring
+ * buffer with a fixed capacity, therefore computing and drawing the effect
+ * doesn't allocate any objects.
  * 
  * @see ParticleEffectService
  * @author Alexander Baumgartner
@@ -48,7 +48,12 @@ public class WeatherEffectLayer extends EffectLayer {
 
 	private int width, height;
 	private int tileWidth, tileHeight;
-	private List<List<Rectangle>> tileLayer = new ArrayList<List<Rectangle>>();
+	// tile data (struct of arrays). The tile j of the ring slot s is stored at
+	// index s * newRowTilesPerRow + j
+	private float[] tileX, tileY;
+	private float[] tileWind, tileWindAcceleration;
+	private int rowCapacity;
+	private int firstRow, rowCount;
 	private boolean play = true;
 	private boolean flip = false;
 	private boolean fill = false;
@@ -75,7 +80,6 @@ public class WeatherEffectLayer extends EffectLayer {
 	private float internalNewRow;
 	private float internalWindAcceleration;
 	private float internalEffectAcceleration;
-	private List<Rectangle> recycleRow;
 
 	private String texturePath;
 	private transient TextureRegionRef tRef;
@@ -196,25 +200,73 @@ public class WeatherEffectLayer extends EffectLayer {
 		internalNewRow = height * 1.3f - tileHeight;
 
 		// refill the layer
-		tileLayer.clear();
 		// (that's a best effort solution - not perfect)
 		fillLayer();
 	}
 
 	private void fillLayer() {
+		allocateRows();
 		if (initializeEffect && !fill) {
 			// generate first row of tiles
-			tileLayer.add(newRow(height));
+			newRow(height);
 		} else {
 			// generate all rows of tiles
-			recycleRow = null;
 			for (int i = -tileHeight / 2; i < height; i += tileHeight) {
-				tileLayer.add(newRow(i));
+				newRow(i);
 			}
 		}
 		initializeEffect = true;
 	}
 
+	/**
+	 * Allocates the ring of rows. The capacity is computed from the area
+	 * between creating and removing a row (plus some reserve for rows which
+	 * are falling faster than others).
+	 */
+	private void allocateRows() {
+		int capacity = (int) ((internalNewRow - internalRemoveRow) / tileHeight)
+				+ 4;
+		capacity = Math.max(capacity, height / tileHeight + 3);
+		int size = capacity * newRowTilesPerRow;
+		if (tileX == null || tileX.length < size) {
+			tileX = new float[size];
+			tileY = new float[size];
+			tileWind = new float[size];
+			tileWindAcceleration = new float[size];
+		}
+		rowCapacity = tileX.length / newRowTilesPerRow;
+		firstRow = 0;
+		rowCount = 0;
+	}
+
+	/**
+	 * Doubles the capacity of the ring. This should never happen, but we
+	 * don't want to lose rows.
+	 */
+	private void growRows() {
+		int tilesPerRow = newRowTilesPerRow;
+		int newCapacity = rowCapacity * 2;
+		float[] x = new float[newCapacity * tilesPerRow];
+		float[] y = new float[x.length];
+		float[] wind = new float[x.length];
+		float[] windAcc = new float[x.length];
+		for (int r = 0; r < rowCount; r++) {
+			int src = ((firstRow + r) % rowCapacity) * tilesPerRow;
+			int dst = r * tilesPerRow;
+			System.arraycopy(tileX, src, x, dst, tilesPerRow);
+			System.arraycopy(tileY, src, y, dst, tilesPerRow);
+			System.arraycopy(tileWind, src, wind, dst, tilesPerRow);
+			System.arraycopy(tileWindAcceleration, src, windAcc, dst,
+					tilesPerRow);
+		}
+		tileX = x;
+		tileY = y;
+		tileWind = wind;
+		tileWindAcceleration = windAcc;
+		rowCapacity = newCapacity;
+		firstRow = 0;
+	}
+
 	/**
 	 * Checks if this effect-layer is empty
 	 * 
@@ -222,44 +274,34 @@ public class WeatherEffectLayer extends EffectLayer {
 	 */
 	@Override
 	public boolean isFinished() {
-		List<List<Rectangle>> tileLayer = this.tileLayer;
-		return tileLayer == null || tileLayer.isEmpty();
+		return tileX == null || rowCount == 0;
 	}
 
 	/**
 	 * Generates a virtual animation row over the entire map (only the subset
-	 * which is in the viewPort will be displayed)
+	 * which is in the viewPort will be displayed). The row is appended to the
+	 * ring of rows.
 	 */
-	private List<Rectangle> newRow(int startY) {
-		int startX = newRowTilesOffset;
-		List<Rectangle> row = recycleRow;
-		if (row == null) {
-			row = new ArrayList<Rectangle>(newRowTilesPerRow);
-			for (int i = 0; i < newRowTilesPerRow; i++, startX += tileWidth) {
-				float x = randomNumberGenerator.nextFloat() * tileWidth
-						* tilePositionVarianz;
-				float y = randomNumberGenerator.nextFloat() * tileHeight
-						* tilePositionVarianz;
-				row.add(new Rectangle(startX + x, startY + y, newRowWindSpeed,
-						0f));
-			}
-		} else {
-			recycleRow = null; // consume recycled row
-			for (int i = 0; i < newRowTilesPerRow; i++, startX += tileWidth) {
-				// We have already random values. It should be much faster to
-				// reuse it ;)
-				Rectangle tileRect = row.get(i);
-				float x = tileRect.x < 0f ? -tileRect.x : tileRect.x;
-				float y = tileRect.y < 0f ? -tileRect.y : tileRect.y;
-				x %= tileWidth * tilePositionVarianz;
-				y %= tileHeight * tilePositionVarianz;
-				tileRect.x = startX + x;
-				tileRect.y = startY + y;
-				tileRect.width = newRowWindSpeed;
-				tileRect.height = 0f;
-			}
+	private void newRow(int startY) {
+		if (rowCount == rowCapacity)
+			growRows();
+		int tilesPerRow = newRowTilesPerRow;
+		int start = ((firstRow + rowCount) % rowCapacity) * tilesPerRow;
+		int end = start + tilesPerRow;
+		float varianzX = tileWidth * tilePositionVarianz;
+		float varianzY = tileHeight * tilePositionVarianz;
+		float[] tileX = this.tileX;
+		float[] tileY = this.tileY;
+		float[] tileWind = this.tileWind;
+		float[] tileWindAcceleration = this.tileWindAcceleration;
+		float startX = newRowTilesOffset;
+		for (int i = start; i < end; i++, startX += tileWidth) {
+			tileX[i] = startX + randomNumberGenerator.nextFloat() * varianzX;
+			tileY[i] = startY + randomNumberGenerator.nextFloat() * varianzY;
+			tileWind[i] = newRowWindSpeed;
+			tileWindAcceleration[i] = 0f;
 		}
-		return row;
+		rowCount++;
 	}
 
 	/**
@@ -396,34 +438,56 @@ public class WeatherEffectLayer extends EffectLayer {
 		else if (effectSpeed > effectSpeedMax)
 			effectSpeed = effectSpeedMax;
 
-		for (int i = 0; i < tileLayer.size();) {
-			List<Rectangle> row = tileLayer.get(i);
+		// load frequently used variables into registers
+		float[] tileX = this.tileX;
+		float[] tileY = this.tileY;
+		float[] tileWind = this.tileWind;
+		float[] tileWindAcceleration = this.tileWindAcceleration;
+		int tilesPerRow = newRowTilesPerRow;
+		boolean changeWind = randomWindCountTile > 1.4f;
+		float windAcc = internalWindAcceleration;
+		float windMin = windSpeedMin;
+		float windMax = windSpeedMax;
+		float windFactor = newRowWindSpeed < 0f ? -.4f : .4f;
+		float effectSpeed = this.effectSpeed;
+
+		for (int i = 0; i < rowCount;) {
+			int start = ((firstRow + i) % rowCapacity) * tilesPerRow;
+			int end = start + tilesPerRow;
 			float yPos = 0f;
-			for (Rectangle clip : row) {
+			for (int j = start; j < end; j++) {
 				// variable wind acceleration (part 1)
-				if (randomWindCountTile > 1.4f) {
-					clip.height = (randomNumberGenerator.nextFloat() - .5f)
-							* internalWindAcceleration;
+				if (changeWind) {
+					tileWindAcceleration[j] = (randomNumberGenerator
+							.nextFloat() - .5f)
+							* windAcc;
 				}
-				clip.width += clip.height * deltaTime;
-				if (clip.width < windSpeedMin)
-					clip.width = windSpeedMin;
-				else if (clip.width > windSpeedMax)
-					clip.width = windSpeedMax;
-				clip.y -= (effectSpeed + (newRowWindSpeed < 0f ? -clip.width
-						: clip.width) * .4f)
+				float wind = tileWind[j] + tileWindAcceleration[j] * deltaTime;
+				if (wind < windMin)
+					wind = windMin;
+				else if (wind > windMax)
+					wind = windMax;
+				tileWind[j] = wind;
+				float y = tileY[j] - (effectSpeed + wind * windFactor)
 						* deltaSpeed;
-				clip.x += clip.width * deltaSpeed;
-				yPos += clip.y;
+				tileY[j] = y;
+				tileX[j] += wind * deltaSpeed;
+				yPos += y;
 			}
-			yPos /= row.size();
+			yPos /= tilesPerRow;
 			// remove rows out of view
 			if (i == 0 && yPos < internalRemoveRow) {
-				recycleRow = tileLayer.remove(0);
+				firstRow = (firstRow + 1) % rowCapacity;
+				rowCount--;
 			} else {
 				i++;
-				if (i == tileLayer.size() && play && yPos < internalNewRow) {
-					tileLayer.add(newRow((int) yPos + tileHeight));
+				if (i == rowCount && play && yPos < internalNewRow) {
+					newRow((int) yPos + tileHeight);
+					// the ring may have grown
+					tileX = this.tileX;
+					tileY = this.tileY;
+					tileWind = this.tileWind;
+					tileWindAcceleration = this.tileWindAcceleration;
 				}
 			}
 		}
@@ -461,10 +525,15 @@ public class WeatherEffectLayer extends EffectLayer {
 		float x4 = x2 - tWidth;
 		float y4 = y2 - tHeight;
 
-		for (List<Rectangle> row : tileLayer) {
-			for (Rectangle clip : row) {
-				float x = clip.x;
-				float y = clip.y;
+		float[] tileX = this.tileX;
+		float[] tileY = this.tileY;
+		int tilesPerRow = newRowTilesPerRow;
+		for (int r = 0; r < rowCount; r++) {
+			int start = ((firstRow + r) % rowCapacity) * tilesPerRow;
+			int end = start + tilesPerRow;
+			for (int j = start; j < end; j++) {
+				float x = tileX[j];
+				float y = tileY[j];
 				if (x > x3 && y > y3 && x < x2 && y < y2) {
 					// texel space origin is upper left corner (unlike screen
 					// space)
@@ -496,14 +565,6 @@ public class WeatherEffectLayer extends EffectLayer {
 		if (flip) {
 			batch.setTransformMatrix(batch.getTransformMatrix().idt());
 		}
-		/*
-		 * if (debug) { batch.end(); List<Rectangle> rects = new
-		 * ArrayList<Rectangle>(); for (List<Rectangle> row : tileLayer) for
-		 * (Rectangle clip : row) rects.add(new Rectangle(clip.x, clip.y,
-		 * Math.abs(tWidth), Math.abs(tHeight))); DebugHelper.debugRectangle(new
-		 * Color(1f, 0.67f, 0f, .4f), flip ? compTransMatrix(batch, cam) : null,
-		 * rects .toArray(new Rectangle[0])); batch.begin(); }
-		 */
 	}
 
 	private Matrix4 compTransMatrix(SpriteBatch batch, Camera cam) {
@@ -513,7 +574,8 @@ public class WeatherEffectLayer extends EffectLayer {
 	}
 
 	public void dispose() {
-		tileLayer = null;
+		tileX = tileY = tileWind = tileWindAcceleration = null;
+		rowCount = 0;
 		tRef.dispose();
 	}
 
@@ -525,5 +587,7 @@ public class WeatherEffectLayer extends EffectLayer {
 			ClassNotFoundException {
 		in.defaultReadObject();
 		loadTexture();
+		if (tileX == null)
+			fillLayer();
 	}
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.benchmark;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.ridiculousRPG.HeadlessGameBase;
+import com.ridiculousRPG.event.EventObject;
+import com.ridiculousRPG.event.EventObject.MoveTransformation;
+
+/**
+ * A micro benchmark which is executed by the {@link BenchmarkSuite}.<br>
+ * The suite calls {@link #setUp(HeadlessGameBase)} once, then it calls
+ * {@link #operation()} as often as possible during the warmup and the
+ * measurement iterations. The score is the average time per operation.<br>
+ * Every operation must return a value which depends on its computation. The
+ * values are consumed by the suite, which prevents the JIT compiler from
+ * eliminating the computation.
+ * 
+ * @author Alexander Baumgartner
+ */
+public abstract class Benchmark {
+	/**
+	 * Seed for all random values. Every run computes the same data.
+	 */
+	public static final long SEED = 4711L;
+
+	/**
+	 * The name printed in the result table
+	 * 
+	 * @return the simple class name
+	 */
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * Prepares the benchmark. Called by the main thread of the game.
+	 * 
+	 * @param game
+	 * @throws Exception
+	 */
+	public void setUp(HeadlessGameBase game) throws Exception {
+	}
+
+	/**
+	 * Executes one operation. Called by the main thread of the game.
+	 * 
+	 * @return a value computed by the operation
+	 * @throws Exception
+	 */
+	public abstract long operation() throws Exception;
+
+	/**
+	 * Releases all resources. Called by the main thread of the game.
+	 * 
+	 * @throws Exception
+	 */
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * Creates invisible events without handler and without image. The events
+	 * are randomly spread over the given area.
+	 * 
+	 * @param count
+	 * @param areaWidth
+	 * @param areaHeight
+	 * @param random
+	 * @return the created events
+	 */
+	protected static List<EventObject> createEvents(int count,
+			float areaWidth, float areaHeight, Random random) {
+		MoveTransformation mvTrans = new MoveTransformation() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void set(float srcX, float srcY, Point2D.Float target) {
+				target.x = srcX;
+				target.y = srcY;
+			}
+		};
+		List<EventObject> events = new ArrayList<EventObject>(count);
+		for (int i = 0; i < count; i++) {
+			EventObject ev = new EventObject(mvTrans);
+			ev.id = i;
+			float x = random.nextFloat() * areaWidth;
+			float y = random.nextFloat() * areaHeight;
+			ev.setTouchBound(new Rectangle2D.Float(x, y, 32f, 32f));
+			ev.drawBound.setRect(x, y, 32f, 48f);
+			ev.z = .1f + random.nextInt(3) * 50f;
+			events.add(ev);
+		}
+		return events;
+	}
+}
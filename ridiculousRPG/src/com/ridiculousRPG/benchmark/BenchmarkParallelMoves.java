@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ridiculousRPG.benchmark;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Random;
+
+import com.ridiculousRPG.event.EventObject;
+import com.ridiculousRPG.event.EventTrigger;
+import com.ridiculousRPG.event.EventTriggerAdapter;
+import com.ridiculousRPG.event.ParallelMoveComputer;
+import com.ridiculousRPG.event.PolygonObject;
+import com.ridiculousRPG.movement.Movable;
+import com.ridiculousRPG.movement.auto.MoveRandomAdapter;
+
+/**
+ * This class measures how the computation of event moves scales with the
+ * number of threads (see {@link ParallelMoveComputer}).<br>
+ * No graphics context is needed. Run it with the number of events as first
+ * argument (default 10000) and the number of frames as second argument
+ * (default 500).<br>
+ * The output shows the average time per frame for 1 thread up to one thread
+ * per available processor. Every run computes the same moves (see
+ * {@link Benchmark#SEED}), no matter how many threads are used.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class BenchmarkParallelMoves {
+	private static final float DELTA_TIME = 1f / 60f;
+
+	public static void main(String[] args) {
+		int eventCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		new BenchmarkParallelMoves().run(eventCount, frames, System.out);
+	}
+
+	public void run(int eventCount, int frames, PrintStream out) {
+		List<EventObject> events = Benchmark.createEvents(eventCount, 4096f,
+				4096f, new Random(Benchmark.SEED));
+		for (int i = 0; i < eventCount; i++)
+			events.get(i).setMoveHandler(new MoveRandomAdapter());
+		EventTrigger noTrigger = new EventTriggerAdapter() {
+			@Override
+			public void compute(float deltaTime, boolean actionKeyDown,
+					List<EventObject> events, List<PolygonObject> polys) {
+			}
+
+			@Override
+			public void postScriptToExec(String description, String script,
+					String invokeFnc, Object... invokeParm) {
+			}
+
+			@Override
+			public boolean isScriptQueueEmpty() {
+				return true;
+			}
+		};
+		// the whole benchmark is one move pass
+		Movable.beginMovePass();
+		int cores = Runtime.getRuntime().availableProcessors();
+		out.println(eventCount + " events, " + frames + " frames, " + cores
+				+ " processors");
+		long singleThreaded = 0;
+		for (int threads = 1; threads <= cores; threads++) {
+			ParallelMoveComputer computer = new ParallelMoveComputer(threads);
+			// warm up
+			for (int i = 0; i < frames / 5; i++)
+				computeFrame(computer, events, noTrigger);
+			long start = System.nanoTime();
+			for (int i = 0; i < frames; i++)
+				computeFrame(computer, events, noTrigger);
+			long perFrame = (System.nanoTime() - start) / frames;
+			computer.dispose();
+			if (threads == 1)
+				singleThreaded = perFrame;
+			out.println("threads: " + threads + "\tframe: " + perFrame / 1000
+					+ " us\tspeedup: " + (float) singleThreaded / perFrame);
+		}
+		Movable.endMovePass();
+	}
+
+	private void computeFrame(ParallelMoveComputer computer,
+			List<EventObject> events, EventTrigger trigger) {
+		computer.compute(DELTA_TIME, events, trigger);
+		for (int i = 0, len = events.size(); i < len; i++)
+			events.get(i).commitMove();
+	}
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ridiculousRPG.GameOptions;
+import com.ridiculousRPG.GameOptionsDefaultConfigReader;
+import com.ridiculousRPG.HeadlessGameBase;
+
+/**
+ * Runs all benchmarks in a headless game (see {@link HeadlessGameBase}). No
+ * window and no graphics card is needed, therefore the suite can run on any
+ * build machine.<br>
+ * <br>
+ * Every benchmark is warmed up and measured in several iterations of a fixed
+ * duration. The output is a table with the average time per operation and
+ * the standard deviation over all measured iterations.<br>
+ * <br>
+ * Usage (run from the games directory, which contains the data folder):<br>
+ * <code>BenchmarkSuite [-wi n] [-i n] [-ms n] [-csv file] [-ini file] [name]</code>
+ * <ul>
+ * <li>-wi: warmup iterations (default 5)</li>
+ * <li>-i: measurement iterations (default 10)</li>
+ * <li>-ms: duration of one iteration in milliseconds (default 200)</li>
+ * <li>-csv: writes the results to the given csv file</li>
+ * <li>-ini: the game options (default data/game.ini, if it exists)</li>
+ * <li>name: only runs benchmarks which contain this name</li>
+ * </ul>
+ * 
+ * @author Alexander Baumgartner
+ */
+public class BenchmarkSuite {
+	public int warmupIterations = 5;
+	public int iterations = 10;
+	public long iterationMillis = 200;
+
+	private List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+	private List<Result> results = new ArrayList<Result>();
+	// consumes the values returned by the benchmarks
+	private volatile long sink;
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkSuite suite = new BenchmarkSuite();
+		String ini = "data/game.ini";
+		String csv = null;
+		String filter = null;
+		for (int i = 0; i < args.length; i++) {
+			if ("-wi".equals(args[i]))
+				suite.warmupIterations = Integer.parseInt(args[++i]);
+			else if ("-i".equals(args[i]))
+				suite.iterations = Integer.parseInt(args[++i]);
+			else if ("-ms".equals(args[i]))
+				suite.iterationMillis = Long.parseLong(args[++i]);
+			else if ("-csv".equals(args[i]))
+				csv = args[++i];
+			else if ("-ini".equals(args[i]))
+				ini = args[++i];
+			else
+				filter = args[i];
+		}
+		File iniFile = new File(ini);
+		GameOptions options = iniFile.exists() ? new GameOptionsDefaultConfigReader(
+				iniFile).options
+				: new GameOptions();
+		// Only the global scripts are needed. The init script of the game
+		// would start the title menu.
+		options.initScript = "data/script/global";
+		options.profile = false;
+		// the benchmarks drive the maps and triggers directly
+		options.pipelinedSimulation = false;
+		options.profileExport = null;
+
+		suite.addDefaultBenchmarks();
+		HeadlessGameBase game = HeadlessGameBase.start(options);
+		try {
+			suite.run(game, filter, System.out);
+		} finally {
+			game.dispose();
+		}
+		if (csv != null) {
+			Writer w = new FileWriter(csv);
+			try {
+				suite.writeCsv(w);
+			} finally {
+				w.close();
+			}
+		}
+		// The event trigger threads are daemon threads
+		System.exit(0);
+	}
+
+	/**
+	 * Adds the benchmarks for collision detection, movements, depth sorting,
+	 * tile culling, script dispatching, object states and saving/loading.
+	 */
+	public void addDefaultBenchmarks() {
+		add(new CollisionBenchmark());
+		add(new MovementBenchmark());
+		add(new DepthSortBenchmark());
+		add(new TileCullingBenchmark());
+		add(new ScriptDispatchBenchmark());
+		add(new ObjectStateBenchmark());
+		add(new SaveLoadBenchmark());
+	}
+
+	public void add(Benchmark benchmark) {
+		benchmarks.add(benchmark);
+	}
+
+	/**
+	 * Runs all benchmarks which contain the filter in their name. Must be
+	 * called by the thread which started the game.
+	 * 
+	 * @param game
+	 * @param filter
+	 *            may be null
+	 * @param out
+	 * @throws Exception
+	 */
+	public void run(HeadlessGameBase game, String filter, PrintStream out)
+			throws Exception {
+		out.println(String.format("%-28s %6s %4s %14s %12s  %s", "Benchmark",
+				"Mode", "Cnt", "Score", "Error", "Units"));
+		for (Benchmark b : benchmarks) {
+			if (filter != null && !b.getName().contains(filter))
+				continue;
+			b.setUp(game);
+			try {
+				for (int i = 0; i < warmupIterations; i++)
+					iteration(b);
+				double[] scores = new double[iterations];
+				for (int i = 0; i < iterations; i++)
+					scores[i] = iteration(b);
+				Result r = new Result(b.getName(), scores);
+				results.add(r);
+				out.println(String.format("%-28s %6s %4d %14.1f %12.1f  %s", r
+						.getName(), "avgt", iterations, r.getMean(), r
+						.getStdDev(), "ns/op"));
+			} finally {
+				b.tearDown();
+			}
+		}
+	}
+
+	/**
+	 * Executes the operation until the iteration time is over.
+	 * 
+	 * @return nanoseconds per operation
+	 */
+	private double iteration(Benchmark b) throws Exception {
+		long duration = iterationMillis * 1000000L;
+		long result = 0L;
+		long ops = 0L;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			result ^= b.operation();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < duration);
+		sink ^= result;
+		return (double) elapsed / ops;
+	}
+
+	/**
+	 * @return The results of all executed benchmarks
+	 */
+	public List<Result> getResults() {
+		return results;
+	}
+
+	/**
+	 * Writes one line per benchmark: name, iterations, mean and standard
+	 * deviation (in nanoseconds per operation)
+	 * 
+	 * @param w
+	 * @throws IOException
+	 */
+	public void writeCsv(Writer w) throws IOException {
+		w.write("benchmark,iterations,mean,stddev\n");
+		for (Result r : results) {
+			w.write(r.getName() + "," + r.scores.length + "," + r.getMean()
+					+ "," + r.getStdDev() + "\n");
+		}
+	}
+
+	/**
+	 * The measured scores of one benchmark
+	 * 
+	 * @author Alexander Baumgartner
+	 */
+	public static class Result {
+		private final String name;
+		private final double[] scores;
+
+		public Result(String name, double[] scores) {
+			this.name = name;
+			this.scores = scores;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public double getMean() {
+			double sum = 0d;
+			for (double s : scores)
+				sum += s;
+			return scores.length == 0 ? 0d : sum / scores.length;
+		}
+
+		public double getStdDev() {
+			if (scores.length < 2)
+				return 0d;
+			double mean = getMean();
+			double sum = 0d;
+			for (double s : scores)
+				sum += (s - mean) * (s - mean);
+			return Math.sqrt(sum / (scores.length - 1));
+		}
+	}
+}
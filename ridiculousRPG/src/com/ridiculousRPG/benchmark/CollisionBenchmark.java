@@ -0,0 +1,71 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.ridiculousRPG.HeadlessGameBase;
+import com.ridiculousRPG.event.EventObject;
+import com.ridiculousRPG.event.EventTriggerAsync;
+import com.ridiculousRPG.event.PolygonObject;
+import com.ridiculousRPG.movement.auto.MoveRandomAdapter;
+import com.ridiculousRPG.util.BlockingBehavior;
+import com.ridiculousRPG.util.Speed;
+
+/**
+ * Measures one simulation tick of the {@link EventTriggerAsync}: computing
+ * the moves and the collision detection of randomly moving events. Every
+ * fifth event is a static building which blocks the others.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class CollisionBenchmark extends Benchmark {
+	public int eventCount = 500;
+	public float deltaTime = 1f / 60f;
+
+	private EventTriggerAsync trigger;
+	private List<EventObject> events;
+	private List<PolygonObject> polys = new ArrayList<PolygonObject>();
+
+	@Override
+	public void setUp(HeadlessGameBase game) {
+		events = createEvents(eventCount, 2048f, 2048f, new Random(SEED));
+		for (int i = 0; i < eventCount; i++) {
+			EventObject ev = events.get(i);
+			if (i % 5 == 0) {
+				ev.blockingBehavior = BlockingBehavior.BUILDING_LOW;
+			} else {
+				ev.setMoveSpeed(Speed.S07_NORMAL);
+				ev.setMoveHandler(new MoveRandomAdapter());
+			}
+		}
+		trigger = new EventTriggerAsync();
+	}
+
+	@Override
+	public long operation() {
+		trigger.compute(deltaTime, false, events, polys);
+		return Float.floatToIntBits(events.get(1).getX());
+	}
+
+	@Override
+	public void tearDown() {
+		trigger.dispose();
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.ridiculousRPG.HeadlessGameBase;
+import com.ridiculousRPG.event.EventObject;
+
+/**
+ * Measures the depth sorting of the events, which is done once per frame
+ * before drawing the map. Between two sorts some events move a few pixels,
+ * therefore the list is almost sorted (as in a running game).
+ * 
+ * @author Alexander Baumgartner
+ */
+public class DepthSortBenchmark extends Benchmark {
+	public int eventCount = 2000;
+	public int movesPerFrame = 100;
+
+	private List<EventObject> events;
+	private Random random;
+
+	@Override
+	public void setUp(HeadlessGameBase game) {
+		random = new Random(SEED);
+		events = createEvents(eventCount, 2048f, 2048f, random);
+		Collections.sort(events);
+	}
+
+	@Override
+	public long operation() {
+		List<EventObject> events = this.events;
+		for (int i = 0; i < movesPerFrame; i++) {
+			EventObject ev = events.get(random.nextInt(eventCount));
+			ev.drawBound.y += random.nextFloat() * 8f - 4f;
+		}
+		Collections.sort(events);
+		return events.get(0).id;
+	}
+}
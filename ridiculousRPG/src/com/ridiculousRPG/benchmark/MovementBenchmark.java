@@ -0,0 +1,87 @@
+package com.ridiculousRPG.benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.ridiculousRPG.GameBase;
+import com.ridiculousRPG.HeadlessGameBase;
+import com.ridiculousRPG.event.EventObject;
+import com.ridiculousRPG.event.EventTriggerAsync;
+import com.ridiculousRPG.event.ParallelMoveComputer;
+import com.ridiculousRPG.movement.Movable;
+import com.ridiculousRPG.movement.auto.MoveEllipseAdapter;
+import com.ridiculousRPG.movement.auto.MoveRandomAdapter;
+import com.ridiculousRPG.movement.auto.MoveTracerAdapter;
+import com.ridiculousRPG.movement.auto.SteeringGroup;
+import com.ridiculousRPG.util.Speed;
+
+/**
+ * Measures one move pass of the movement handlers without collision
+ * detection: every event computes and commits its move. The moves are
+ * computed by a {@link ParallelMoveComputer} with the configured number of
+ * move threads (as done by the {@link EventTriggerAsync}).<br>
+ * The events are moved by a mix of handlers: random moves, ellipses,
+ * tracers (following the previous event) and steering groups of 16
+ * members.
+ *
+ * @author Alexander Baumgartner
+ */
+public class MovementBenchmark extends Benchmark {
+	public int eventCount = 1000;
+	public int groupSize = 16;
+	public float deltaTime = 1f / 60f;
+
+	private EventTriggerAsync trigger;
+	private ParallelMoveComputer computer;
+	private List<EventObject> events;
+
+	@Override
+	public void setUp(HeadlessGameBase game) {
+		events = createEvents(eventCount, 4096f, 4096f, new Random(SEED));
+		SteeringGroup group = null;
+		int members = 0;
+		for (int i = 0; i < eventCount; i++) {
+			EventObject ev = events.get(i);
+			ev.setMoveSpeed(Speed.S07_NORMAL);
+			switch (i & 3) {
+			case 0:
+				ev.setMoveHandler(new MoveRandomAdapter());
+				break;
+			case 1:
+				ev.setMoveHandler(new MoveEllipseAdapter(new Rectangle(ev
+						.getX(), ev.getY(), 128f, 64f), 0f, false));
+				break;
+			case 2:
+				ev.setMoveHandler(new MoveTracerAdapter(events.get(i - 1)));
+				break;
+			default:
+				if (members++ % groupSize == 0)
+					group = new SteeringGroup();
+				ev.setMoveHandler(group.newAdapter());
+			}
+		}
+		trigger = new EventTriggerAsync();
+		computer = new ParallelMoveComputer(GameBase.$options().moveThreads);
+	}
+
+	@Override
+	public long operation() {
+		List<EventObject> events = this.events;
+		Movable.beginMovePass();
+		try {
+			computer.compute(deltaTime, events, trigger);
+			for (int i = 0, len = events.size(); i < len; i++)
+				events.get(i).commitMove();
+		} finally {
+			Movable.endMovePass();
+		}
+		return Float.floatToIntBits(events.get(1).getX());
+	}
+
+	@Override
+	public void tearDown() {
+		computer.dispose();
+		trigger.dispose();
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.benchmark;
+
+import com.ridiculousRPG.HeadlessGameBase;
+import com.ridiculousRPG.util.ObjectState;
+
+/**
+ * Measures reading, writing and compare-and-set of the variables of an
+ * {@link ObjectState} and its child states, as done by the event handlers
+ * and scripts.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class ObjectStateBenchmark extends Benchmark {
+	// must be a power of two
+	public int variables = 64;
+
+	private ObjectState state;
+	private int counter;
+
+	@Override
+	public void setUp(HeadlessGameBase game) {
+		state = new ObjectState();
+		for (int i = 0; i < variables; i++) {
+			state.setInt(i, i);
+			state.setBool(i, (i & 1) == 0);
+			state.setFloat(i, i * .5f);
+			state.setString(i, "value" + i);
+		}
+		for (int i = 0; i < 8; i++)
+			state.setChild(i, new ObjectState());
+	}
+
+	@Override
+	public long operation() {
+		ObjectState state = this.state;
+		int i = counter++ & (variables - 1);
+		int value = state.getInt(i);
+		state.setInt(i, value + 1);
+		state.casInt(i, value + 1, value);
+		state.setBool(i, !state.getBool(i));
+		state.setFloat(i, state.getFloat(i) + 1f);
+		ObjectState child = state.getChild(i & 7);
+		child.setInt(i, child.getInt(i) + 1);
+		return value + state.getString(i).length() + state.getChangeCount();
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.Random;
+
+import com.ridiculousRPG.HeadlessGameBase;
+import com.ridiculousRPG.event.EventObject;
+import com.ridiculousRPG.movement.auto.MoveRandomAdapter;
+import com.ridiculousRPG.util.ObjectState;
+
+/**
+ * Measures saving and loading a game state in memory: the global
+ * {@link ObjectState} tree and the events of a map are serialized and
+ * deserialized again (as done by the save files). The file system is not
+ * involved.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class SaveLoadBenchmark extends Benchmark {
+	public int eventCount = 200;
+	public int childStates = 64;
+
+	private ObjectState globalState;
+	private List<EventObject> events;
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+
+	@Override
+	public void setUp(HeadlessGameBase game) {
+		Random random = new Random(SEED);
+		globalState = new ObjectState();
+		for (int i = 0; i < childStates; i++) {
+			ObjectState child = new ObjectState();
+			for (int j = 0; j < 32; j++) {
+				child.setInt(j, random.nextInt());
+				child.setBool(j, random.nextBoolean());
+			}
+			child.setString(0, "child" + i);
+			globalState.setChild(i, child);
+		}
+		events = createEvents(eventCount, 2048f, 2048f, random);
+		for (int i = 0; i < eventCount; i += 2)
+			events.get(i).setMoveHandler(new MoveRandomAdapter());
+	}
+
+	@Override
+	public long operation() throws IOException, ClassNotFoundException {
+		buffer.reset();
+		ObjectOutputStream oOut = new ObjectOutputStream(buffer);
+		oOut.writeObject(globalState);
+		oOut.writeObject(events);
+		oOut.close();
+		ObjectInputStream oIn = new ObjectInputStream(new ByteArrayInputStream(
+				buffer.toByteArray()));
+		ObjectState state = (ObjectState) oIn.readObject();
+		List<?> loaded = (List<?>) oIn.readObject();
+		oIn.close();
+		return buffer.size() + loaded.size() + state.getChild(0).getInt(0);
+	}
+}
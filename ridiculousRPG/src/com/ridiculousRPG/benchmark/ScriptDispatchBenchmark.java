@@ -0,0 +1,72 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.ridiculousRPG.HeadlessGameBase;
+import com.ridiculousRPG.event.EventTriggerAsync;
+
+/**
+ * Measures posting a burst of scripts to the {@link EventTriggerAsync} until
+ * all of them are executed by the script thread. Half of the scripts are
+ * evaluated, the other half invokes a function with parameters (as the event
+ * handlers do).<br>
+ * The last script of a burst counts down a latch. All scripts have the same
+ * ordering key, therefore the waiting main thread is woken up after the
+ * whole burst has been executed.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class ScriptDispatchBenchmark extends Benchmark {
+	public int scriptsPerBurst = 16;
+	public String evalScript = "var benchmarkVar = 1 + 1;";
+	public String invokeScript = "function onTimer(a, b) { return a + b; }";
+	public String doneScript = "function onDone(latch) { latch.countDown(); }";
+
+	private EventTriggerAsync trigger;
+	private Integer one = Integer.valueOf(1);
+
+	@Override
+	public void setUp(HeadlessGameBase game) {
+		trigger = new EventTriggerAsync();
+	}
+
+	@Override
+	public long operation() throws InterruptedException {
+		for (int i = 0; i < scriptsPerBurst; i++) {
+			if ((i & 1) == 0)
+				trigger.postScriptToExec("benchmark", evalScript, null);
+			else
+				trigger.postScriptToExec("benchmark", invokeScript,
+						"onTimer", one, one);
+		}
+		CountDownLatch done = new CountDownLatch(1);
+		trigger.postScriptToExec("benchmark", doneScript, "onDone", done);
+		// a failing script would block the suite forever
+		if (!done.await(10L, TimeUnit.SECONDS))
+			throw new IllegalStateException("The script burst hasn't been "
+					+ "executed within 10 seconds");
+		return scriptsPerBurst + done.getCount();
+	}
+
+	@Override
+	public void tearDown() {
+		trigger.dispose();
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
+import com.ridiculousRPG.HeadlessGameBase;
+import com.ridiculousRPG.event.EventObject;
+import com.ridiculousRPG.map.MapRenderRegion;
+import com.ridiculousRPG.map.tiled.TiledMapWithEvents;
+
+/**
+ * Measures drawing a large map with {@link TiledMapWithEvents#draw}: the
+ * snapshot of the visible events, the culling of the static tiles and the
+ * merging of the events into the tile layers. The map is drawn into the
+ * sprite batch of the headless game, therefore the vertex computation is
+ * measured too (the OpenGL calls are ignored).<br>
+ * The camera moves diagonally over the map.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class TileCullingBenchmark extends Benchmark {
+	public int mapTiles = 256;
+	public int tileSize = 32;
+	public int eventCount = 500;
+	public float viewportWidth = 800f, viewportHeight = 600f;
+
+	private TiledMapWithEvents map;
+	private OrthographicCamera camera;
+	private SpriteBatch spriteBatch;
+	private Texture texture;
+
+	@Override
+	public void setUp(HeadlessGameBase game) {
+		Pixmap pm = new Pixmap(256, 256, Format.RGBA8888);
+		texture = new Texture(pm);
+		pm.dispose();
+		TextureRegion[] tiles = new TextureRegion[64];
+		for (int i = 0; i < tiles.length; i++)
+			tiles[i] = new TextureRegion(texture, (i & 7) * tileSize, (i >> 3)
+					* tileSize, tileSize, tileSize);
+		// two layers: ground (z=0) and every fourth tile with z>0
+		int n = mapTiles * mapTiles;
+		MapRenderRegion[] regions = new MapRenderRegion[n + n / 4];
+		int k = 0;
+		for (int row = 0; row < mapTiles; row++) {
+			for (int col = 0; col < mapTiles; col++) {
+				float x = col * tileSize;
+				float y = row * tileSize;
+				TextureRegion tile = tiles[(row * 7 + col) & 63];
+				regions[k++] = new MapRenderRegion(tile, x, y, 0f);
+				if ((col & 3) == 0)
+					regions[k++] = new MapRenderRegion(tile, x, y, 50f);
+			}
+		}
+		MapRenderRegion[] staticRegions = Arrays.copyOf(regions, k);
+		Arrays.sort(staticRegions);
+		int mapSize = mapTiles * tileSize;
+		map = new TiledMapWithEvents(staticRegions, mapSize, mapSize,
+				tileSize, tileSize);
+		List<EventObject> events = createEvents(eventCount, mapSize,
+				mapSize, new Random(SEED));
+		for (int i = 0; i < eventCount; i++) {
+			EventObject ev = events.get(i);
+			ev.setImage(new AtlasRegion(texture, (i & 7) * tileSize, 0,
+					tileSize, tileSize + tileSize / 2));
+			map.put(ev);
+		}
+		camera = new OrthographicCamera(viewportWidth, viewportHeight);
+		spriteBatch = game.getSpriteBatch();
+	}
+
+	@Override
+	public long operation() {
+		float mapSize = mapTiles * tileSize;
+		OrthographicCamera camera = this.camera;
+		camera.position.x = (camera.position.x + 7f)
+				% (mapSize - viewportWidth);
+		camera.position.y = (camera.position.y + 5f)
+				% (mapSize - viewportHeight);
+		spriteBatch.begin();
+		map.draw(spriteBatch, camera, false);
+		spriteBatch.end();
+		return (long) camera.position.x;
+	}
+
+	@Override
+	public void tearDown() {
+		map.dispose();
+		texture.dispose();
+	}
+}
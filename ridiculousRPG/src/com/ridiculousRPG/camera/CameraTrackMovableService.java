@@ -27,7 +27,7 @@ import com.ridiculousRPG.GameBase;
 import com.ridiculousRPG.event.EventObject;
 import com.ridiculousRPG.map.MapRenderService;
 import com.ridiculousRPG.movement.Movable;
-import com.ridiculousRPG.service.Computable;
+import com.ridiculousRPG.service.DoubleBuffered;
 import com.ridiculousRPG.service.GameServiceDefaultImpl;
 
 /**
@@ -36,12 +36,15 @@ import com.ridiculousRPG.service.GameServiceDefaultImpl;
  * @author Alexander Baumgartner
  */
 public class CameraTrackMovableService extends GameServiceDefaultImpl implements
-		Computable, Serializable {
+		DoubleBuffered, Serializable {
 	private static final long serialVersionUID = 1L;
 
 	private transient Movable trackObj;
 
 	private float oldX, oldY;
+	// position computed by the simulation thread (pipelined simulation)
+	private transient float trackX, trackY;
+	private transient volatile boolean trackPending;
 
 	public CameraTrackMovableService() {
 	}
@@ -77,6 +80,31 @@ public class CameraTrackMovableService extends GameServiceDefaultImpl implements
 			return;
 		float newX = trackObj.getX();
 		float newY = trackObj.getY();
+		if (trackObj instanceof EventObject) {
+			// follow the interpolated position (fixed timestep)
+			float alpha = GameBase.$serviceProvider().getSimulationTimestep()
+					.getAlpha();
+			newX += ((EventObject) trackObj).getInterpolationOffsetX(alpha);
+			newY += ((EventObject) trackObj).getInterpolationOffsetY(alpha);
+		}
+		if (GameBase.$serviceProvider().isPipelined()) {
+			// the camera is moved with the snapshot of the map
+			trackX = newX;
+			trackY = newY;
+			trackPending = true;
+		} else {
+			moveCamera(newX, newY);
+		}
+	}
+
+	public void snapshot(Camera camera) {
+		if (trackPending) {
+			trackPending = false;
+			moveCamera(trackX, trackY);
+		}
+	}
+
+	private void moveCamera(float newX, float newY) {
 		if (oldX != newX || oldY != newY) {
 			Camera cam = GameBase.$().getCamera();
 			cam.translate(newX - oldX, newY - oldY, 0f);
@@ -90,6 +118,7 @@ public class CameraTrackMovableService extends GameServiceDefaultImpl implements
 	 * Centers the camera to the tracked object (event)
 	 */
 	public void centerTrackObj() {
+		trackPending = false;
 		if (trackObj == null)
 			return;
 		Camera cam = GameBase.$().getCamera();
@@ -123,7 +152,8 @@ public class CameraTrackMovableService extends GameServiceDefaultImpl implements
 			Movable obj = GameBase.$().getGlobalEvents().get(objName);
 			if (obj == null) {
 				Array<MapRenderService> serviceIter = GameBase
-						.$serviceProvider().getServices(MapRenderService.class);
+						.$serviceProvider().getServiceList(
+								MapRenderService.class).snapshot();
 				for (int i = 0; obj == null && i < serviceIter.size; i++) {
 					obj = serviceIter.get(i).getMap().get(objName);
 				}
@@ -33,6 +33,7 @@ import com.badlogic.gdx.graphics.g2d.ParticleEmitter;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
 import com.ridiculousRPG.GameBase;
@@ -44,8 +45,8 @@ import com.ridiculousRPG.movement.Movable;
 import com.ridiculousRPG.util.BlockingBehavior;
 import com.ridiculousRPG.util.ColorSerializable;
 import com.ridiculousRPG.util.Direction;
-import com.ridiculousRPG.util.ExecWithGlContext;
 import com.ridiculousRPG.util.ObjectState;
+import com.ridiculousRPG.util.ParticleEffectLoader;
 import com.ridiculousRPG.util.Speed;
 import com.ridiculousRPG.util.TextureRegionLoader;
 import com.ridiculousRPG.util.TextureRegionLoader.TextureRegionRef;
@@ -59,6 +60,10 @@ public class EventObject extends Movable implements Comparable<EventObject>,
 	private static final long serialVersionUID = 1L;
 
 	private static final float COLOR_WHITE_BITS = Color.WHITE.toFloatBits();
+	// off-screen effects are fast-forwarded on re-entry, but not more than
+	// this time (in seconds) and with this step width
+	private static final float EFFECT_FAST_FORWARD_MAX = 1.5f;
+	private static final float EFFECT_FAST_FORWARD_STEP = .1f;
 
 	private EventType type;
 	private TileAnimation animation;
@@ -74,6 +79,9 @@ public class EventObject extends Movable implements Comparable<EventObject>,
 	private MoveTransformation mvTransform;
 	private Color color = new ColorSerializable(1f, 1f, 1f, 1f);
 	private float colorFloatBits = color.toFloatBits();
+	// draw positions before and after the last committed move (used for
+	// interpolation if the simulation runs with a fixed timestep)
+	private transient float moveFromX, moveFromY, moveToX, moveToY;
 
 	/**
 	 * Set the property "id" in the Tiled editor to identify an event.<br>
@@ -133,6 +141,13 @@ public class EventObject extends Movable implements Comparable<EventObject>,
 	// internally used switch to increase performance for
 	// events which are not drawn onto the screen (out of view)
 	private boolean drawDoneSwitch = false;
+	// time the effects haven't been updated because they were out of view
+	private transient float effectIdleTime;
+	// simulated time the effects haven't been updated because they are
+	// updated by the main thread (pipelined simulation)
+	private transient float effectPendingTime;
+	// only used by the main thread to draw the actual state
+	private static final DrawState ACTUAL_STATE = new DrawState();
 
 	/**
 	 * Creates an empty new event.
@@ -213,14 +228,9 @@ public class EventObject extends Movable implements Comparable<EventObject>,
 		}
 	}
 
-	private ParticleEffect loadParticleEffect(final FileHandle fh) {
-		final ParticleEffect effect = new ParticleEffect();
-		new ExecWithGlContext() {
-			@Override
-			public void exec() {
-				effect.load(fh, fh.parent());
-			}
-		}.runWait();
+	private ParticleEffect loadParticleEffect(FileHandle fh) {
+		// the effect is returned to the pool on dispose
+		ParticleEffect effect = ParticleEffectLoader.load(fh);
 		effect.setPosition(drawBound.x + drawBound.width * .5f, drawBound.y);
 		visible = true;
 		return effect;
@@ -294,6 +304,9 @@ public class EventObject extends Movable implements Comparable<EventObject>,
 	private void setDrawbounds(float x, float y) {
 		drawBound.x = x;
 		drawBound.y = y;
+		// if pipelined, the effects are positioned by the main thread
+		if (GameBase.$serviceProvider().isPipelined())
+			return;
 		if (effectRear != null) {
 			effectRear.setPosition(x + drawBound.width * .5f, y);
 		}
@@ -351,13 +364,13 @@ public class EventObject extends Movable implements Comparable<EventObject>,
 			return false;
 
 		// perform exact check
-		int endIDX = other.vertexX.length - 1;
+		int endIDX = other.getVertexCount() - 1;
 		float x1, y1, x2, y2;
-		x2 = other.vertexX[endIDX];
-		y2 = other.vertexY[endIDX];
+		x2 = other.getX(endIDX);
+		y2 = other.getY(endIDX);
 		for (int i = endIDX - 1; i >= 0; i--) {
-			x1 = other.vertexX[i];
-			y1 = other.vertexY[i];
+			x1 = other.getX(i);
+			y1 = other.getY(i);
 			if (rect.intersectsLine(x1, y1, x2, y2))
 				return true;
 			x2 = x1;
@@ -417,56 +430,108 @@ public class EventObject extends Movable implements Comparable<EventObject>,
 
 	@Override
 	public void compute(float deltaTime, EventTrigger eventTrigger) {
+		moveFromX = moveToX = drawBound.x;
+		moveFromY = moveToY = drawBound.y;
 		super.compute(deltaTime, eventTrigger);
 		collision.clear();
-		if (drawDoneSwitch) {
-			if (effectFront != null) {
-				effectFront.update(deltaTime);
-			}
-			if (effectRear != null) {
-				effectRear.update(deltaTime);
+		if (effectFront != null || effectRear != null) {
+			if (drawDoneSwitch) {
+				if (GameBase.$serviceProvider().isPipelined()) {
+					// the effects are simulated by the main thread
+					effectPendingTime += deltaTime;
+				} else {
+					if (effectIdleTime > 0f)
+						fastForwardEffects(effectIdleTime);
+					effectIdleTime = 0f;
+					updateEffects(deltaTime);
+				}
+			} else {
+				// effects out of view are not simulated
+				effectIdleTime += deltaTime;
 			}
-			drawDoneSwitch = false;
+		}
+		drawDoneSwitch = false;
+	}
+
+	/**
+	 * Simulates the effects for the time they were out of view, but at most
+	 * {@value #EFFECT_FAST_FORWARD_MAX} seconds with a reduced step rate. This
+	 * avoids that effects pop in with a burst.
+	 */
+	private void fastForwardEffects(float idleTime) {
+		float time = Math.min(idleTime, EFFECT_FAST_FORWARD_MAX);
+		for (; time > EFFECT_FAST_FORWARD_STEP; time -= EFFECT_FAST_FORWARD_STEP)
+			updateEffects(EFFECT_FAST_FORWARD_STEP);
+		updateEffects(time);
+	}
+
+	private void updateEffects(float deltaTime) {
+		if (effectFront != null) {
+			effectFront.update(deltaTime);
+		}
+		if (effectRear != null) {
+			effectRear.update(deltaTime);
 		}
 	}
 
 	public void draw(SpriteBatch spriteBatch) {
+		draw(spriteBatch, 1f);
+	}
+
+	/**
+	 * Draws the event at the interpolated position between the draw position
+	 * before and after the last committed move.
+	 * 
+	 * @param spriteBatch
+	 * @param alpha
+	 *            The interpolation factor (1 = actual position)
+	 * @see com.ridiculousRPG.util.FixedTimestep#getAlpha()
+	 */
+	public void draw(SpriteBatch spriteBatch, float alpha) {
 		if (visible) {
+			snapshot(ACTUAL_STATE, alpha, true);
+			ACTUAL_STATE.draw(spriteBatch);
+		}
+	}
+
+	/**
+	 * Copies everything which is needed to draw this event into the given
+	 * state. Only events in view are animated and their effects are
+	 * simulated.
+	 * 
+	 * @param state
+	 * @param alpha
+	 *            The interpolation factor (1 = actual position)
+	 * @param inView
+	 *            True if the event is visible on the screen
+	 * @see com.ridiculousRPG.service.DoubleBuffered
+	 */
+	public void snapshot(DrawState state, float alpha, boolean inView) {
+		state.event = this;
+		state.image = image;
+		state.effectFront = effectFront;
+		state.effectRear = effectRear;
+		state.color.set(color);
+		state.colorFloatBits = colorFloatBits;
+		state.x = drawBound.x;
+		state.y = drawBound.y;
+		state.width = drawBound.width;
+		state.height = drawBound.height;
+		state.offsetX = getOffsetX() + getInterpolationOffsetX(alpha);
+		state.offsetY = getOffsetY() + getInterpolationOffsetY(alpha);
+		state.z = z;
+		state.rotation = rotation;
+		state.scaleX = scaleX;
+		state.scaleY = scaleY;
+		state.effectTime = state.effectIdleTime = 0f;
+		if (inView) {
 			drawDoneSwitch = true;
-			float eventColorBits = this.colorFloatBits;
-			float gameColorBits = GameBase.$().getGameColorBits();
-			if (gameColorBits != COLOR_WHITE_BITS) {
-				if (eventColorBits != COLOR_WHITE_BITS) {
-					Color c1 = this.color;
-					Color c2 = GameBase.$().getGameColorTint();
-					eventColorBits = Color.toFloatBits(c1.r * c2.r,
-							c1.g * c2.g, c1.b * c2.b, c1.a * c2.a);
-				} else {
-					eventColorBits = gameColorBits;
-				}
+			// hand over the effect simulation to the main thread
+			if (effectPendingTime > 0f) {
+				state.effectTime = effectPendingTime;
+				state.effectIdleTime = effectIdleTime;
+				effectPendingTime = effectIdleTime = 0f;
 			}
-			float x = drawBound.x;
-			float y = drawBound.y;
-			float h = drawBound.height;
-			float w = drawBound.width;
-			float oX = getOffsetX();
-			float oY = getOffsetY();
-			spriteBatch.setColor(eventColorBits);
-			boolean trans = oX != 0 || oY != 0;
-			if (trans)
-				spriteBatch.setTransformMatrix(spriteBatch.getTransformMatrix()
-						.translate(oX, oY, 0));
-			if (effectRear != null)
-				effectRear.draw(spriteBatch);
-			if (image != null)
-				spriteBatch.draw(image, x, y, w * .5f, h * .5f, w, h, scaleX,
-						scaleY, rotation);
-			if (effectFront != null)
-				effectFront.draw(spriteBatch);
-			if (trans)
-				spriteBatch.setTransformMatrix(spriteBatch.getTransformMatrix()
-						.translate(-oX, -oY, 0));
-			spriteBatch.setColor(gameColorBits);
 		}
 	}
 
@@ -525,13 +590,19 @@ public class EventObject extends Movable implements Comparable<EventObject>,
 	 *         will be rendered later and overwrites the other one).
 	 */
 	public int compareTo(MapRenderRegion o) {
+		return compareDrawOrder(drawBound.y, z, o);
+	}
+
+	// draw order of an event at the given position and z-index compared to
+	// a static tile (shared by the event and its draw state)
+	private static int compareDrawOrder(float y, float z, MapRenderRegion o) {
 		if (o.z == 0) {
 			if (z == 0)
 				return 0;
 			return 1;
-		} else if (drawBound.y - z > o.yz || z == 0) {
+		} else if (y - z > o.yz || z == 0) {
 			return -1;
-		} else if (drawBound.y - z < o.yz) {
+		} else if (y - z < o.yz) {
 			return 1;
 		}
 		return 0;
@@ -541,7 +612,7 @@ public class EventObject extends Movable implements Comparable<EventObject>,
 	 * The event will automatically be animated by using this movement method.
 	 */
 	@Override
-	public synchronized float offerMove(Direction dir, float deltaTime) {
+	public float offerMove(Direction dir, float deltaTime) {
 		float distance = moveSpeed.computeStretch(deltaTime);
 		float x = dir.getDistanceX(distance);
 		float y = dir.getDistanceY(distance);
@@ -563,7 +634,7 @@ public class EventObject extends Movable implements Comparable<EventObject>,
 	 * @see #animate(float, float, float)
 	 */
 	@Override
-	public synchronized void offerMove(float x, float y) {
+	public void offerMove(float x, float y) {
 		mvTransform.set(x, y, softMove);
 		softMoveBounds.setRect(getX() + softMove.x, getY() + softMove.y,
 				getWidth(), getHeight());
@@ -571,16 +642,52 @@ public class EventObject extends Movable implements Comparable<EventObject>,
 	}
 
 	@Override
-	public synchronized boolean commitMove() {
+	public boolean commitMove() {
 		if (moves) {
+			float fromX = drawBound.x;
+			float fromY = drawBound.y;
 			addX(softMove.x);
 			addY(softMove.y);
+			moveFromX = fromX;
+			moveFromY = fromY;
+			moveToX = drawBound.x;
+			moveToY = drawBound.y;
 			moves = false;
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * The horizontal distance from the actual draw position to the
+	 * interpolated draw position. If the event has been positioned (not moved)
+	 * since the last committed move, there is no interpolation.
+	 * 
+	 * @param alpha
+	 *            The interpolation factor (1 = actual position)
+	 * @return the distance which has to be added to the draw position
+	 */
+	public float getInterpolationOffsetX(float alpha) {
+		if (alpha >= 1f || drawBound.x != moveToX || drawBound.y != moveToY)
+			return 0f;
+		return (moveFromX - moveToX) * (1f - alpha);
+	}
+
+	/**
+	 * The vertical distance from the actual draw position to the interpolated
+	 * draw position.
+	 * 
+	 * @param alpha
+	 *            The interpolation factor (1 = actual position)
+	 * @return the distance which has to be added to the draw position
+	 * @see #getInterpolationOffsetX(float)
+	 */
+	public float getInterpolationOffsetY(float alpha) {
+		if (alpha >= 1f || drawBound.x != moveToX || drawBound.y != moveToY)
+			return 0f;
+		return (moveFromY - moveToY) * (1f - alpha);
+	}
+
 	/**
 	 * Animates this event if an animation is applied to this event.
 	 * 
@@ -826,6 +933,178 @@ public class EventObject extends Movable implements Comparable<EventObject>,
 				+ type + ")'";
 	}
 
+	/**
+	 * A copy of everything which is needed to draw an event. If the
+	 * simulation is pipelined, the main thread draws the state of the last
+	 * simulated frame while the simulation thread moves the event.
+	 * 
+	 * @see EventObject#snapshot(DrawState, float, boolean)
+	 * @author Alexander Baumgartner
+	 */
+	public static class DrawState {
+		private EventObject event;
+		private TextureRegion image;
+		private ParticleEffect effectFront, effectRear;
+		private final Color color = new Color();
+		private float colorFloatBits;
+		private float x, y, width, height, offsetX, offsetY;
+		private float z, rotation, scaleX, scaleY;
+		// effect simulation handed over to the main thread
+		private float effectTime, effectIdleTime;
+		// cached combination of the event color and the game tint
+		private float tintBits, tintGameBits = COLOR_WHITE_BITS, tintEventBits;
+		// 4 vertices (x, y, color, u, v) - only used by the main thread
+		private static final float[] VERTICES = new float[20];
+
+		public EventObject getEvent() {
+			return event;
+		}
+
+		/**
+		 * @return true if the draw bounds overlap the given rectangle
+		 */
+		public boolean overlaps(float x1, float y1, float x2, float y2) {
+			return x < x2 && y < y2 && x + width > x1 && y + height > y1;
+		}
+
+		/**
+		 * @see EventObject#compareTo(MapRenderRegion)
+		 */
+		public int compareTo(MapRenderRegion o) {
+			return compareDrawOrder(y, z, o);
+		}
+
+		/**
+		 * Draws the event. Must only be called by the main thread.
+		 * 
+		 * @param spriteBatch
+		 */
+		public void draw(SpriteBatch spriteBatch) {
+			float eventColorBits = colorFloatBits;
+			float gameColorBits = GameBase.$().getGameColorBits();
+			if (gameColorBits != COLOR_WHITE_BITS) {
+				if (eventColorBits != COLOR_WHITE_BITS) {
+					eventColorBits = tint(gameColorBits);
+				} else {
+					eventColorBits = gameColorBits;
+				}
+			}
+			if (effectTime > 0f)
+				simulateEffects();
+			float oX = offsetX;
+			float oY = offsetY;
+			// the particles can only be offset by the transform matrix (this
+			// flushes the batch)
+			boolean trans = (oX != 0 || oY != 0)
+					&& (effectRear != null || effectFront != null);
+			if (trans) {
+				spriteBatch.setTransformMatrix(spriteBatch.getTransformMatrix()
+						.translate(oX, oY, 0));
+				oX = oY = 0f;
+			}
+			if (effectRear != null)
+				effectRear.draw(spriteBatch);
+			if (image != null)
+				drawImage(spriteBatch, x + oX, y + oY, eventColorBits);
+			if (effectFront != null)
+				effectFront.draw(spriteBatch);
+			if (trans)
+				spriteBatch.setTransformMatrix(spriteBatch.getTransformMatrix()
+						.translate(-offsetX, -offsetY, 0));
+		}
+
+		// the combined tint is only computed if a color has changed
+		private float tint(float gameColorBits) {
+			if (tintGameBits != gameColorBits || tintEventBits != colorFloatBits) {
+				Color c1 = color;
+				Color c2 = GameBase.$().getGameColorTint();
+				tintBits = Color.toFloatBits(c1.r * c2.r, c1.g * c2.g, c1.b
+						* c2.b, c1.a * c2.a);
+				tintGameBits = gameColorBits;
+				tintEventBits = colorFloatBits;
+			}
+			return tintBits;
+		}
+
+		/**
+		 * Submits the tinted vertices of the image directly. Neither the color
+		 * nor the transform matrix of the batch is changed, therefore the
+		 * batch is not flushed. Computes the same vertices as
+		 * {@link SpriteBatch#draw(TextureRegion, float, float, float, float, float, float, float, float, float)}
+		 * with the origin in the center.
+		 */
+		private void drawImage(SpriteBatch spriteBatch, float x, float y,
+				float colorBits) {
+			TextureRegion region = image;
+			float[] vertices = VERTICES;
+			float originX = width * .5f;
+			float originY = height * .5f;
+			float fx = -originX * scaleX;
+			float fy = -originY * scaleY;
+			float fx2 = originX * scaleX;
+			float fy2 = originY * scaleY;
+			float x1, y1, x2, y2, x3, y3, x4, y4;
+			if (rotation != 0) {
+				float rad = rotation * MathUtils.degreesToRadians;
+				float cos = MathUtils.cos(rad);
+				float sin = MathUtils.sin(rad);
+				x1 = cos * fx - sin * fy;
+				y1 = sin * fx + cos * fy;
+				x2 = cos * fx - sin * fy2;
+				y2 = sin * fx + cos * fy2;
+				x3 = cos * fx2 - sin * fy2;
+				y3 = sin * fx2 + cos * fy2;
+				x4 = x1 + (x3 - x2);
+				y4 = y3 - (y2 - y1);
+			} else {
+				x1 = x2 = fx;
+				y1 = y4 = fy;
+				x3 = x4 = fx2;
+				y2 = y3 = fy2;
+			}
+			float worldOriginX = x + originX;
+			float worldOriginY = y + originY;
+			float u = region.getU();
+			float v = region.getV2();
+			float u2 = region.getU2();
+			float v2 = region.getV();
+			vertices[0] = x1 + worldOriginX;
+			vertices[1] = y1 + worldOriginY;
+			vertices[2] = colorBits;
+			vertices[3] = u;
+			vertices[4] = v;
+			vertices[5] = x2 + worldOriginX;
+			vertices[6] = y2 + worldOriginY;
+			vertices[7] = colorBits;
+			vertices[8] = u;
+			vertices[9] = v2;
+			vertices[10] = x3 + worldOriginX;
+			vertices[11] = y3 + worldOriginY;
+			vertices[12] = colorBits;
+			vertices[13] = u2;
+			vertices[14] = v2;
+			vertices[15] = x4 + worldOriginX;
+			vertices[16] = y4 + worldOriginY;
+			vertices[17] = colorBits;
+			vertices[18] = u2;
+			vertices[19] = v;
+			spriteBatch.draw(region.getTexture(), vertices, 0, 20);
+		}
+
+		private void simulateEffects() {
+			float eX = x + width * .5f;
+			if (effectRear != null)
+				effectRear.setPosition(eX, y);
+			if (effectFront != null)
+				effectFront.setPosition(eX, y);
+			if (effectIdleTime > 0f)
+				event.fastForwardEffects(effectIdleTime);
+			event.updateEffects(effectTime);
+			// the same state may be drawn more than once
+			effectTime = effectIdleTime = 0f;
+		}
+	}
+
 	public static abstract class MoveTransformation implements Serializable {
 		private static final long serialVersionUID = 1L;
 
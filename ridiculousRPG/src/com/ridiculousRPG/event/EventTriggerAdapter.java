@@ -0,0 +1,128 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.event;
+
+/**
+ * Default implementations for the optional methods of an
+ * {@link EventTrigger}. Extend this class instead of implementing
+ * {@link EventTrigger} directly. Methods which are added later with a default
+ * implementation don't break your trigger.<br>
+ * By default all scripts are posted with
+ * {@link #postScriptToExec(String, String, String, Object...)}, priorities,
+ * coalescing and ordering keys are ignored.<br>
+ * Use the static helpers {@link #postPrioritized} and {@link #postOrdered} to
+ * post a script to any {@link EventTrigger}. They fall back to the methods of
+ * the interface if the trigger doesn't extend this adapter.
+ * 
+ * @author Alexander Baumgartner
+ */
+public abstract class EventTriggerAdapter implements EventTrigger {
+	/**
+	 * If invokeFnc is null the script will not be invoked but evaluated.<br>
+	 * Scripts with higher priority are executed first. If coalesce is true,
+	 * the script is dropped as long as the same script is pending. The
+	 * default implementation posts the script without priority and never
+	 * drops it.
+	 * 
+	 * @param priority
+	 *            One of the priorities defined in {@link ScriptJobQueue}
+	 * @param coalesce
+	 *            Drop the script if the same script is pending
+	 * @param description
+	 *            Short description of the trigger/event
+	 * @param script
+	 *            The script to execute
+	 * @param invokeFnc
+	 *            Function to invoke - may be null
+	 * @param invokeParm
+	 *            Parameters for invoked function
+	 * @return false if the script has been dropped
+	 */
+	public boolean postScriptToExec(int priority, boolean coalesce,
+			String description, String script, String invokeFnc,
+			Object... invokeParm) {
+		postScriptToExec(description, script, invokeFnc, invokeParm);
+		return true;
+	}
+
+	/**
+	 * If invokeFnc is null the script will not be invoked but evaluated.<br>
+	 * Scripts with the same ordering key are executed in order. The default
+	 * implementation ignores the ordering key.
+	 * 
+	 * @param orderingKey
+	 *            The event (or any other object) the script belongs to. If
+	 *            null, the description is used as key.
+	 * @param priority
+	 *            One of the priorities defined in {@link ScriptJobQueue}
+	 * @param coalesce
+	 *            Drop the script if the same script of the same key is pending
+	 * @param description
+	 *            Short description of the trigger/event
+	 * @param script
+	 *            The script to execute
+	 * @param invokeFnc
+	 *            Function to invoke - may be null
+	 * @param invokeParm
+	 *            Parameters for invoked function
+	 * @return false if the script has been dropped
+	 */
+	public boolean postScriptToExec(Object orderingKey, int priority,
+			boolean coalesce, String description, String script,
+			String invokeFnc, Object... invokeParm) {
+		return postScriptToExec(priority, coalesce, description, script,
+				invokeFnc, invokeParm);
+	}
+
+	/**
+	 * Posts the script with the priority if the trigger extends this
+	 * adapter. Otherwise the priority is ignored and the script is never
+	 * dropped.
+	 * 
+	 * @see #postScriptToExec(int, boolean, String, String, String,
+	 *      Object...)
+	 */
+	public static boolean postPrioritized(EventTrigger trigger, int priority,
+			boolean coalesce, String description, String script,
+			String invokeFnc, Object... invokeParm) {
+		if (trigger instanceof EventTriggerAdapter)
+			return ((EventTriggerAdapter) trigger).postScriptToExec(priority,
+					coalesce, description, script, invokeFnc, invokeParm);
+		trigger.postScriptToExec(description, script, invokeFnc, invokeParm);
+		return true;
+	}
+
+	/**
+	 * Posts the script with the ordering key if the trigger extends this
+	 * adapter. Otherwise the ordering key and the priority are ignored and
+	 * the script is never dropped.
+	 * 
+	 * @see #postScriptToExec(Object, int, boolean, String, String, String,
+	 *      Object...)
+	 */
+	public static boolean postOrdered(EventTrigger trigger,
+			Object orderingKey, int priority, boolean coalesce,
+			String description, String script, String invokeFnc,
+			Object... invokeParm) {
+		if (trigger instanceof EventTriggerAdapter)
+			return ((EventTriggerAdapter) trigger).postScriptToExec(
+					orderingKey, priority, coalesce, description, script,
+					invokeFnc, invokeParm);
+		trigger.postScriptToExec(description, script, invokeFnc, invokeParm);
+		return true;
+	}
+}
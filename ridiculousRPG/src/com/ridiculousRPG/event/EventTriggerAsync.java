@@ -16,15 +16,14 @@
 
 package com.ridiculousRPG.event;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-import javax.script.ScriptEngine;
-
-import com.badlogic.gdx.Gdx;
 import com.ridiculousRPG.GameBase;
 import com.ridiculousRPG.event.handler.EventHandler;
+import com.ridiculousRPG.movement.Movable;
+import com.ridiculousRPG.util.FrameProfiler;
+import com.ridiculousRPG.util.FrameProfiler.Section;
 import com.ridiculousRPG.util.ObjectState;
 
 /**
@@ -35,44 +34,23 @@ import com.ridiculousRPG.util.ObjectState;
  * 
  * @author Alexander Baumgartner
  */
-public class EventTriggerAsync extends Thread implements EventTrigger {
-	private List<String> execScriptsDesc = new ArrayList<String>();
-	private List<Object[]> execScriptsParm = new ArrayList<Object[]>();
-	private List<String> execScriptsFnc = new ArrayList<String>();
-	private List<String> execScripts = new ArrayList<String>();
-	private final Runnable execScriptNotifier = new Runnable() {
-		@Override
-		public void run() {
-			synchronized (execScriptNotifier) {
-				execScriptNotifier.notify();
-			}
-		}
-	};
-	private Thread execScriptThread = new Thread("ExecScript-EventTrigger") {
-		@Override
-		public void run() {
-			GameBase.$().registerGlContextThread();
-			while (true) {
-				synchronized (execScriptNotifier) {
-					if (disposed)
-						return;
-					try {
-						if (execScripts.size() == 0)
-							execScriptNotifier.wait();
-					} catch (InterruptedException e) {
-						GameBase.$info("EventTriggerAsync.interrupt",
-								"The EventTrigger thread has been "
-										+ "interrupted - continuing", e);
-					}
-				}
-				if (disposed)
-					return;
-				execScriptQueue();
-			}
-		}
-	};
+public class EventTriggerAsync extends EventTriggerAdapter implements
+		Runnable {
+	private ScriptExecutor scriptExecutor = new ScriptExecutor(GameBase
+			.$options().scriptThreads);
+	private ParallelMoveComputer moveComputer = new ParallelMoveComputer(
+			GameBase.$options().moveThreads);
+	private FrameProfiler profiler = GameBase.$serviceProvider().getProfiler();
+	// every section is recorded by one thread
+	private Section movesSection = profiler.getSection("map.moves");
+	private Section collisionSection = profiler.getSection("map.collision");
+	private Section handlerSection = profiler
+			.getSection("map.handlerDispatch");
 	private List<EventObject> events;
 	private List<PolygonObject> polys;
+	// tasks which have to be executed by the event thread (see invokeLater)
+	private ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private boolean computed = false;
 	private boolean disposed = false;
 	private float deltaTime = 0f;
 	private boolean actionKeyDown = false;
@@ -80,52 +58,9 @@ public class EventTriggerAsync extends Thread implements EventTrigger {
 	private int lastGlobalChangeCount = -1;
 
 	public EventTriggerAsync() {
-		super("ExecHandler-EventTrigger");
-		setDaemon(true);
-		start();
-		execScriptThread.setDaemon(true);
-		execScriptThread.start();
-	}
-
-	private void execScriptQueue() {
-		int len = execScripts.size();
-		for (int i = 0; i < len; i++) {
-			String exe = execScripts.get(i);
-			String exeFnc = execScriptsFnc.get(i);
-			String exeDesc = execScriptsDesc.get(i);
-			Object[] exeParm = execScriptsParm.get(i);
-			try {
-				GameBase.$().getSharedEngine().put(ScriptEngine.FILENAME,
-						(exeFnc == null ? "" : exeFnc + "-") + exeDesc);
-				if (exeFnc != null) {
-					if (exeParm == null)
-						GameBase.$().invokeFunction(exe, exeFnc);
-					else
-						GameBase.$().invokeFunction(exe, exeFnc, exeParm);
-				} else {
-					GameBase.$().eval(exe);
-				}
-			} catch (Exception e) {
-				GameBase.$error("EventTrigger." + exeFnc,
-						"Could not execute script \"" + exeDesc + "\" (PARAM="
-								+ Arrays.toString(exeParm)
-								+ ")\nSCRIPT-CODE:\n" + exe, e);
-			}
-		}
-		synchronized (execScripts) {
-			if (len == execScripts.size()) {
-				// perform fast clear if possible
-				execScripts.clear();
-				execScriptsFnc.clear();
-				execScriptsDesc.clear();
-				execScriptsParm.clear();
-			} else {
-				execScripts.subList(0, len).clear();
-				execScriptsFnc.subList(0, len).clear();
-				execScriptsDesc.subList(0, len).clear();
-				execScriptsParm.subList(0, len).clear();
-			}
-		}
+		Thread thread = new Thread(this, "ExecHandler-EventTrigger");
+		thread.setDaemon(true);
+		thread.start();
 	}
 
 	@Override
@@ -146,10 +81,48 @@ public class EventTriggerAsync extends Thread implements EventTrigger {
 			}
 			if (disposed)
 				return;
+			runTasks();
+			synchronized (this) {
+				if (!computed)
+					continue;
+				computed = false;
+			}
 			float deltaTime = this.deltaTime;
 			this.deltaTime = 0f;
 
-			callEventHandler(deltaTime, events, polys, actionKeyDown);
+			if (profiler.isEnabled()) {
+				long start = System.nanoTime();
+				callEventHandler(deltaTime, events, polys, actionKeyDown);
+				handlerSection.record(System.nanoTime() - start);
+			} else {
+				callEventHandler(deltaTime, events, polys, actionKeyDown);
+			}
+		}
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (Exception e) {
+				GameBase.$error("EventTriggerAsync.task",
+						"Could not execute task on the event thread", e);
+			}
+		}
+	}
+
+	/**
+	 * Executes the task by the event thread before it calls the
+	 * {@link EventHandler}s the next time. Use this to modify an
+	 * {@link EventHandler} while the event thread may call it.
+	 * 
+	 * @param task
+	 */
+	public void invokeLater(Runnable task) {
+		tasks.add(task);
+		synchronized (this) {
+			notify();
 		}
 	}
 
@@ -212,12 +185,38 @@ public class EventTriggerAsync extends Thread implements EventTrigger {
 	@Override
 	public void compute(float deltaTime, boolean actionKeyDown,
 			List<EventObject> events, List<PolygonObject> polys) {
+		Movable.beginMovePass();
+		try {
+			computeMoves(deltaTime, events, polys);
+		} finally {
+			Movable.endMovePass();
+		}
+		synchronized (this) {
+			// shared variables for parallel computation
+			this.events = events;
+			this.polys = polys;
+			this.actionKeyDown = actionKeyDown;
+			this.deltaTime += deltaTime;
+			computed = true;
+			notify();
+		}
+	}
+
+	private void computeMoves(float deltaTime, List<EventObject> events,
+			List<PolygonObject> polys) {
 		int evSize = events.size();
 		int polySize = polys.size();
 
-		// compute all moves
-		for (int i = 0; i < evSize; i++)
-			events.get(i).compute(deltaTime, this);
+		boolean profile = profiler.isEnabled();
+		long start = profile ? System.nanoTime() : 0L;
+
+		// compute all moves (independent moves in parallel)
+		moveComputer.compute(deltaTime, events, this);
+		if (profile) {
+			long now = System.nanoTime();
+			movesSection.record(now - start);
+			start = now;
+		}
 
 		// collision detection
 		for (int i = 0; i < evSize; i++) {
@@ -314,26 +313,20 @@ public class EventTriggerAsync extends Thread implements EventTrigger {
 				}
 			}
 		}
-		synchronized (this) {
-			// shared variables for parallel computation
-			this.events = events;
-			this.polys = polys;
-			this.actionKeyDown = actionKeyDown;
-			this.deltaTime += deltaTime;
-			notify();
-		}
+		if (profile)
+			collisionSection.record(System.nanoTime() - start);
 	}
 
 	public synchronized void dispose() {
 		disposed = true;
+		moveComputer.dispose();
 		notifyAll();
-		synchronized (execScriptNotifier) {
-			execScriptNotifier.notifyAll();
-		}
+		scriptExecutor.dispose();
 	}
 
 	/**
-	 * If invokeFnc is null the script will not be invoked but evaluated.
+	 * If invokeFnc is null the script will not be invoked but evaluated.<br>
+	 * The script is executed with normal priority.
 	 * 
 	 * @param description
 	 *            Short description of the trigger/event
@@ -347,13 +340,55 @@ public class EventTriggerAsync extends Thread implements EventTrigger {
 	@Override
 	public void postScriptToExec(String description, String script,
 			String invokeFnc, Object... invokeParm) {
-		synchronized (execScripts) {
-			execScriptsDesc.add(description);
-			execScriptsFnc.add(invokeFnc);
-			execScriptsParm.add(invokeParm);
-			execScripts.add(script);
-		}
-		Gdx.app.postRunnable(execScriptNotifier);
+		scriptExecutor.post(null, ScriptJobQueue.PRIORITY_NORMAL, false,
+				description, script, invokeFnc, invokeParm);
+	}
+
+	/**
+	 * If invokeFnc is null the script will not be invoked but evaluated.<br>
+	 * The description is used as ordering key.
+	 * 
+	 * @see #postScriptToExec(Object, int, boolean, String, String, String,
+	 *      Object...)
+	 */
+	@Override
+	public boolean postScriptToExec(int priority, boolean coalesce,
+			String description, String script, String invokeFnc,
+			Object... invokeParm) {
+		return scriptExecutor.post(null, priority, coalesce, description,
+				script, invokeFnc, invokeParm);
+	}
+
+	/**
+	 * If invokeFnc is null the script will not be invoked but evaluated.<br>
+	 * Scripts with the same ordering key are executed in order, scripts with
+	 * different keys may run in parallel (see {@link ScriptExecutor}). Scripts
+	 * with higher priority are executed first. If coalesce is true, the script
+	 * is dropped as long as the same script of the same key is pending.
+	 * 
+	 * @param orderingKey
+	 *            The event (or any other object) the script belongs to. If
+	 *            null, the description is used as key.
+	 * @param priority
+	 *            One of the priorities defined in {@link ScriptJobQueue}
+	 * @param coalesce
+	 *            Drop the script if the same script of the same key is pending
+	 * @param description
+	 *            Short description of the trigger/event
+	 * @param script
+	 *            The script to execute
+	 * @param invokeFnc
+	 *            Function to invoke - may be null
+	 * @param invokeParm
+	 *            Parameters for invoked function
+	 * @return false if the script has been dropped
+	 */
+	@Override
+	public boolean postScriptToExec(Object orderingKey, int priority,
+			boolean coalesce, String description, String script,
+			String invokeFnc, Object... invokeParm) {
+		return scriptExecutor.post(orderingKey, priority, coalesce,
+				description, script, invokeFnc, invokeParm);
 	}
 
 	/**
@@ -361,6 +396,6 @@ public class EventTriggerAsync extends Thread implements EventTrigger {
 	 */
 	@Override
 	public boolean isScriptQueueEmpty() {
-		return execScripts.size() == 0;
+		return scriptExecutor.isEmpty();
 	}
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.event;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.ridiculousRPG.GameBase;
+import com.ridiculousRPG.movement.Movable;
+
+/**
+ * Computes the moves of all events. The moves of parallelizable events (see
+ * {@link Movable#isParallelizable()}) are split into chunks and computed by a
+ * fixed set of worker threads. The calling thread (the move thread) helps
+ * computing chunks and afterwards computes all other moves sequentially.<br>
+ * Only the offered moves are computed in parallel. Collision detection and
+ * committing the moves stay sequential, therefore the result doesn't depend
+ * on the number of threads.<br>
+ * The worker threads are parked between the frames, no objects are allocated
+ * per frame.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class ParallelMoveComputer implements Disposable {
+	/**
+	 * Number of events computed by one worker at a time.
+	 */
+	public static final int CHUNK_SIZE = 32;
+	/**
+	 * Below this number of events all moves are computed sequentially. The
+	 * synchronization would be more expensive than the computation.
+	 */
+	public static final int MIN_PARALLEL_EVENTS = 64;
+
+	private final Worker[] workers;
+	private final AtomicInteger nextChunk = new AtomicInteger();
+	private final AtomicInteger pendingWorkers = new AtomicInteger();
+	private volatile int generation;
+	private volatile boolean disposed;
+	private Thread caller;
+
+	// shared frame data (published by the volatile generation)
+	private List<EventObject> events;
+	private int size;
+	private float deltaTime;
+	private EventTrigger eventTrigger;
+	private boolean[] parallel = new boolean[MIN_PARALLEL_EVENTS];
+
+	/**
+	 * Creates a new computer with the given number of threads. The calling
+	 * thread counts as one thread.
+	 * 
+	 * @param threadCount
+	 *            The number of threads to use. If threadCount is less than 1,
+	 *            the number of available processors is used.
+	 */
+	public ParallelMoveComputer(int threadCount) {
+		if (threadCount < 1)
+			threadCount = Runtime.getRuntime().availableProcessors();
+		workers = new Worker[threadCount - 1];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker("MoveWorker-" + (i + 1));
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * @return The number of threads including the calling thread
+	 */
+	public int getThreadCount() {
+		return workers.length + 1;
+	}
+
+	/**
+	 * Computes the moves of all events. Must be called by the move thread.
+	 * 
+	 * @param deltaTime
+	 * @param events
+	 * @param eventTrigger
+	 */
+	public void compute(float deltaTime, List<EventObject> events,
+			EventTrigger eventTrigger) {
+		int size = events.size();
+		if (workers.length == 0 || size < MIN_PARALLEL_EVENTS || disposed) {
+			for (int i = 0; i < size; i++)
+				events.get(i).compute(deltaTime, eventTrigger);
+			return;
+		}
+		// The flags are computed in advance, because a move may be offered
+		// from an other thread while computing. Every event must be
+		// computed exactly once.
+		boolean[] parallel = this.parallel;
+		if (parallel.length < size)
+			this.parallel = parallel = new boolean[size + (size >> 1)];
+		for (int i = 0; i < size; i++)
+			parallel[i] = events.get(i).isParallelizable();
+
+		this.events = events;
+		this.size = size;
+		this.deltaTime = deltaTime;
+		this.eventTrigger = eventTrigger;
+		this.caller = Thread.currentThread();
+		nextChunk.set(0);
+		pendingWorkers.set(workers.length);
+		generation++;
+		for (int i = 0; i < workers.length; i++)
+			LockSupport.unpark(workers[i]);
+
+		computeChunks();
+		while (pendingWorkers.get() != 0 && !disposed)
+			LockSupport.park(this);
+
+		for (int i = 0; i < size; i++) {
+			if (!parallel[i])
+				events.get(i).compute(deltaTime, eventTrigger);
+		}
+		this.events = null;
+		this.eventTrigger = null;
+	}
+
+	private void computeChunks() {
+		List<EventObject> events = this.events;
+		boolean[] parallel = this.parallel;
+		int size = this.size;
+		float deltaTime = this.deltaTime;
+		EventTrigger eventTrigger = this.eventTrigger;
+		for (int start = nextChunk.getAndAdd(CHUNK_SIZE); start < size; start = nextChunk
+				.getAndAdd(CHUNK_SIZE)) {
+			int end = Math.min(start + CHUNK_SIZE, size);
+			for (int i = start; i < end; i++) {
+				if (parallel[i])
+					events.get(i).compute(deltaTime, eventTrigger);
+			}
+		}
+	}
+
+	public void dispose() {
+		disposed = true;
+		for (int i = 0; i < workers.length; i++)
+			LockSupport.unpark(workers[i]);
+	}
+
+	private class Worker extends Thread {
+		private int lastGeneration;
+
+		public Worker(String name) {
+			super(name);
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			Movable.registerMoveWorker();
+			while (true) {
+				while (lastGeneration == generation && !disposed)
+					LockSupport.park(this);
+				if (disposed)
+					return;
+				lastGeneration = generation;
+				try {
+					computeChunks();
+				} catch (Throwable e) {
+					GameBase.$error("ParallelMoveComputer.compute",
+							"Could not compute move in " + getName(), e);
+				}
+				if (pendingWorkers.decrementAndGet() == 0)
+					LockSupport.unpark(caller);
+			}
+		}
+	}
+}
@@ -8,13 +8,11 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer.ShapeType;
-import com.badlogic.gdx.math.Matrix4;
 import com.ridiculousRPG.GameBase;
 import com.ridiculousRPG.event.handler.EventHandler;
 import com.ridiculousRPG.map.tiled.TiledMapWithEvents;
 import com.ridiculousRPG.util.BlockingBehavior;
+import com.ridiculousRPG.util.LineMesh;
 
 public class PolygonObject implements Cloneable, Serializable {
 	private static final long serialVersionUID = 1L;
@@ -22,8 +20,9 @@ public class PolygonObject implements Cloneable, Serializable {
 	private String name;
 	public boolean loop;
 	public float maxX, maxY, minX, minY;
-	public float[] vertexX;
-	public float[] vertexY;
+	// only changed by translate (see version)
+	private float[] vertexX;
+	private float[] vertexY;
 	private float[] segmentXlen;
 	private float[] segmentYlen;
 	private float[] segmentLen;
@@ -47,7 +46,11 @@ public class PolygonObject implements Cloneable, Serializable {
 	private Color color;
 	public boolean visible;
 
-	private static transient ShapeRenderer renderer;
+	// incremented whenever the vertices change
+	private transient int version;
+	// the state of the last outline (see isOutlineChanged)
+	private transient int outlineVersion = -1;
+	private transient float outlineColor, outlineDebugColor;
 
 	public PolygonObject(String name, float[] vertexX, float[] vertexY,
 			boolean loop) {
@@ -260,6 +263,13 @@ public class PolygonObject implements Cloneable, Serializable {
 		return null;
 	}
 
+	/**
+	 * @return the number of vertices
+	 */
+	public int getVertexCount() {
+		return vertexX.length;
+	}
+
 	public int getSegmentCount() {
 		return vertexX.length;
 	}
@@ -371,48 +381,51 @@ public class PolygonObject implements Cloneable, Serializable {
 			maxY += y;
 			minY += y;
 		}
+		version++;
 	}
 
-	public void draw(boolean debug) {
+	/**
+	 * Adds the lines drawn by this polygon to the mesh and remembers the
+	 * drawn state.
+	 * 
+	 * @param mesh
+	 * @param debug
+	 * @see #isOutlineChanged(boolean)
+	 */
+	public void outline(LineMesh mesh, boolean debug) {
+		outlineVersion = version;
+		outlineColor = colorBits();
+		outlineDebugColor = debugColorBits(debug);
 		if (visible && color != null) {
-			ShapeRenderer r = getRenderer();
-			r.setColor(color);
 			for (int i = vertexX.length - 1; i > 0; i--)
-				r.line(vertexX[i - 1], vertexY[i - 1], vertexX[i], vertexY[i]);
+				mesh.line(vertexX[i - 1], vertexY[i - 1], vertexX[i],
+						vertexY[i], outlineColor);
 		}
 		if (debug) {
-			ShapeRenderer r = getRenderer();
-			r.setColor(blockingBehavior.color);
-			if (visible && color != null) {
-				for (int i = vertexX.length - 1; i > 0; i--)
-					r.line(vertexX[i - 1] + 1, vertexY[i - 1] + 1,
-							vertexX[i] + 1, vertexY[i] + 1);
-			} else {
-				for (int i = vertexX.length - 1; i > 0; i--)
-					r.line(vertexX[i - 1], vertexY[i - 1], vertexX[i],
-							vertexY[i]);
-			}
+			float offset = visible && color != null ? 1f : 0f;
+			for (int i = vertexX.length - 1; i > 0; i--)
+				mesh.line(vertexX[i - 1] + offset, vertexY[i - 1] + offset,
+						vertexX[i] + offset, vertexY[i] + offset,
+						outlineDebugColor);
 		}
 	}
 
-	public static void startPolygonBatch(Matrix4 projection) {
-		getRenderer().setProjectionMatrix(projection);
-		getRenderer().begin(ShapeType.Line);
+	/**
+	 * @param debug
+	 * @return true if the lines drawn by this polygon have changed since the
+	 *         last call of {@link #outline(LineMesh, boolean)}
+	 */
+	public boolean isOutlineChanged(boolean debug) {
+		return outlineVersion != version || outlineColor != colorBits()
+				|| outlineDebugColor != debugColorBits(debug);
 	}
 
-	public static void endPolygonBatch() {
-		getRenderer().end();
+	private float colorBits() {
+		return visible && color != null ? color.toFloatBits() : 0f;
 	}
 
-	private static ShapeRenderer getRenderer() {
-		if (renderer == null) {
-			synchronized (PolygonObject.class) {
-				if (renderer != null)
-					return renderer;
-				renderer = new ShapeRenderer();
-			}
-		}
-		return renderer;
+	private float debugColorBits(boolean debug) {
+		return debug ? blockingBehavior.color.toFloatBits() : 0f;
 	}
 
 	public Color getColor() {
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.event;
+
+import java.util.Arrays;
+
+import javax.script.ScriptEngine;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.ridiculousRPG.GameBase;
+import com.ridiculousRPG.event.ScriptJobQueue.ScriptJob;
+import com.ridiculousRPG.util.FrameProfiler;
+import com.ridiculousRPG.util.FrameProfiler.Section;
+import com.ridiculousRPG.util.ScriptMetrics;
+
+/**
+ * Executes posted scripts with a fixed set of worker threads. Every worker
+ * has its own {@link ScriptEngine} and its own {@link ScriptJobQueue}.<br>
+ * The ordering key (usually the event) is hashed to a worker. All scripts
+ * with the same key are executed by the same worker, therefore they are
+ * executed in the posting order (within the same priority). No lock and no
+ * map is involved in posting a script. A blocking script (e.g. a message
+ * box) only delays the scripts of its own worker.<br>
+ * Scripts of different keys may run in parallel. Shared state should only be
+ * modified by the cas methods of {@link com.ridiculousRPG.util.ObjectState}.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class ScriptExecutor implements Disposable {
+	private final Worker[] workers;
+	private final FrameProfiler profiler = GameBase.$serviceProvider()
+			.getProfiler();
+	private final ScriptMetrics scriptMetrics = GameBase.$serviceProvider()
+			.getScriptMetrics();
+	private volatile boolean disposed;
+
+	/**
+	 * Creates a new executor and starts the worker threads.
+	 * 
+	 * @param threadCount
+	 *            The number of threads to use. If threadCount is less than 1,
+	 *            the number of available processors is used.
+	 */
+	public ScriptExecutor(int threadCount) {
+		if (threadCount < 1)
+			threadCount = Runtime.getRuntime().availableProcessors();
+		workers = new Worker[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			// the first section keeps the name of the single script thread
+			String section = i == 0 ? "map.scriptDispatch"
+					: "map.scriptDispatch" + i;
+			workers[i] = new Worker("ExecScript-EventTrigger"
+					+ (i == 0 ? "" : "-" + i), profiler.getSection(section));
+		}
+		for (int i = 0; i < threadCount; i++)
+			workers[i].start();
+	}
+
+	/**
+	 * If invokeFnc is null the script will not be invoked but evaluated. May
+	 * be called by any thread.
+	 * 
+	 * @param orderingKey
+	 *            Scripts with the same key are executed in order. If null,
+	 *            the description is used as key.
+	 * @param priority
+	 *            One of the priorities defined in {@link ScriptJobQueue}
+	 * @param coalesce
+	 *            Drop the script if the same script of the same key is pending
+	 * @param description
+	 *            Short description of the trigger/event
+	 * @param script
+	 *            The script to execute
+	 * @param invokeFnc
+	 *            Function to invoke - may be null
+	 * @param invokeParm
+	 *            Parameters for invoked function
+	 * @return false if the script has been dropped
+	 */
+	public boolean post(Object orderingKey, int priority, boolean coalesce,
+			String description, String script, String invokeFnc,
+			Object[] invokeParm) {
+		if (orderingKey == null)
+			orderingKey = description;
+		return workerOf(orderingKey).queue.post(orderingKey, priority,
+				coalesce, description, script, invokeFnc, invokeParm);
+	}
+
+	private Worker workerOf(Object orderingKey) {
+		Worker[] workers = this.workers;
+		if (workers.length == 1)
+			return workers[0];
+		// spread the bits of poor hash codes (e.g. identity hash codes)
+		int h = orderingKey == null ? 0 : orderingKey.hashCode();
+		h ^= (h >>> 20) ^ (h >>> 12);
+		h ^= (h >>> 7) ^ (h >>> 4);
+		return workers[(h & 0x7fffffff) % workers.length];
+	}
+
+	/**
+	 * Note: The answer is not 100% time-accurate! It may be delayed.
+	 * 
+	 * @return true if all posted scripts have been executed
+	 */
+	public boolean isEmpty() {
+		for (int i = 0; i < workers.length; i++)
+			if (!workers[i].queue.isEmpty())
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return The number of worker threads
+	 */
+	public int getThreadCount() {
+		return workers.length;
+	}
+
+	public void dispose() {
+		disposed = true;
+		for (int i = 0; i < workers.length; i++)
+			workers[i].queue.dispose();
+	}
+
+	private class Worker extends Thread {
+		private final ScriptJobQueue queue = new ScriptJobQueue();
+		private final Section section;
+		private ScriptEngine engine;
+
+		public Worker(String name, Section section) {
+			super(name);
+			this.section = section;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			GameBase.$().registerGlContextThread();
+			engine = GameBase.$scriptFactory().obtainEngine();
+			while (true) {
+				if (!queue.await() || disposed)
+					return;
+				if (profiler.isEnabled()) {
+					long start = System.nanoTime();
+					execQueue();
+					section.record(System.nanoTime() - start);
+				} else {
+					execQueue();
+				}
+			}
+		}
+
+		private void execQueue() {
+			ScriptJob job;
+			while ((job = queue.poll()) != null) {
+				String exe = job.getScript();
+				String exeFnc = job.getInvokeFnc();
+				String exeDesc = job.getDescription();
+				Object[] exeParm = job.getInvokeParm();
+				String handlerType = exeFnc == null ? "eval" : exeFnc;
+				long start = scriptMetrics.start();
+				try {
+					engine.put(ScriptEngine.FILENAME, (exeFnc == null ? ""
+							: exeFnc + "-")
+							+ exeDesc);
+					if (exeFnc != null) {
+						if (exeParm == null)
+							GameBase.$().invokeFunction(engine, exe, exeFnc);
+						else
+							GameBase.$().invokeFunction(engine, exe, exeFnc,
+									exeParm);
+					} else {
+						GameBase.$().eval(engine, exe);
+					}
+				} catch (Exception e) {
+					scriptMetrics.error(exeDesc, handlerType, e);
+					GameBase.$error("EventTrigger." + exeFnc,
+							"Could not execute script \"" + exeDesc
+									+ "\" (PARAM=" + Arrays.toString(exeParm)
+									+ ")\nSCRIPT-CODE:\n" + exe, e);
+				} finally {
+					if (scriptMetrics.stop(exeDesc, handlerType, start))
+						scriptMetrics.logSlowScript(exeDesc, handlerType, exe);
+					queue.free(job);
+				}
+			}
+		}
+	}
+}
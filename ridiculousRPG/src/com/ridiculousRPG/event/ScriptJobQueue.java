@@ -0,0 +1,376 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.event;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.Pool.Poolable;
+
+/**
+ * A queue of script jobs with many producers and one consumer.<br>
+ * Posting a job is lock free: the job is pushed onto a stack with a single
+ * compare-and-set. The consumer takes the whole stack at once, restores the
+ * posting order and sorts the jobs into one FIFO list per priority. Jobs with
+ * a higher priority are executed first, jobs with the same priority in the
+ * order they have been posted.<br>
+ * If a job is posted with coalescing, it's dropped as long as a job for the
+ * same target and handler (same ordering key, script and function) is
+ * pending.<br>
+ * The consumer is parked while the queue is empty and unparked directly by
+ * the producers.<br>
+ * The job records are pooled in a lock free free-list (a stack of slot
+ * indices). The head of the stack carries a stamp, which is incremented by
+ * every change, therefore a job which is obtained and freed again by other
+ * threads can't corrupt the stack (ABA problem). If the pool is exhausted,
+ * new jobs are created which are left to the garbage collector.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class ScriptJobQueue implements Disposable {
+	public static final int PRIORITY_HIGH = 0;
+	public static final int PRIORITY_NORMAL = 1;
+	public static final int PRIORITY_LOW = 2;
+	private static final int PRIORITY_COUNT = 3;
+	private static final int POOL_SIZE = 256;
+	private static final long STAMP = 1L << 32;
+	private static final long INDEX_MASK = STAMP - 1L;
+
+	// stack of posted jobs (newest first)
+	private final AtomicReference<ScriptJob> posted = new AtomicReference<ScriptJob>();
+	private final AtomicInteger pending = new AtomicInteger();
+	private final ConcurrentHashMap<CoalesceKey, Boolean> coalescable = new ConcurrentHashMap<CoalesceKey, Boolean>();
+	// free-list: stamp (upper 32 bits) and slot index + 1 (0 = empty)
+	private final AtomicLong freeHead = new AtomicLong();
+	// slot index + 1 of the next free job per slot
+	private final AtomicIntegerArray nextFree = new AtomicIntegerArray(
+			POOL_SIZE);
+	private final ScriptJob[] slots = new ScriptJob[POOL_SIZE];
+	private final AtomicInteger createdJobs = new AtomicInteger();
+	private volatile Thread consumer;
+	private volatile boolean waiting;
+	private volatile boolean disposed;
+
+	// FIFO list per priority (only accessed by the consumer)
+	private final ScriptJob[] first = new ScriptJob[PRIORITY_COUNT];
+	private final ScriptJob[] last = new ScriptJob[PRIORITY_COUNT];
+
+	/**
+	 * Posts a job. May be called by any thread.
+	 * 
+	 * @param orderingKey
+	 *            The event (or any other object) the job belongs to - may be
+	 *            null
+	 * @param priority
+	 *            One of PRIORITY_HIGH, PRIORITY_NORMAL or PRIORITY_LOW
+	 * @param coalesce
+	 *            The job is dropped if a job for the same target and
+	 *            handler is pending
+	 * @param description
+	 *            Short description of the trigger/event
+	 * @param script
+	 *            The script to execute
+	 * @param invokeFnc
+	 *            Function to invoke - may be null
+	 * @param invokeParm
+	 *            Parameters for invoked function
+	 * @return false if the job has been coalesced with a pending job
+	 */
+	public boolean post(Object orderingKey, int priority, boolean coalesce,
+			String description, String script, String invokeFnc,
+			Object[] invokeParm) {
+		CoalesceKey key = null;
+		if (coalesce) {
+			key = new CoalesceKey(orderingKey, script, invokeFnc);
+			if (coalescable.putIfAbsent(key, Boolean.TRUE) != null)
+				return false;
+		}
+		ScriptJob job = obtain();
+		job.coalesceKey = key;
+		job.orderingKey = orderingKey;
+		job.priority = Math.max(0, Math.min(PRIORITY_COUNT - 1, priority));
+		job.description = description;
+		job.script = script;
+		job.invokeFnc = invokeFnc;
+		job.invokeParm = invokeParm;
+		pending.incrementAndGet();
+		ScriptJob top;
+		do {
+			top = posted.get();
+			job.next = top;
+		} while (!posted.compareAndSet(top, job));
+		if (waiting)
+			LockSupport.unpark(consumer);
+		return true;
+	}
+
+	/**
+	 * Parks the calling thread until a job is available. Must only be called
+	 * by the consumer.
+	 * 
+	 * @return false if the queue has been disposed
+	 */
+	public boolean await() {
+		consumer = Thread.currentThread();
+		while (!disposed) {
+			if (hasSortedJobs() || posted.get() != null)
+				return true;
+			waiting = true;
+			// a producer unparks after pushing, if it reads waiting == true
+			if (posted.get() == null && !disposed)
+				LockSupport.park(this);
+			waiting = false;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the next job with the highest priority or null if there is no
+	 * job. Must only be called by the consumer. The job must be returned by
+	 * calling {@link #free(ScriptJob)} after the execution.
+	 * 
+	 * @return the next job or null
+	 */
+	public ScriptJob poll() {
+		if (posted.get() != null)
+			sortPostedJobs();
+		for (int p = 0; p < PRIORITY_COUNT; p++) {
+			ScriptJob job = first[p];
+			if (job != null) {
+				first[p] = job.next;
+				if (job.next == null)
+					last[p] = null;
+				job.next = null;
+				// the same handler posted from now on will be executed again
+				if (job.coalesceKey != null)
+					coalescable.remove(job.coalesceKey);
+				return job;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the executed job to the pool. Must only be called by the
+	 * consumer.
+	 * 
+	 * @param job
+	 */
+	public void free(ScriptJob job) {
+		recycle(job);
+		pending.decrementAndGet();
+	}
+
+	/**
+	 * The answer is exact for the consumer. For other threads the queue may
+	 * become empty shortly after.
+	 * 
+	 * @return true if all posted jobs have been executed
+	 */
+	public boolean isEmpty() {
+		return pending.get() == 0;
+	}
+
+	/**
+	 * The job which is currently executed counts as pending until it's freed.
+	 * 
+	 * @return the number of posted jobs which have not been freed
+	 */
+	public int size() {
+		return pending.get();
+	}
+
+	public void dispose() {
+		disposed = true;
+		Thread c = consumer;
+		if (c != null)
+			LockSupport.unpark(c);
+	}
+
+	private boolean hasSortedJobs() {
+		for (int p = 0; p < PRIORITY_COUNT; p++)
+			if (first[p] != null)
+				return true;
+		return false;
+	}
+
+	private void sortPostedJobs() {
+		// reverse the stack to restore the posting order
+		ScriptJob reversed = null;
+		for (ScriptJob job = posted.getAndSet(null); job != null;) {
+			ScriptJob next = job.next;
+			job.next = reversed;
+			reversed = job;
+			job = next;
+		}
+		for (ScriptJob job = reversed; job != null;) {
+			ScriptJob next = job.next;
+			int p = job.priority;
+			job.next = null;
+			if (last[p] == null)
+				first[p] = job;
+			else
+				last[p].next = job;
+			last[p] = job;
+			job = next;
+		}
+	}
+
+	private ScriptJob obtain() {
+		long head;
+		int index;
+		do {
+			head = freeHead.get();
+			index = (int) (head & INDEX_MASK) - 1;
+			if (index < 0)
+				return newJob();
+		} while (!freeHead.compareAndSet(head, (head & ~INDEX_MASK) + STAMP
+				| nextFree.get(index)));
+		return slots[index];
+	}
+
+	private ScriptJob newJob() {
+		ScriptJob job = new ScriptJob();
+		int index = createdJobs.get() < POOL_SIZE ? createdJobs
+				.getAndIncrement() : POOL_SIZE;
+		if (index < POOL_SIZE) {
+			job.slot = index;
+			slots[index] = job;
+		}
+		return job;
+	}
+
+	private void recycle(ScriptJob job) {
+		job.reset();
+		int slot = job.slot;
+		if (slot < 0)
+			return;
+		long head;
+		do {
+			head = freeHead.get();
+			nextFree.set(slot, (int) (head & INDEX_MASK));
+		} while (!freeHead.compareAndSet(head, (head & ~INDEX_MASK) + STAMP
+				| (slot + 1)));
+	}
+
+	/**
+	 * A pooled script job. Use {@link ScriptJobQueue#post} to create a job.
+	 * 
+	 * @author Alexander Baumgartner
+	 */
+	public static class ScriptJob implements Poolable {
+		private ScriptJob next;
+		// index in the pool or -1 if the job isn't pooled
+		private int slot = -1;
+		private CoalesceKey coalesceKey;
+		private Object orderingKey;
+		private int priority;
+		private String description;
+		private String script;
+		private String invokeFnc;
+		private Object[] invokeParm;
+
+		protected ScriptJob() {
+		}
+
+		/**
+		 * @return The event (or any other object) the job belongs to
+		 */
+		public Object getOrderingKey() {
+			return orderingKey;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public String getScript() {
+			return script;
+		}
+
+		/**
+		 * @return The function to invoke or null if the script is evaluated
+		 */
+		public String getInvokeFnc() {
+			return invokeFnc;
+		}
+
+		public Object[] getInvokeParm() {
+			return invokeParm;
+		}
+
+		@Override
+		public void reset() {
+			next = null;
+			coalesceKey = null;
+			orderingKey = null;
+			description = null;
+			script = null;
+			invokeFnc = null;
+			invokeParm = null;
+		}
+	}
+
+	/**
+	 * The immutable identity of a coalescable job: the target (ordering key)
+	 * and the handler (script and function).
+	 */
+	private static final class CoalesceKey {
+		private final Object target;
+		private final String script;
+		private final String invokeFnc;
+		private final int hash;
+
+		CoalesceKey(Object target, String script, String invokeFnc) {
+			this.target = target;
+			this.script = script;
+			this.invokeFnc = invokeFnc;
+			int h = target == null ? 0 : target.hashCode();
+			h = 31 * h + (script == null ? 0 : script.hashCode());
+			this.hash = 31 * h + (invokeFnc == null ? 0 : invokeFnc.hashCode());
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof CoalesceKey))
+				return false;
+			CoalesceKey o = (CoalesceKey) obj;
+			return hash == o.hash && eq(target, o.target)
+					&& eq(script, o.script) && eq(invokeFnc, o.invokeFnc);
+		}
+
+		private static boolean eq(Object a, Object b) {
+			return a == null ? b == null : a.equals(b);
+		}
+	}
+}
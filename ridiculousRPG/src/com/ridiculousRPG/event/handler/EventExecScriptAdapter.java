@@ -18,6 +18,9 @@ package com.ridiculousRPG.event.handler;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -26,11 +29,13 @@ import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
-import com.badlogic.gdx.Gdx;
 import com.ridiculousRPG.GameBase;
+import com.ridiculousRPG.ScriptFactory;
 import com.ridiculousRPG.event.EventObject;
+import com.ridiculousRPG.event.EventTriggerAsync;
 import com.ridiculousRPG.map.tiled.TiledMapWithEvents;
 import com.ridiculousRPG.util.ObjectState;
+import com.ridiculousRPG.util.ScriptMetrics;
 
 /**
  * This class executes JavaScript on touch, push, timer, load, store and custom
@@ -72,13 +77,22 @@ public class EventExecScriptAdapter extends EventAdapter {
 	private static transient String TIMER_TEMPLATE;
 	private static transient String STATECHANGE_TEMPLATE;
 	private static transient String TOUCH_TEMPLATE;
+	// handler indices
+	private static final int PUSH = 0, TOUCH = 1, TIMER = 2, STATE_CHANGE = 3,
+			CUSTOM_TRIGGER = 4, LOAD = 5;
+	private static final String[] HANDLER_NAMES = { "onPush", "onTouch",
+			"onTimer", "onStateChange", "onCustomTrigger", "onLoad" };
 	private transient Invocable localEngine;
+	// metrics of the handlers (see HANDLER_NAMES)
+	private transient ScriptMetrics.Entry[] metricsEntries;
 	private SortedMap<Integer, String> onPush = new TreeMap<Integer, String>();
 	private SortedMap<Integer, String> onTouch = new TreeMap<Integer, String>();
 	private SortedMap<Integer, String> onTimer = new TreeMap<Integer, String>();
 	private SortedMap<Integer, String> onStateChange = new TreeMap<Integer, String>();
 	private SortedMap<Integer, String> onLoad = new TreeMap<Integer, String>();
 	private SortedMap<Integer, String> onCustomTrigger = new TreeMap<Integer, String>();
+	// the script lines which have been loaded from a file
+	private ArrayList<ScriptFile> scriptFiles;
 
 	/**
 	 * Creates an script executing event handler for the specified object
@@ -92,24 +106,19 @@ public class EventExecScriptAdapter extends EventAdapter {
 	@Override
 	public void init() {
 		if (CUSTOMTRIGGER_TEMPLATE == null) {
-			CUSTOMTRIGGER_TEMPLATE = Gdx.files.internal(
-					GameBase.$options().eventCustomTriggerTemplate).readString(
-					GameBase.$options().encoding);
-			LOAD_TEMPLATE = Gdx.files.internal(
-					GameBase.$options().eventLoadTemplate).readString(
-					GameBase.$options().encoding);
-			PUSH_TEMPLATE = Gdx.files.internal(
-					GameBase.$options().eventPushTemplate).readString(
-					GameBase.$options().encoding);
-			TIMER_TEMPLATE = Gdx.files.internal(
-					GameBase.$options().eventTimerTemplate).readString(
-					GameBase.$options().encoding);
-			STATECHANGE_TEMPLATE = Gdx.files.internal(
-					GameBase.$options().eventStateChangeTemplate).readString(
-					GameBase.$options().encoding);
-			TOUCH_TEMPLATE = Gdx.files.internal(
-					GameBase.$options().eventTouchTemplate).readString(
-					GameBase.$options().encoding);
+			ScriptFactory factory = GameBase.$scriptFactory();
+			CUSTOMTRIGGER_TEMPLATE = factory.readFile(GameBase.$options()
+					.eventCustomTriggerTemplate);
+			LOAD_TEMPLATE = factory.readFile(GameBase.$options()
+					.eventLoadTemplate);
+			PUSH_TEMPLATE = factory.readFile(GameBase.$options()
+					.eventPushTemplate);
+			TIMER_TEMPLATE = factory.readFile(GameBase.$options()
+					.eventTimerTemplate);
+			STATECHANGE_TEMPLATE = factory.readFile(GameBase.$options()
+					.eventStateChangeTemplate);
+			TOUCH_TEMPLATE = factory.readFile(GameBase.$options()
+					.eventTouchTemplate);
 		}
 		if (timer || stateChange) {
 			try {
@@ -137,98 +146,121 @@ public class EventExecScriptAdapter extends EventAdapter {
 	public boolean onPush(EventObject eventTrigger) {
 		if (!push)
 			return false;
-		try {
-			String script = GameBase.$scriptFactory().prepareScriptFunction(
-					onPush, PUSH_TEMPLATE);
-			GameBase.$().getSharedEngine().put(ScriptEngine.FILENAME,
-					"onPush-Event");
-			return (Boolean) GameBase.$().invokeFunction(script, "onPush",
-					getBelongingObject(), eventTrigger, getActualState());
-		} catch (Exception e) {
-			logError("push", e);
-			return false;
-		}
+		return Boolean.TRUE.equals(execHandler(PUSH, onPush, PUSH_TEMPLATE,
+				"onPush-Event", getBelongingObject(), eventTrigger,
+				getActualState()));
 	}
 
 	@Override
 	public boolean onTouch(EventObject eventTrigger) {
 		if (!touch)
 			return false;
-		try {
-			String script = GameBase.$scriptFactory().prepareScriptFunction(
-					onTouch, TOUCH_TEMPLATE);
-			GameBase.$().getSharedEngine().put(ScriptEngine.FILENAME,
-					"onTouch-Event");
-			return (Boolean) GameBase.$().invokeFunction(script, "onTouch",
-					getBelongingObject(), eventTrigger, getActualState());
-		} catch (Exception e) {
-			logError("touch", e);
-			return false;
-		}
+		return Boolean.TRUE.equals(execHandler(TOUCH, onTouch, TOUCH_TEMPLATE,
+				"onTouch-Event", getBelongingObject(), eventTrigger,
+				getActualState()));
 	}
 
 	@Override
 	public boolean onTimer(float deltaTime) {
 		if (!timer)
 			return false;
-		try {
-			return (Boolean) localEngine.invokeFunction("onTimer",
-					getBelongingObject(), deltaTime, getActualState());
-		} catch (Exception e) {
-			logError("timer", e);
-			return false;
-		}
+		return Boolean.TRUE.equals(execHandler(TIMER, onTimer, null, null,
+				getBelongingObject(), deltaTime, getActualState()));
 	}
 
 	@Override
 	public void onStateChange(ObjectState globalState) {
 		if (!stateChange)
 			return;
-		try {
-			localEngine.invokeFunction("onStateChange", getBelongingObject(),
-					getActualState(), globalState);
-		} catch (Exception e) {
-			logError("stateChange", e);
-		}
+		execHandler(STATE_CHANGE, onStateChange, null, null,
+				getBelongingObject(), getActualState(), globalState);
 	}
 
 	@Override
 	public boolean onCustomTrigger(int triggerId) {
 		if (!customTrigger)
 			return false;
-		try {
-			String script = GameBase.$scriptFactory().prepareScriptFunction(
-					onCustomTrigger, CUSTOMTRIGGER_TEMPLATE);
-			GameBase.$().getSharedEngine().put(ScriptEngine.FILENAME,
-					"onCustomTrigger" + triggerId + "-Event");
-			return (Boolean) GameBase.$().invokeFunction(script,
-					"onCustomTrigger", getBelongingObject(), triggerId,
-					getActualState());
-		} catch (Exception e) {
-			logError("customTrigger", e);
-			return false;
-		}
+		return Boolean.TRUE.equals(execHandler(CUSTOM_TRIGGER,
+				onCustomTrigger, CUSTOMTRIGGER_TEMPLATE, "onCustomTrigger"
+						+ triggerId + "-Event", getBelongingObject(),
+				triggerId, getActualState()));
 	}
 
 	@Override
 	public void onLoad() {
 		if (!load)
 			return;
+		execHandler(LOAD, onLoad, LOAD_TEMPLATE, "onLoad-Event",
+				getBelongingObject(), getActualState());
+	}
+
+	/**
+	 * Executes one handler and records its metrics. The continuous handlers
+	 * (timer and state change) are invoked on the local engine, all other
+	 * handlers are prepared from their template and invoked on the shared
+	 * engine.
+	 * 
+	 * @param handler
+	 *            The index of the handler
+	 * @param lines
+	 *            The script lines of the handler
+	 * @param template
+	 *            The template or null to use the local engine
+	 * @param fileName
+	 *            The file name for the shared engine
+	 * @param args
+	 *            The arguments passed to the script function
+	 * @return The value returned by the script or null if it failed
+	 */
+	private Object execHandler(int handler, SortedMap<Integer, String> lines,
+			String template, String fileName, Object... args) {
+		String fnc = HANDLER_NAMES[handler];
+		ScriptMetrics metrics = GameBase.$serviceProvider().getScriptMetrics();
+		long start = metrics.start();
 		try {
+			if (template == null)
+				return localEngine.invokeFunction(fnc, args);
 			String script = GameBase.$scriptFactory().prepareScriptFunction(
-					onLoad, LOAD_TEMPLATE);
+					lines, template);
 			GameBase.$().getSharedEngine().put(ScriptEngine.FILENAME,
-					"onLoad-Event");
-			GameBase.$().invokeFunction(script, "onLoad", getBelongingObject(),
-					getActualState());
+					fileName);
+			return GameBase.$().invokeFunction(script, fnc, args);
 		} catch (Exception e) {
-			logError("load", e);
+			metrics.error(metricsEntry(metrics, handler), e);
+			GameBase.$error("EventObject." + fnc, "Could not execute " + fnc
+					+ " script for " + getBelongingObject(), e);
+			return null;
+		} finally {
+			if (start != 0L) {
+				ScriptMetrics.Entry entry = metricsEntry(metrics, handler);
+				if (metrics.stop(entry, start))
+					metrics.logSlowScript(entry, joinLines(lines));
+			}
 		}
 	}
 
-	private void logError(String eventType, Exception e) {
-		GameBase.$error("EventObject.on" + eventType, "Could not execute "
-				+ eventType + " script for " + getBelongingObject(), e);
+	private ScriptMetrics.Entry metricsEntry(ScriptMetrics metrics,
+			int handler) {
+		ScriptMetrics.Entry[] entries = metricsEntries;
+		if (entries == null)
+			metricsEntries = entries = new ScriptMetrics.Entry[HANDLER_NAMES.length];
+		ScriptMetrics.Entry entry = entries[handler];
+		if (entry == null) {
+			entry = metrics.getEntry(getBelongingObject(),
+					HANDLER_NAMES[handler]);
+			entries[handler] = entry;
+		}
+		return entry;
+	}
+
+	// the script lines are only joined for logging slow scripts
+	private static String joinLines(SortedMap<Integer, String> lines) {
+		if (lines == null)
+			return null;
+		StringBuilder script = new StringBuilder();
+		for (String line : lines.values())
+			script.append(line).append('\n');
+		return script.toString();
 	}
 
 	/**
@@ -250,11 +282,8 @@ public class EventExecScriptAdapter extends EventAdapter {
 	 *            The line index of this script line(s)
 	 */
 	public final void execOnPush(String val, int index) {
-		val = GameBase.$scriptFactory().loadScript(val);
-		if (val.trim().length() > 0) {
-			onPush.put(index, val);
+		if (addLines(onPush, val, index))
 			push = true;
-		}
 	}
 
 	/**
@@ -276,11 +305,8 @@ public class EventExecScriptAdapter extends EventAdapter {
 	 *            The line index of this script line(s)
 	 */
 	public final void execOnTouch(String val, int index) {
-		val = GameBase.$scriptFactory().loadScript(val);
-		if (val.trim().length() > 0) {
-			onTouch.put(index, val);
+		if (addLines(onTouch, val, index))
 			touch = true;
-		}
 	}
 
 	/**
@@ -302,19 +328,13 @@ public class EventExecScriptAdapter extends EventAdapter {
 	 *            The line index of this script line(s)
 	 */
 	public final void execOnTimer(String val, int index) {
-		val = GameBase.$scriptFactory().loadScript(val);
-		if (val.trim().length() > 0) {
-			onTimer.put(index, val);
+		if (addLines(onTimer, val, index))
 			timer = true;
-		}
 	}
 
 	public void execOnStateChange(String val, int index) {
-		val = GameBase.$scriptFactory().loadScript(val);
-		if (val.trim().length() > 0) {
-			onStateChange.put(index, val);
+		if (addLines(onStateChange, val, index))
 			stateChange = true;
-		}
 	}
 
 	/**
@@ -336,11 +356,8 @@ public class EventExecScriptAdapter extends EventAdapter {
 	 *            The line index of this script line(s)
 	 */
 	public final void execOnCustomTrigger(String val, int index) {
-		val = GameBase.$scriptFactory().loadScript(val);
-		if (val.trim().length() > 0) {
-			onCustomTrigger.put(index, val);
+		if (addLines(onCustomTrigger, val, index))
 			customTrigger = true;
-		}
 	}
 
 	/**
@@ -362,11 +379,85 @@ public class EventExecScriptAdapter extends EventAdapter {
 	 *            The line index of this script line(s)
 	 */
 	public final void execOnLoad(String val, int index) {
-		val = GameBase.$scriptFactory().loadScript(val);
-		if (val.trim().length() > 0) {
-			onLoad.put(index, val);
+		if (addLines(onLoad, val, index))
 			load = true;
+	}
+
+	private boolean addLines(SortedMap<Integer, String> lines, String val,
+			int index) {
+		String script = GameBase.$scriptFactory().loadScript(val);
+		if (script.trim().length() == 0)
+			return false;
+		lines.put(index, script);
+		// loadScript returns the unchanged string if it's not a file
+		if (script != val) {
+			if (scriptFiles == null)
+				scriptFiles = new ArrayList<ScriptFile>(2);
+			scriptFiles.add(new ScriptFile(val, lines, index));
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the paths of all script files used by this event handler to the
+	 * given collection.
+	 * 
+	 * @param paths
+	 */
+	public void collectScriptFiles(Collection<String> paths) {
+		ArrayList<ScriptFile> files = scriptFiles;
+		if (files != null)
+			for (int i = 0, len = files.size(); i < len; i++)
+				paths.add(files.get(i).path);
+	}
+
+	/**
+	 * @param path
+	 * @return true if this event handler uses the given script file
+	 */
+	public boolean usesScriptFile(String path) {
+		ArrayList<ScriptFile> files = scriptFiles;
+		if (files != null)
+			for (int i = 0, len = files.size(); i < len; i++)
+				if (files.get(i).path.equals(path))
+					return true;
+		return false;
+	}
+
+	/**
+	 * Reloads all script lines which have been loaded from the given file and
+	 * compiles the script functions again. The state of the event is kept.<br>
+	 * Call {@link ScriptFactory#invalidateScript(String)} before, otherwise
+	 * the cached script may be used.<br>
+	 * Must be called by the thread which calls the event handlers (see
+	 * {@link EventTriggerAsync#invokeLater(Runnable)}).
+	 * 
+	 * @param path
+	 *            The path of the modified script file
+	 * @return true if this event handler uses the given file
+	 */
+	public boolean reloadScript(String path) {
+		ArrayList<ScriptFile> files = scriptFiles;
+		if (files == null)
+			return false;
+		boolean reloaded = false;
+		for (int i = 0, len = files.size(); i < len; i++) {
+			ScriptFile f = files.get(i);
+			if (f.path.equals(path)) {
+				f.lines.put(f.index, GameBase.$scriptFactory()
+						.loadScript(path));
+				reloaded = true;
+			}
 		}
+		if (reloaded) {
+			Invocable oldEngine = localEngine;
+			init();
+			// the old engine is only used by the calling thread
+			if (oldEngine != null && oldEngine != localEngine)
+				((ScriptEngine) oldEngine).getBindings(
+						ScriptContext.ENGINE_SCOPE).clear();
+		}
+		return reloaded;
 	}
 
 	/**
@@ -387,6 +478,7 @@ public class EventExecScriptAdapter extends EventAdapter {
 		this.onTimer = other.onTimer;
 		this.onLoad = other.onLoad;
 		this.onCustomTrigger = other.onCustomTrigger;
+		this.scriptFiles = other.scriptFiles;
 		init();
 	}
 
@@ -413,5 +505,22 @@ public class EventExecScriptAdapter extends EventAdapter {
 		onTimer = null;
 		onLoad = null;
 		onCustomTrigger = null;
+		scriptFiles = null;
+	}
+
+	private static class ScriptFile implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final String path;
+		// one of the script line maps (the reference is kept by serialization)
+		private final SortedMap<Integer, String> lines;
+		private final int index;
+
+		public ScriptFile(String path, SortedMap<Integer, String> lines,
+				int index) {
+			this.path = path;
+			this.lines = lines;
+			this.index = index;
+		}
 	}
 }
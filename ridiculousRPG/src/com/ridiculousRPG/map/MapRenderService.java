@@ -25,7 +25,7 @@ import com.badlogic.gdx.math.Matrix4;
 import com.ridiculousRPG.GameBase;
 import com.ridiculousRPG.GameServiceProvider;
 import com.ridiculousRPG.movement.Movable;
-import com.ridiculousRPG.service.Computable;
+import com.ridiculousRPG.service.DoubleBuffered;
 import com.ridiculousRPG.service.Drawable;
 import com.ridiculousRPG.service.GameServiceDefaultImpl;
 import com.ridiculousRPG.service.ResizeListener;
@@ -37,7 +37,7 @@ import com.ridiculousRPG.service.ResizeListener;
  * @author Alexander Baumgartner
  */
 public class MapRenderService extends GameServiceDefaultImpl implements
-		Computable, Drawable, Serializable {
+		DoubleBuffered, Drawable, Serializable {
 	private static final long serialVersionUID = 1L;
 
 	private MapWithEvents<?> map;
@@ -81,6 +81,11 @@ public class MapRenderService extends GameServiceDefaultImpl implements
 			map.draw(spriteBatch, camera, debug);
 	}
 
+	public void snapshot(Camera camera) {
+		if (map != null)
+			map.snapshot(camera);
+	}
+
 	@Override
 	public void freeze() {
 		if (map == null)
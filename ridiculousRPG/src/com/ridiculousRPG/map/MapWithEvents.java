@@ -105,6 +105,15 @@ public interface MapWithEvents<T extends Movable> extends Disposable,
 	 */
 	public void draw(SpriteBatch spriteBatch, Camera camera, boolean debug);
 
+	/**
+	 * Copies the draw state of all events. If the simulation is pipelined,
+	 * {@link #draw(SpriteBatch, Camera, boolean)} only uses the copied state.
+	 * 
+	 * @param camera
+	 * @see com.ridiculousRPG.service.DoubleBuffered
+	 */
+	public void snapshot(Camera camera);
+
 	public FileHandle getExternalSavePath();
 
 	public void dispose(final boolean recycle);
@@ -44,6 +44,13 @@ public class OnChangeMapPacker {
 		this.mapOutDir = new File(mapOutDir);
 	}
 
+	/**
+	 * @return The directory with the source maps and tile sets
+	 */
+	public File getMapInDir() {
+		return mapInDir;
+	}
+
 	public void packOnChange() {
 		try {
 			boolean packMaps = false;
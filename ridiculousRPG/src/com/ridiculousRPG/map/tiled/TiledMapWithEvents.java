@@ -23,6 +23,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +41,7 @@ import com.badlogic.gdx.graphics.g2d.tiled.TiledLoader;
 import com.badlogic.gdx.graphics.g2d.tiled.TiledMap;
 import com.badlogic.gdx.graphics.g2d.tiled.TiledObject;
 import com.badlogic.gdx.graphics.g2d.tiled.TiledObjectGroup;
+import com.badlogic.gdx.utils.Array;
 import com.ridiculousRPG.DebugHelper;
 import com.ridiculousRPG.GameBase;
 import com.ridiculousRPG.event.EllipseObject;
@@ -48,15 +50,24 @@ import com.ridiculousRPG.event.EventObject;
 import com.ridiculousRPG.event.EventTrigger;
 import com.ridiculousRPG.event.EventTriggerAsync;
 import com.ridiculousRPG.event.PolygonObject;
+import com.ridiculousRPG.event.EventObject.DrawState;
 import com.ridiculousRPG.event.EventObject.MoveTransformation;
+import com.ridiculousRPG.event.handler.EventExecScriptAdapter;
 import com.ridiculousRPG.event.handler.EventHandler;
 import com.ridiculousRPG.map.MapLoader;
 import com.ridiculousRPG.map.MapRenderRegion;
 import com.ridiculousRPG.map.MapWithEvents;
 import com.ridiculousRPG.util.BlockingBehavior;
 import com.ridiculousRPG.util.ExecWithGlContext;
+import com.ridiculousRPG.util.FixedTimestep;
+import com.ridiculousRPG.util.FrameProfiler;
+import com.ridiculousRPG.util.FrameProfiler.Section;
 import com.ridiculousRPG.util.IntSet;
+import com.ridiculousRPG.util.LineMesh;
 import com.ridiculousRPG.util.ObjectState;
+import com.ridiculousRPG.util.RenderPassScheduler;
+import com.ridiculousRPG.util.SpatialGrid;
+import com.ridiculousRPG.util.SpatialGrid.Entry;
 
 /**
  * This class represents a tiled map with events on this map.<br>
@@ -67,9 +78,13 @@ import com.ridiculousRPG.util.ObjectState;
  */
 public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 	private static final long serialVersionUID = 1L;
+	// the size of one cell of the draw index (in tiles)
+	private static final int DRAW_INDEX_CELL_SIZE = 4;
 
 	private static transient MapLoader<EventObject> mapLoader;
 	private transient TileAtlas atlas;
+	// replaced atlases, which are disposed after the next snapshot
+	private transient Array<TileAtlas> retiredAtlases;
 	private transient int width, height;
 	private transient int tileWidth, tileHeight;
 	private String tmxPath;
@@ -83,6 +98,14 @@ public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 	private transient MapRenderRegion[] staticRegions;
 	// events
 	private List<EventObject> dynamicRegions = new ArrayList<EventObject>(50);
+	// draw states of the visible events in drawing order
+	private transient Array<DrawState> drawStates;
+	private transient int drawStateCount;
+	// spatial index over the draw bounds of all events
+	private transient SpatialGrid<EventObject> drawIndex;
+	private transient Array<Entry<EventObject>> drawCandidates;
+	private transient volatile boolean drawIndexDirty;
+	private transient boolean drawIndexRefreshed;
 	// named events
 	private Map<String, EventObject> namedRegions = new HashMap<String, EventObject>(
 			30);
@@ -91,6 +114,13 @@ public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 	// named polygons
 	private Map<String, PolygonObject> polyMap = new HashMap<String, PolygonObject>(
 			16);
+	// outlines of all polygons (only rebuilt if a polygon has changed)
+	private transient LineMesh polygonMesh;
+	// incremented whenever a polygon is added or removed
+	private transient int polygonModCount;
+	private transient int polygonMeshModCount;
+	private transient Section tileDrawSection;
+	private transient Section polygonDrawSection;
 	// ellipses
 	private List<EllipseObject> ellipseList = new ArrayList<EllipseObject>(16);
 	// named ellipses
@@ -98,7 +128,17 @@ public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 			16);
 
 	private static transient EventTrigger eventTrigger;
+	// the action key is remembered until the next tick is simulated
+	private transient boolean actionKeyLatch;
 	private static final HashMap<Integer, ObjectState> EMPTY_MAP = new HashMap<Integer, ObjectState>();
+	// rendering order of the events (the order of insertion if they are equal)
+	private static final Comparator<Entry<EventObject>> DRAW_ORDER = new Comparator<Entry<EventObject>>() {
+		@Override
+		public int compare(Entry<EventObject> o1, Entry<EventObject> o2) {
+			int c = o1.getValue().compareTo(o2.getValue());
+			return c != 0 ? c : o1.getSequence() - o2.getSequence();
+		}
+	};
 
 	TiledMapWithEvents(String tmxPath) throws ScriptException {
 		TiledMap map = loadTileMap(tmxPath);
@@ -107,6 +147,27 @@ public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 		loadEvents(map);
 	}
 
+	/**
+	 * Creates a map without tmx file from the given static tiles. Such a
+	 * map can't be saved or reloaded. It's used to drive the map with
+	 * generated tiles (e.g. by the benchmarks).
+	 * 
+	 * @param staticRegions
+	 *            The static tiles sorted in rendering order
+	 * @param width
+	 * @param height
+	 * @param tileWidth
+	 * @param tileHeight
+	 */
+	public TiledMapWithEvents(MapRenderRegion[] staticRegions, int width,
+			int height, int tileWidth, int tileHeight) {
+		this.staticRegions = staticRegions;
+		this.width = width;
+		this.height = height;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+	}
+
 	private TiledMap loadTileMap(String tmxPath) {
 		this.tmxPath = tmxPath;
 		final FileHandle tmxFile = Gdx.files.internal(tmxPath);
@@ -312,6 +373,7 @@ public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 		EventFactory.parseProps(poly, object.properties);
 
 		polyList.add(poly);
+		polygonModCount++;
 
 		if (name != null && name.length() != 0)
 			polyMap.put(name, poly);
@@ -414,12 +476,14 @@ public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 		} else {
 			dynamicRegions.add(event);
 		}
+		drawIndexDirty = true;
 		return old;
 	}
 
 	public void put(EventObject event) {
 		computeId(event);
 		dynamicRegions.add(event);
+		drawIndexDirty = true;
 	}
 
 	// TODO: NEEDS REFACTORING
@@ -466,6 +530,7 @@ public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 		EventObject old = namedRegions.remove(name);
 		if (old != null) {
 			dynamicRegions.remove(old);
+			drawIndexDirty = true;
 		}
 		return old;
 	}
@@ -506,18 +571,138 @@ public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 			// Uses a shared context to load textures in other thread
 			eventTrigger = new EventTriggerAsync();
 		}
-		eventTrigger
-				.compute(deltaTime, actionKeyDown, dynamicRegions, polyList);
+		FixedTimestep timestep = GameBase.$serviceProvider()
+				.getSimulationTimestep();
+		if (timestep.isEnabled()) {
+			actionKeyLatch |= actionKeyDown;
+			float step = timestep.getStep();
+			for (int i = timestep.getTicks(); i > 0; i--) {
+				eventTrigger.compute(step, actionKeyLatch, dynamicRegions,
+						polyList);
+				actionKeyLatch = false;
+			}
+		} else {
+			eventTrigger.compute(deltaTime, actionKeyDown, dynamicRegions,
+					polyList);
+		}
+		refreshDrawIndex();
+		drawIndexRefreshed = true;
+	}
+
+	/**
+	 * Moves the events within the draw index. Only events which have left
+	 * their cells are relinked. The index is rebuilt after events have been
+	 * added or removed.
+	 */
+	private void refreshDrawIndex() {
+		List<EventObject> dynamicRegions = this.dynamicRegions;
+		SpatialGrid<EventObject> drawIndex = this.drawIndex;
+		if (drawIndex == null || drawIndexDirty
+				|| drawIndex.getEntries().size != dynamicRegions.size()) {
+			drawIndexDirty = false;
+			if (drawIndex == null) {
+				drawIndex = this.drawIndex = new SpatialGrid<EventObject>(
+						width, height, tileWidth * DRAW_INDEX_CELL_SIZE,
+						tileHeight * DRAW_INDEX_CELL_SIZE);
+			} else {
+				drawIndex.clear();
+			}
+			for (int i = 0, len = dynamicRegions.size(); i < len; i++) {
+				EventObject event = dynamicRegions.get(i);
+				Rectangle2D.Float b = event.drawBound;
+				drawIndex.insert(event, b.x, b.y, b.width, b.height);
+			}
+		} else {
+			Array<Entry<EventObject>> entries = drawIndex.getEntries();
+			for (int i = 0, len = entries.size; i < len; i++) {
+				Entry<EventObject> e = entries.get(i);
+				Rectangle2D.Float b = e.getValue().drawBound;
+				drawIndex.update(e, b.x, b.y, b.width, b.height);
+			}
+		}
+	}
+
+	/**
+	 * Copies the draw state of all visible events near the view of the given
+	 * camera in rendering order. Only events in view are animated. Events far
+	 * away from the camera are not touched at all.
+	 */
+	public void snapshot(Camera camera) {
+		// the world is frozen or the map hasn't been computed yet
+		if (!drawIndexRefreshed)
+			refreshDrawIndex();
+		drawIndexRefreshed = false;
+		if (drawStates == null) {
+			drawStates = new Array<DrawState>(false, 16);
+			drawCandidates = new Array<Entry<EventObject>>(false, 16);
+		}
+		Array<DrawState> drawStates = this.drawStates;
+		Array<Entry<EventObject>> candidates = this.drawCandidates;
+		float alpha = GameBase.$serviceProvider().getSimulationTimestep()
+				.getAlpha();
+		float camX1 = camera.position.x;
+		float camX2 = camera.position.x + camera.viewportWidth;
+		float camY1 = camera.position.y;
+		float camY2 = camera.position.y + camera.viewportHeight;
+		// the camera may be moved after the snapshot has been taken (if the
+		// simulation is pipelined)
+		float nearX1 = camX1 - tileWidth, nearX2 = camX2 + tileWidth;
+		float nearY1 = camY1 - tileHeight, nearY2 = camY2 + tileHeight;
+		candidates.clear();
+		drawIndex.query(nearX1, nearY1, nearX2, nearY2, candidates);
+		candidates.sort(DRAW_ORDER);
+		int count = 0;
+		for (int i = 0, len = candidates.size; i < len; i++) {
+			EventObject event = candidates.get(i).getValue();
+			Rectangle2D.Float drawBound = event.drawBound;
+			if (event.visible && drawBound.x < nearX2 && drawBound.y < nearY2
+					&& drawBound.x + drawBound.width > nearX1
+					&& drawBound.y + drawBound.height > nearY1) {
+				if (count == drawStates.size)
+					drawStates.add(new DrawState());
+				boolean inView = drawBound.x < camX2 && drawBound.y < camY2
+						&& drawBound.x + drawBound.width > camX1
+						&& drawBound.y + drawBound.height > camY1;
+				event.snapshot(drawStates.get(count++), alpha, inView);
+			}
+		}
+		candidates.clear();
+		drawStateCount = count;
+		// the draw states don't use the regions of a replaced atlas anymore
+		disposeRetiredAtlases();
+	}
+
+	private void disposeRetiredAtlases() {
+		Array<TileAtlas> retired = retiredAtlases;
+		if (retired == null)
+			return;
+		for (int i = 0, len = retired.size; i < len; i++)
+			retired.get(i).dispose();
+		retiredAtlases = null;
 	}
 
 	// TODO: NEEDS REFACTORING
 	public void draw(SpriteBatch spriteBatch, Camera camera, boolean debug) {
-		List<EventObject> dynamicRegions = this.dynamicRegions;
-		Collections.sort(dynamicRegions);
+		// if pipelined, the snapshot is only taken between two simulated
+		// frames (while the simulation thread is idle). Nothing is drawn
+		// until the first snapshot of a new map has been taken.
+		if (!GameBase.$serviceProvider().isPipelined())
+			snapshot(camera);
+		else if (drawStates == null)
+			return;
 		// Load pointers into register
+		Array<DrawState> drawStates = this.drawStates;
 		MapRenderRegion[] staticRegions = this.staticRegions;
 		MapRenderRegion region;
-		Rectangle2D.Float drawBound;
+		FrameProfiler profiler = GameBase.$serviceProvider().getProfiler();
+		long start = 0L;
+		if (profiler.isEnabled()) {
+			if (tileDrawSection == null) {
+				tileDrawSection = profiler.getSection("map.tileDraw");
+				polygonDrawSection = profiler.getSection("map.polygonDraw");
+			}
+			start = System.nanoTime();
+		}
 		// Load variables into register
 		float camX1 = camera.position.x;
 		float camX2 = camera.position.x + camera.viewportWidth;
@@ -525,8 +710,8 @@ public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 		float camY2 = camera.position.y + camera.viewportHeight;
 
 		int i = 0;
-		EventObject event = dynamicRegions.get(0); // is never empty
-		int dynSize = dynamicRegions.size();
+		int dynSize = drawStateCount;
+		DrawState event = dynSize > 0 ? drawStates.get(0) : null;
 		// If there are performance problems:
 		// USE SPRITECACHE TO RENDER STATIC TILES!!!!!
 		// 1) Add only MapRenderRegions with z>0 to staticRegions
@@ -544,44 +729,66 @@ public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 			if (rX < camX2 && rY < camY2 && rX + region.width > camX1
 					&& rY + region.height > camY1) {
 				while (dynSize > i && event.compareTo(region) == -1) {
-					if (event.visible) {
-						drawBound = event.drawBound;
-						if (drawBound.x < camX2 && drawBound.y < camY2
-								&& drawBound.x + drawBound.width > camX1
-								&& drawBound.y + drawBound.height > camY1)
-							event.draw(spriteBatch);
-					}
+					if (event.overlaps(camX1, camY1, camX2, camY2))
+						event.draw(spriteBatch);
 					i++;
 					if (dynSize > i)
-						event = dynamicRegions.get(i);
+						event = drawStates.get(i);
 				}
 				region.draw(spriteBatch);
 			}
 		}
 		while (dynSize > i) {
-			event = dynamicRegions.get(i);
-			if (event.visible) {
-				drawBound = event.drawBound;
-				if (drawBound.x < camX2 && drawBound.y < camY2
-						&& drawBound.x + drawBound.width > camX1
-						&& drawBound.y + drawBound.height > camY1)
-					event.draw(spriteBatch);
-			}
+			event = drawStates.get(i);
+			if (event.overlaps(camX1, camY1, camX2, camY2))
+				event.draw(spriteBatch);
 			i++;
 		}
 
-		// draw polygon objects
-		spriteBatch.end();
-		PolygonObject.startPolygonBatch(spriteBatch.getProjectionMatrix());
-		for (int j = 0, len = polyList.size(); j < len; j++)
-			polyList.get(j).draw(debug);
-		PolygonObject.endPolygonBatch();
+		if (start != 0L) {
+			long now = System.nanoTime();
+			tileDrawSection.record(now - start);
+			start = now;
+		}
+
+		// draw polygon objects (the sprite batch is only suspended if there
+		// is something to draw)
+		LineMesh polygonMesh = updatePolygonMesh(debug);
+		if (debug || polygonMesh.getLineCount() > 0) {
+			RenderPassScheduler passes = GameBase.$serviceProvider()
+					.getRenderPassScheduler();
+			polygonMesh.render(passes.suspend());
+			if (debug) {
+				DebugHelper.debugEvents(dynamicRegions);
+				DebugHelper.debugPolygons(polyList);
+			}
+			passes.resume();
+		}
+		if (start != 0L)
+			polygonDrawSection.record(System.nanoTime() - start);
+	}
 
-		if (debug) {
-			DebugHelper.debugEvents(dynamicRegions);
-			DebugHelper.debugPolygons(polyList);
+	/**
+	 * The outlines are only uploaded again if a polygon has been changed,
+	 * added or removed.
+	 */
+	private LineMesh updatePolygonMesh(boolean debug) {
+		List<PolygonObject> polyList = this.polyList;
+		int len = polyList.size();
+		boolean changed = polygonMesh == null
+				|| polygonMeshModCount != polygonModCount;
+		for (int j = 0; !changed && j < len; j++)
+			changed = polyList.get(j).isOutlineChanged(debug);
+		if (changed) {
+			if (polygonMesh == null)
+				polygonMesh = new LineMesh(true, 64);
+			polygonMesh.clear();
+			for (int j = 0; j < len; j++)
+				polyList.get(j).outline(polygonMesh, debug);
+			polygonMesh.upload();
+			polygonMeshModCount = polygonModCount;
 		}
-		spriteBatch.begin();
+		return polygonMesh;
 	}
 
 	public void dispose() {
@@ -610,8 +817,17 @@ public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 		}
 		if (atlas != null)
 			atlas.dispose();
+		disposeRetiredAtlases();
 		staticRegions = null;
 		dynamicRegions = null;
+		drawStates = null;
+		drawStateCount = 0;
+		drawIndex = null;
+		drawCandidates = null;
+		if (polygonMesh != null) {
+			polygonMesh.dispose();
+			polygonMesh = null;
+		}
 		namedRegions = null;
 		if (!recycle) {
 			if (eventTrigger != null) {
@@ -632,6 +848,73 @@ public class TiledMapWithEvents implements MapWithEvents<EventObject> {
 						+ ".sav");
 	}
 
+	/**
+	 * @return The path of the tmx file
+	 */
+	public String getTmxPath() {
+		return tmxPath;
+	}
+
+	/**
+	 * Reloads the tile layers and the tile atlas of this map from the tmx
+	 * file. The events and their states are kept. Only the images of the
+	 * events are taken from the new atlas.<br>
+	 * The old atlas is disposed after the next snapshot, because the draw
+	 * states of the last snapshot may still use its regions.<br>
+	 * Must be called by the main thread. If the size of the map has changed,
+	 * {@link GameBase#resizePlane(int, int)} has to be called afterwards.
+	 */
+	public void reloadTiles() {
+		TileAtlas oldAtlas = atlas;
+		TiledMap map = loadTileMap(tmxPath);
+		loadStaticTiles(map);
+		for (EventObject ev : dynamicRegions) {
+			if (ev.gid > 0)
+				ev.setImage((AtlasRegion) atlas.getRegion(ev.gid));
+		}
+		if (oldAtlas != null) {
+			if (retiredAtlases == null)
+				retiredAtlases = new Array<TileAtlas>(false, 2);
+			retiredAtlases.add(oldAtlas);
+		}
+	}
+
+	/**
+	 * Reloads the script file in all event handlers of this map which use
+	 * it. The handlers are reloaded by the event thread before it calls them
+	 * the next time (see {@link EventExecScriptAdapter#reloadScript(String)}
+	 * ).
+	 * 
+	 * @param path
+	 *            The path of the modified script file
+	 * @return the number of event handlers which use the file
+	 */
+	public int reloadScript(final String path) {
+		final Array<EventExecScriptAdapter> handlers = new Array<EventExecScriptAdapter>();
+		Object[] events = getAllEvents().toArray();
+		for (Object ev : events) {
+			Object handler = ((EventObject) ev).eventHandler;
+			if (handler instanceof EventExecScriptAdapter
+					&& ((EventExecScriptAdapter) handler).usesScriptFile(path))
+				handlers.add((EventExecScriptAdapter) handler);
+		}
+		if (handlers.size == 0)
+			return 0;
+		Runnable reload = new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0, len = handlers.size; i < len; i++)
+					handlers.get(i).reloadScript(path);
+			}
+		};
+		if (eventTrigger instanceof EventTriggerAsync)
+			((EventTriggerAsync) eventTrigger).invokeLater(reload);
+		else
+			// the event thread hasn't been started yet
+			reload.run();
+		return handlers.size;
+	}
+
 	/**
 	 * Obtain the map loader to load tiled maps
 	 */
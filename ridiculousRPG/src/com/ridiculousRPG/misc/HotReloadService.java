@@ -0,0 +1,309 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.misc;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.ridiculousRPG.GameBase;
+import com.ridiculousRPG.event.EventObject;
+import com.ridiculousRPG.event.EventTriggerAsync;
+import com.ridiculousRPG.event.handler.EventExecScriptAdapter;
+import com.ridiculousRPG.map.MapRenderService;
+import com.ridiculousRPG.map.MapWithEvents;
+import com.ridiculousRPG.map.OnChangeMapPacker;
+import com.ridiculousRPG.map.tiled.TiledMapWithEvents;
+import com.ridiculousRPG.service.GameServiceDefaultImpl;
+import com.ridiculousRPG.service.Scheduled;
+import com.ridiculousRPG.util.ServiceRegistry.ServiceList;
+import com.ridiculousRPG.util.TextureRegionLoader;
+
+/**
+ * This service reloads modified files while the game is running. Only the
+ * affected caches are invalidated and everything is reloaded in place:
+ * <ul>
+ * <li>A modified tmx file reloads the tiles and the tile atlas of this map.
+ * The events and their states are kept.</li>
+ * <li>A modified script file reloads the script lines of every
+ * {@link EventExecScriptAdapter} which uses this file. The event handlers
+ * are reloaded by the event thread (see
+ * {@link EventTriggerAsync#invokeLater(Runnable)}).</li>
+ * <li>A modified picture reloads this texture of the
+ * {@link TextureRegionLoader}.</li>
+ * <li>A modified source map or tile set repacks the maps (see
+ * {@link OnChangeMapPacker}). The maps are packed by a background thread
+ * and the repacked tmx file is reloaded afterwards.</li>
+ * </ul>
+ * The files are only checked in debug mode. The modification times are
+ * polled every few frames by the main thread. A file is reloaded after its
+ * modification time has been stable for one check, therefore a file which
+ * is still being written isn't read.<br>
+ * This is an {@link #essential()} service, therefore it also works while a
+ * menu is open.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class HotReloadService extends GameServiceDefaultImpl implements
+		Scheduled {
+	private static final int MAP = 0;
+	private static final int SCRIPT = 1;
+	private static final int TEXTURE = 2;
+	private static final int MAP_SOURCE = 3;
+
+	private final OnChangeMapPacker mapPacker;
+	private final HashMap<String, Watch> watches = new HashMap<String, Watch>();
+	private final Array<Watch> modified = new Array<Watch>();
+	private final ArrayList<String> paths = new ArrayList<String>();
+	private int generation;
+	private int tickInterval = 15;
+	private final AtomicBoolean packing = new AtomicBoolean();
+	private volatile boolean repackAgain;
+
+	/**
+	 * Watches the current maps, the script files of their events and all
+	 * cached textures.
+	 */
+	public HotReloadService() {
+		this(null);
+	}
+
+	/**
+	 * Additionally watches the source maps and tile sets of the map packer.
+	 * 
+	 * @param mapPacker
+	 */
+	public HotReloadService(OnChangeMapPacker mapPacker) {
+		this.mapPacker = mapPacker;
+	}
+
+	@Override
+	public int tickInterval() {
+		return tickInterval;
+	}
+
+	/**
+	 * Sets the number of frames between two checks.
+	 * 
+	 * @param tickInterval
+	 */
+	public void setTickInterval(int tickInterval) {
+		this.tickInterval = Math.max(1, tickInterval);
+		GameBase.$serviceProvider().reschedule();
+	}
+
+	@Override
+	public boolean essential() {
+		return true;
+	}
+
+	@Override
+	public void compute(float deltaTime, boolean actionKeyDown) {
+		if (!GameBase.$options().debug)
+			return;
+		collect();
+		Array<Watch> modified = this.modified;
+		for (Iterator<Watch> it = watches.values().iterator(); it.hasNext();) {
+			Watch w = it.next();
+			if (w.generation != generation) {
+				it.remove();
+				continue;
+			}
+			long lastModified = w.file.lastModified();
+			if (lastModified != w.lastModified) {
+				w.lastModified = lastModified;
+				w.stable = false;
+			} else if (!w.stable) {
+				w.stable = true;
+				modified.add(w);
+			}
+		}
+		boolean repack = false;
+		for (int i = 0; i < modified.size; i++) {
+			Watch w = modified.get(i);
+			try {
+				if (w.kind == MAP_SOURCE)
+					repack = true;
+				else
+					reload(w);
+			} catch (Exception e) {
+				GameBase.$error("HotReloadService.reload",
+						"Could not reload " + w.path, e);
+			}
+		}
+		modified.clear();
+		if (repack)
+			repack();
+	}
+
+	// packs the maps by a background thread, a repack requested meanwhile
+	// is done afterwards
+	private void repack() {
+		if (!packing.compareAndSet(false, true)) {
+			repackAgain = true;
+			return;
+		}
+		repackAgain = false;
+		GameBase.$info("HotReloadService.repack", "Repacking the maps", null);
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					mapPacker.packOnChange();
+				} catch (Exception e) {
+					GameBase.$error("HotReloadService.repack",
+							"Could not repack the maps", e);
+				} finally {
+					packing.set(false);
+				}
+				if (repackAgain)
+					repack();
+			}
+		}, "HotReload-MapPacker");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	// marks all files which should be watched with the current generation
+	private void collect() {
+		generation++;
+		ServiceList<MapRenderService> maps = GameBase.$serviceProvider()
+				.getServiceList(MapRenderService.class);
+		for (int i = 0, len = maps.size(); i < len; i++) {
+			MapWithEvents<?> map = maps.get(i).getMap();
+			if (!(map instanceof TiledMapWithEvents))
+				continue;
+			TiledMapWithEvents tiledMap = (TiledMapWithEvents) map;
+			watch(tiledMap.getTmxPath(), null, MAP);
+			Object[] events = tiledMap.getAllEvents().toArray();
+			for (Object ev : events) {
+				Object handler = ((EventObject) ev).eventHandler;
+				if (handler instanceof EventExecScriptAdapter)
+					((EventExecScriptAdapter) handler)
+							.collectScriptFiles(paths);
+			}
+			watchAll(SCRIPT);
+		}
+		TextureRegionLoader.collectCachedPaths(paths);
+		watchAll(TEXTURE);
+		if (mapPacker != null) {
+			File[] sources = mapPacker.getMapInDir().listFiles();
+			if (sources != null)
+				for (File f : sources)
+					if (f.isFile())
+						watch(f.getPath(), Gdx.files.absolute(f
+								.getAbsolutePath()), MAP_SOURCE);
+		}
+	}
+
+	private void watchAll(int kind) {
+		for (int i = 0, len = paths.size(); i < len; i++)
+			watch(paths.get(i), null, kind);
+		paths.clear();
+	}
+
+	private void watch(String path, FileHandle file, int kind) {
+		Watch w = watches.get(path);
+		if (w == null) {
+			if (file == null)
+				file = Gdx.files.internal(path);
+			w = new Watch(path, file, kind);
+			watches.put(path, w);
+		}
+		w.generation = generation;
+	}
+
+	private void reload(Watch w) {
+		int count = 0;
+		switch (w.kind) {
+		case MAP:
+			count = reloadMap(w.path);
+			break;
+		case SCRIPT:
+			count = reloadScript(w.path);
+			break;
+		case TEXTURE:
+			if (TextureRegionLoader.reload(w.path))
+				count = 1;
+			else
+				GameBase.$info("HotReloadService.texture", "The picture "
+						+ w.path + " doesn't fit into the texture - please "
+						+ "restart the game", null);
+			break;
+		}
+		if (count > 0)
+			GameBase.$info("HotReloadService.reload", "Reloaded " + w.path
+					+ " (" + count + "x)", null);
+	}
+
+	private int reloadMap(String tmxPath) {
+		int count = 0;
+		ServiceList<MapRenderService> maps = GameBase.$serviceProvider()
+				.getServiceList(MapRenderService.class);
+		for (int i = 0, len = maps.size(); i < len; i++) {
+			MapWithEvents<?> map = maps.get(i).getMap();
+			if (map instanceof TiledMapWithEvents
+					&& tmxPath.equals(((TiledMapWithEvents) map).getTmxPath())) {
+				int width = map.getWidth();
+				int height = map.getHeight();
+				((TiledMapWithEvents) map).reloadTiles();
+				if (width != map.getWidth() || height != map.getHeight())
+					GameBase.$().resizePlane(map.getWidth(), map.getHeight());
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private int reloadScript(String path) {
+		GameBase.$scriptFactory().invalidateScript(path);
+		int count = 0;
+		ServiceList<MapRenderService> maps = GameBase.$serviceProvider()
+				.getServiceList(MapRenderService.class);
+		for (int i = 0, len = maps.size(); i < len; i++) {
+			MapWithEvents<?> map = maps.get(i).getMap();
+			if (map instanceof TiledMapWithEvents)
+				count += ((TiledMapWithEvents) map).reloadScript(path);
+		}
+		return count;
+	}
+
+	public void dispose() {
+		watches.clear();
+	}
+
+	private static class Watch {
+		private final String path;
+		private final FileHandle file;
+		private final int kind;
+		private long lastModified;
+		private boolean stable = true;
+		private int generation;
+
+		public Watch(String path, FileHandle file, int kind) {
+			this.path = path;
+			this.file = file;
+			this.kind = kind;
+			this.lastModified = file.lastModified();
+		}
+	}
+}
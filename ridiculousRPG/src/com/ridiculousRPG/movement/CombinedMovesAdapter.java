@@ -21,10 +21,12 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
+import java.util.Random;
 
 import com.badlogic.gdx.utils.Pool;
 import com.badlogic.gdx.utils.Pool.Poolable;
 import com.ridiculousRPG.event.EventTrigger;
+import com.ridiculousRPG.movement.auto.MoveRandomAdapter;
 import com.ridiculousRPG.movement.auto.MoveSetXYAdapter;
 import com.ridiculousRPG.movement.misc.MoveFadeColorAdapter;
 
@@ -47,16 +49,29 @@ public class CombinedMovesAdapter extends MovementHandler {
 	private List<MoveSegment> resetMoves = new ArrayList<MoveSegment>(8);
 	private MoveSegment lastMove;
 	private boolean loop, resetEventPosition, initialized;
+	private boolean parallelizable = true;
 
 	public static final FinishPool MOVE_FINISH_POOL = new FinishPool();
 	public static final SecondsPool MOVE_SECONDS_POOL = new SecondsPool();
 	public static final RandomSecPool MOVE_RANDOM_POOL = new RandomSecPool();
 
+	// All pools are synchronized because parallelizable moves may be computed
+	// by worker threads
 	public static final Pool<MoveSetXYAdapter> MOVE_SET_XY = new Pool<MoveSetXYAdapter>() {
 		@Override
 		protected MoveSetXYAdapter newObject() {
 			return new MoveSetXYAdapter(0, 0);
 		}
+
+		@Override
+		public synchronized MoveSetXYAdapter obtain() {
+			return super.obtain();
+		}
+
+		@Override
+		public synchronized void free(MoveSetXYAdapter object) {
+			super.free(object);
+		}
 	};
 
 	/**
@@ -145,6 +160,7 @@ public class CombinedMovesAdapter extends MovementHandler {
 	 */
 	public synchronized void execMoveOnce(MoveSegment segmentToAdd) {
 		movementQueue.offerFirst(segmentToAdd.forceRemove().returnToPool());
+		parallelizable &= isParallelizable(segmentToAdd);
 	}
 
 	/**
@@ -157,9 +173,23 @@ public class CombinedMovesAdapter extends MovementHandler {
 	public synchronized MoveSegment addMoveSegment(MoveSegment segmentToAdd) {
 		movementQueue.offer(segmentToAdd);
 		resetMoves.add(segmentToAdd);
+		parallelizable &= isParallelizable(segmentToAdd);
 		return segmentToAdd;
 	}
 
+	private static boolean isParallelizable(MoveSegment segment) {
+		return segment.delegate != null && segment.delegate.isParallelizable();
+	}
+
+	/**
+	 * A combined move is parallelizable if all combined moves are
+	 * parallelizable.
+	 */
+	@Override
+	public boolean isParallelizable() {
+		return parallelizable;
+	}
+
 	@Override
 	public void freeze() {
 		if (lastMove != null) {
@@ -174,6 +204,18 @@ public class CombinedMovesAdapter extends MovementHandler {
 		}
 	}
 
+	@Override
+	public synchronized void detach(Movable event) {
+		for (MoveSegment ms : movementQueue)
+			if (ms.delegate != null)
+				ms.delegate.detach(event);
+		for (int i = 0, len = resetMoves.size(); i < len; i++) {
+			MoveSegment ms = resetMoves.get(i);
+			if (ms.delegate != null)
+				ms.delegate.detach(event);
+		}
+	}
+
 	@Override
 	public void tryMove(Movable event, float deltaTime,
 			EventTrigger eventTrigger) {
@@ -243,10 +285,12 @@ public class CombinedMovesAdapter extends MovementHandler {
 	public synchronized void reset() {
 		super.reset();
 		movementQueue.clear();
+		parallelizable = true;
 		for (int i = 0, len = resetMoves.size(); i < len; i++) {
 			MoveSegment ms = resetMoves.get(i);
 			ms.reset();
 			movementQueue.add(ms);
+			parallelizable &= isParallelizable(ms);
 		}
 	}
 
@@ -259,6 +303,7 @@ public class CombinedMovesAdapter extends MovementHandler {
 		}
 		resetMoves.clear();
 		movementQueue.clear();
+		parallelizable = true;
 	}
 
 	/**
@@ -402,12 +447,16 @@ public class CombinedMovesAdapter extends MovementHandler {
 		private static final long serialVersionUID = 1L;
 
 		public float minSeconds, maxSeconds;
+		// one generator per segment, the moves may be computed in parallel
+		private transient Random random;
 
 		private MoveSegmentRandomSec() {
 		}
 
 		protected void randomizeSeconds() {
-			seconds = minSeconds + (float) Math.random()
+			if (random == null)
+				random = MoveRandomAdapter.newRandom();
+			seconds = minSeconds + random.nextFloat()
 					* (maxSeconds - minSeconds);
 		}
 
@@ -424,6 +473,16 @@ public class CombinedMovesAdapter extends MovementHandler {
 			return new MoveSegmentFinished();
 		}
 
+		@Override
+		public synchronized MoveSegmentFinished obtain() {
+			return super.obtain();
+		}
+
+		@Override
+		public synchronized void free(MoveSegmentFinished object) {
+			super.free(object);
+		}
+
 		public MoveSegmentFinished obtain(MovementHandler move, int times) {
 			MoveSegmentFinished segment = MOVE_FINISH_POOL.obtain();
 			segment.delegate = move;
@@ -438,6 +497,16 @@ public class CombinedMovesAdapter extends MovementHandler {
 			return new MoveSegmentSeconds();
 		}
 
+		@Override
+		public synchronized MoveSegmentSeconds obtain() {
+			return super.obtain();
+		}
+
+		@Override
+		public synchronized void free(MoveSegmentSeconds object) {
+			super.free(object);
+		}
+
 		public MoveSegmentSeconds obtain(MovementHandler move, float seconds) {
 			MoveSegmentSeconds segment = obtain();
 			segment.delegate = move;
@@ -452,6 +521,16 @@ public class CombinedMovesAdapter extends MovementHandler {
 			return new MoveSegmentRandomSec();
 		}
 
+		@Override
+		public synchronized MoveSegmentRandomSec obtain() {
+			return super.obtain();
+		}
+
+		@Override
+		public synchronized void free(MoveSegmentRandomSec object) {
+			super.free(object);
+		}
+
 		public MoveSegmentRandomSec obtain(MovementHandler move,
 				float minSeconds, float maxSeconds) {
 			MoveSegmentRandomSec segment = obtain();
@@ -18,10 +18,9 @@ package com.ridiculousRPG.movement;
 
 import java.awt.geom.Rectangle2D;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Camera;
@@ -37,7 +36,22 @@ import com.ridiculousRPG.util.Direction;
 import com.ridiculousRPG.util.Speed;
 
 /**
- * Base class for events.
+ * Base class for events.<br>
+ * <br>
+ * Thread ownership: The moves of one frame are computed and committed within
+ * a move pass (see {@link #beginMovePass()}). The methods {@link #offerMove},
+ * {@link #offerMoveTo(float, float)} and {@link #commitMove()} are not
+ * synchronized and must only be called within the move pass (e.g. by the
+ * {@link MovementHandler}s).<br>
+ * A move pass holds one lock, which is shared by all maps.
+ * {@link #forceMoveTo(float, float)} and {@link #exec(MoveSegment)} may be
+ * called by any other thread (e.g. scripts). They take the same lock, so
+ * they wait until the running move pass has finished and are applied
+ * immediately afterwards. Therefore the caller sees the result when the
+ * method returns. Called by the move thread or a parallel move worker
+ * during a pass (see {@link #isMoveThread()}), they are applied directly
+ * without locking. The lock is only taken once per pass and by these two
+ * methods.
  * 
  * @author Alexander Baumgartner
  */
@@ -62,11 +76,14 @@ public abstract class Movable implements Serializable {
 	private SortedMap<Integer, MoveSegment> moveSequence = new TreeMap<Integer, MoveSegment>();
 	private boolean moveLoop;
 	private boolean moveResetEventPosition;
-	private List<MoveSegment> execOnce = new ArrayList<MoveSegment>();
 
-	// To avoid garbage collection - ATTENTION: Pool is NOT thread safe, but we
-	// have actually only one thread which handles all events. Therefore it
-	// should be ok this way.
+	// held by the thread which computes and commits the moves of a frame
+	private static final ReentrantLock MOVE_PASS = new ReentrantLock();
+	// set for the worker threads which compute moves in parallel
+	private static final ThreadLocal<Boolean> MOVE_WORKER = new ThreadLocal<Boolean>();
+
+	// To avoid garbage collection - the pools are synchronized because
+	// parallelizable moves may be computed (and freed) by worker threads.
 	private static final JumpPool MOVE_JUMP_POOL = new JumpPool();
 	private static final RandomPool MOVE_RANDOM_4WAY_POOL = new RandomPool();
 
@@ -88,20 +105,71 @@ public abstract class Movable implements Serializable {
 		}
 	}
 
+	/**
+	 * Starts the move pass of one frame. This is automatically done by the
+	 * {@link EventTrigger}. Every call must be followed by
+	 * {@link #endMovePass()}.
+	 */
+	public static void beginMovePass() {
+		MOVE_PASS.lock();
+	}
+
+	/**
+	 * Ends the move pass and releases the lock. Calls of
+	 * {@link #forceMoveTo(float, float)} and {@link #exec(MoveSegment)} which
+	 * wait for the lock continue now.
+	 */
+	public static void endMovePass() {
+		MOVE_PASS.unlock();
+	}
+
+	/**
+	 * Marks the current thread as parallel move worker (see
+	 * {@link #isMoveThread()}). Called once by every worker thread when it
+	 * starts.
+	 */
+	public static void registerMoveWorker() {
+		MOVE_WORKER.set(Boolean.TRUE);
+	}
+
+	/**
+	 * Returns true if the current thread computes the running move pass or
+	 * is a parallel move worker while a move pass is running.
+	 */
+	public static boolean isMoveThread() {
+		if (MOVE_PASS.isHeldByCurrentThread())
+			return true;
+		return MOVE_WORKER.get() != null && MOVE_PASS.isLocked();
+	}
+
 	/**
 	 * Offer a move to this movable. Moves may be blocked if this objects
-	 * touchBound overlaps an other touchBound.
+	 * touchBound overlaps an other touchBound.<br>
+	 * Must only be called by the move thread.
 	 */
-	public synchronized void offerMoveTo(float x, float y) {
+	public void offerMoveTo(float x, float y) {
 		offerMove(x - touchBound.x, y - touchBound.y);
 	}
 
 	/**
-	 * Moves this movable to the given x,y - position.
+	 * Moves this movable to the given x,y - position.<br>
+	 * If a move pass is running on an other thread, this method waits until
+	 * it has finished. The move thread and the parallel move workers apply
+	 * the move directly.
 	 */
-	public synchronized void forceMoveTo(float x, float y) {
-		offerMoveTo(x, y);
-		commitMove();
+	public void forceMoveTo(float x, float y) {
+		if (isMoveThread()) {
+			offerMoveTo(x, y);
+			commitMove();
+			return;
+		}
+		MOVE_PASS.lock();
+		try {
+			offerMoveTo(x, y);
+			commitMove();
+		} finally {
+			MOVE_PASS.unlock();
+		}
 	}
 
 	/**
@@ -211,11 +279,14 @@ public abstract class Movable implements Serializable {
 	 *            the new MovementAdapter
 	 */
 	public void setMoveHandler(MovementHandler moveHandler) {
+		MovementHandler old = this.moveHandler;
 		if (moveHandler == null) {
 			this.moveHandler = MoveNullAdapter.$();
 		} else {
 			this.moveHandler = moveHandler;
 		}
+		if (old != this.moveHandler)
+			old.detach(this);
 	}
 
 	/**
@@ -327,21 +398,26 @@ public abstract class Movable implements Serializable {
 	}
 
 	/**
-	 * Executes the move segment until it's finished.
+	 * Executes the move segment until it's finished.<br>
+	 * If a move pass is running on an other thread, this method waits until
+	 * it has finished. The segment is installed when this method returns and
+	 * starts with the next move pass. The move thread and the parallel move
+	 * workers install the segment directly.
 	 * 
 	 * @param moveSegment
 	 *            The {@link MoveSegment} to add
 	 */
 	public void exec(MoveSegment moveSegment) {
 		if (moveSegment != null) {
-			synchronized (execOnce) {
-				execOnce.add(moveSegment);
-				try {
-					execOnce.wait();
-				} catch (InterruptedException e) {
-					GameBase.$info("Movable.execInterrupt",
-							"Interrupt for wait on execOnce", e);
-				}
+			if (isMoveThread()) {
+				execMoveOnce(moveSegment);
+				return;
+			}
+			MOVE_PASS.lock();
+			try {
+				execMoveOnce(moveSegment);
+			} finally {
+				MOVE_PASS.unlock();
 			}
 		}
 	}
@@ -542,6 +618,16 @@ public abstract class Movable implements Serializable {
 			};
 		}
 
+		@Override
+		public synchronized MoveJumpAdapter obtain() {
+			return super.obtain();
+		}
+
+		@Override
+		public synchronized void free(MoveJumpAdapter object) {
+			super.free(object);
+		}
+
 		public MoveJumpAdapter obtain(float x, float y) {
 			MoveJumpAdapter jump = obtain();
 			jump.setPosition(x, y);
@@ -561,6 +647,16 @@ public abstract class Movable implements Serializable {
 			};
 		}
 
+		@Override
+		public synchronized MoveRandomAdapter obtain() {
+			return super.obtain();
+		}
+
+		@Override
+		public synchronized void free(MoveRandomAdapter object) {
+			super.free(object);
+		}
+
 		public MoveRandomAdapter obtain(int changeDirectionSlackness) {
 			MoveRandomAdapter mv = obtain();
 			mv.changeDirectionSlackness = changeDirectionSlackness;
@@ -568,28 +664,36 @@ public abstract class Movable implements Serializable {
 		}
 	}
 
+	/**
+	 * Computes the next move. Must only be called within a move pass or - if
+	 * {@link #isParallelizable()} - by a worker thread of the move pass.
+	 */
 	public void compute(float deltaTime, EventTrigger eventTrigger) {
 		moveHandler.tryMove(this, deltaTime, eventTrigger);
-		if (execOnce.size() > 0) {
-			synchronized (execOnce) {
-				while (execOnce.size() > 0) {
-					MoveSegment moveSegment = execOnce
-							.remove(execOnce.size() - 1);
-					if (moveHandler instanceof CombinedMovesAdapter) {
-						((CombinedMovesAdapter) moveHandler)
-								.execMoveOnce(moveSegment);
-					} else {
-						CombinedMovesAdapter combined = new CombinedMovesAdapter(
-								moveLoop, moveResetEventPosition);
-						combined.execMoveOnce(moveSegment);
-						if (moveHandler != MoveNullAdapter.$()) {
-							combined.addMoveToExecute(moveHandler);
-						}
-						moveHandler = combined;
-					}
-				}
-				execOnce.notifyAll();
+	}
+
+	/**
+	 * Indicates if the next move may be computed by a worker thread in
+	 * parallel with other moves.
+	 * 
+	 * @return true if the installed {@link MovementHandler} is parallelizable
+	 * @see MovementHandler#isParallelizable()
+	 */
+	public boolean isParallelizable() {
+		return moveHandler.isParallelizable();
+	}
+
+	private void execMoveOnce(MoveSegment moveSegment) {
+		if (moveHandler instanceof CombinedMovesAdapter) {
+			((CombinedMovesAdapter) moveHandler).execMoveOnce(moveSegment);
+		} else {
+			CombinedMovesAdapter combined = new CombinedMovesAdapter(moveLoop,
+					moveResetEventPosition);
+			combined.execMoveOnce(moveSegment);
+			if (moveHandler != MoveNullAdapter.$()) {
+				combined.addMoveToExecute(moveHandler);
 			}
+			moveHandler = combined;
 		}
 	}
 }
@@ -72,6 +72,16 @@ public abstract class MovementHandler implements Serializable {
 	public void freeze() {
 	}
 
+	/**
+	 * This method is called if this handler has been replaced by an other
+	 * handler of the event or the event has been disposed.<br>
+	 * (Empty default implementation)
+	 * 
+	 * @param event
+	 */
+	public void detach(Movable event) {
+	}
+
 	/**
 	 * This method is called if the move couldn't be performed. The move has
 	 * been canceled instead of commited.<br>
@@ -79,4 +89,20 @@ public abstract class MovementHandler implements Serializable {
 	 */
 	public void moveBlocked(Movable event) {
 	}
+
+	/**
+	 * Indicates if this {@link MovementHandler} may be computed in parallel
+	 * with the {@link MovementHandler}s of other events.<br>
+	 * Return true only if {@link #tryMove(Movable, float, EventTrigger)} just
+	 * changes the state of this handler and the moved event (e.g. offers a
+	 * move) and reads nothing else but the (committed) positions of other
+	 * events. Handlers which execute scripts, use non thread safe pools or
+	 * change shared state must return false.<br>
+	 * (The default implementation returns false)
+	 * 
+	 * @return true if it's safe to compute this handler by a worker thread
+	 */
+	public boolean isParallelizable() {
+		return false;
+	}
 }
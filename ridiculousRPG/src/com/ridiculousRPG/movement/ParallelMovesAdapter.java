@@ -93,6 +93,19 @@ public class ParallelMovesAdapter extends MovementHandler {
 		}
 	}
 
+	/**
+	 * Parallel moves are parallelizable if all moves are parallelizable.
+	 */
+	@Override
+	public boolean isParallelizable() {
+		List<MovementHandler> movements = this.movements;
+		for (int i = 0, len = movements.size(); i < len; i++) {
+			if (!movements.get(i).isParallelizable())
+				return false;
+		}
+		return true;
+	}
+
 	@Override
 	public void reset() {
 		List<MovementHandler> movements = this.movements;
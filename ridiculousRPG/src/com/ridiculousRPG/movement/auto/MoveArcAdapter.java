@@ -208,6 +208,11 @@ public class MoveArcAdapter extends MovementHandler {
 		event.stop();
 	}
 
+	@Override
+	public boolean isParallelizable() {
+		return true;
+	}
+
 	@Override
 	public void reset() {
 		super.reset();
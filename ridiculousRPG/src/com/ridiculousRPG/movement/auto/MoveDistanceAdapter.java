@@ -72,4 +72,9 @@ public class MoveDistanceAdapter extends MovementHandler {
 		distanceCount = 0f;
 		lastDistance = 0f;
 	}
+
+	@Override
+	public boolean isParallelizable() {
+		return true;
+	}
 }
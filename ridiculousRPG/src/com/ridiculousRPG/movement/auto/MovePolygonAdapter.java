@@ -16,12 +16,13 @@
 
 package com.ridiculousRPG.movement.auto;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.utils.Array;
 import com.ridiculousRPG.GameBase;
 import com.ridiculousRPG.event.EventObject;
 import com.ridiculousRPG.event.EventTrigger;
+import com.ridiculousRPG.event.EventTriggerAdapter;
 import com.ridiculousRPG.event.PolygonObject;
+import com.ridiculousRPG.event.ScriptJobQueue;
 import com.ridiculousRPG.event.handler.EventHandler;
 import com.ridiculousRPG.map.MapRenderService;
 import com.ridiculousRPG.movement.Movable;
@@ -117,8 +118,8 @@ public class MovePolygonAdapter extends MovementHandler {
 	private boolean initPolygon() {
 		if (polygonName == null)
 			return false;
-		Array<MapRenderService> maps = GameBase.$serviceProvider().getServices(
-				MapRenderService.class);
+		Array<MapRenderService> maps = GameBase.$serviceProvider()
+				.getServiceList(MapRenderService.class).snapshot();
 		for (int i = maps.size - 1; i > -1; i--) {
 			PolygonObject polygon = maps.get(i).getMap().findPolygon(
 					polygonName);
@@ -145,9 +146,8 @@ public class MovePolygonAdapter extends MovementHandler {
 		// Post script to execute (execution is performed in a separate thread)
 		if (execScript != null) {
 			if (NODE_TEMPLATE == null)
-				NODE_TEMPLATE = Gdx.files.internal(
-						GameBase.$options().eventNodeTemplate).readString(
-						GameBase.$options().encoding);
+				NODE_TEMPLATE = GameBase.$scriptFactory().readFile(
+						GameBase.$options().eventNodeTemplate);
 			String script = GameBase.$scriptFactory().prepareScriptFunction(
 					execScript, NODE_TEMPLATE);
 			ObjectState state = null;
@@ -156,7 +156,8 @@ public class MovePolygonAdapter extends MovementHandler {
 				if (h != null)
 					state = h.getActualState();
 			}
-			eventTrigger.postScriptToExec(
+			EventTriggerAdapter.postOrdered(eventTrigger, event,
+					ScriptJobQueue.PRIORITY_NORMAL, false,
 					"MovePolygonAdapter(" + polygon + ")", script, "onNode",
 					event, state, polygon, this);
 			execScript = null;
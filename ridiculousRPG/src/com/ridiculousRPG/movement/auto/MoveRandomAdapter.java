@@ -17,6 +17,7 @@
 package com.ridiculousRPG.movement.auto;
 
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.badlogic.gdx.utils.Pool.Poolable;
 import com.ridiculousRPG.event.EventTrigger;
@@ -32,12 +33,20 @@ import com.ridiculousRPG.util.Direction;
 public class MoveRandomAdapter extends MovementHandler implements Poolable {
 	private static final long serialVersionUID = 1L;
 
-	protected static final Random randomNumberGenerator = new Random();
+	// makes the seeds of generators created at the same time unique
+	private static final AtomicLong SEED_UNIQUIFIER = new AtomicLong(
+			8682522807148012L);
+
 	public int changeDirectionSlackness;
 	public Direction[] allowedDirections;
 
 	protected Direction lastDir;
 	protected float minWidth;
+	/**
+	 * One generator per adapter, the moves may be computed in parallel. It's
+	 * kept if the adapter is reset or pooled.
+	 */
+	protected Random randomNumberGenerator = newRandom();
 
 	/**
 	 * This constructor uses a default slackness-value of 128 for
@@ -75,6 +84,17 @@ public class MoveRandomAdapter extends MovementHandler implements Poolable {
 				changeDirectionSlackness);
 	}
 
+	/**
+	 * Creates a new random number generator. Every generator gets an other
+	 * seed, even if they are created by different threads at the same time.
+	 * 
+	 * @return The generator
+	 */
+	public static Random newRandom() {
+		return new Random(SEED_UNIQUIFIER.addAndGet(181783497276652981L)
+				^ System.nanoTime());
+	}
+
 	@Override
 	public void moveBlocked(Movable event) {
 		lastDir = null;
@@ -104,4 +124,9 @@ public class MoveRandomAdapter extends MovementHandler implements Poolable {
 		lastDir = null;
 		minWidth = 0;
 	}
+
+	@Override
+	public boolean isParallelizable() {
+		return true;
+	}
 }
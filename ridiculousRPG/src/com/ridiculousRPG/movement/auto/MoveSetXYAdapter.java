@@ -83,6 +83,11 @@ public class MoveSetXYAdapter extends MovementHandler {
 		checkPerformed = false;
 	}
 
+	@Override
+	public boolean isParallelizable() {
+		return true;
+	}
+
 	public void setPosition(Movable event) {
 		this.x = event.getX();
 		this.y = event.getY();
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.movement.auto;
+
+import com.ridiculousRPG.event.EventObject;
+import com.ridiculousRPG.event.EventTrigger;
+import com.ridiculousRPG.movement.Movable;
+import com.ridiculousRPG.movement.MovementHandler;
+
+/**
+ * This {@link MovementHandler} moves an event as member of a
+ * {@link SteeringGroup}. All members of the group are computed together in
+ * one batch, this adapter only offers the computed move for its event.<br>
+ * Use one adapter per event. The event joins the group with the first move and
+ * leaves the group if the adapter is reset or detached from the event. An
+ * event which isn't moved for one frame also leaves the group (and joins
+ * again with its next move).<br>
+ * This movement never finishes.
+ * 
+ * @see SteeringGroup
+ * @author Alexander Baumgartner
+ */
+public class MoveSteeringAdapter extends MovementHandler {
+	private static final long serialVersionUID = 1L;
+
+	private SteeringGroup group;
+	// index inside the group (maintained by the group)
+	int slot = -1;
+
+	/**
+	 * Creates a new adapter for the given group.
+	 * 
+	 * @param group
+	 *            The group which computes the moves
+	 * @see SteeringGroup#newAdapter()
+	 */
+	public MoveSteeringAdapter(SteeringGroup group) {
+		this.group = group;
+	}
+
+	public SteeringGroup getGroup() {
+		return group;
+	}
+
+	@Override
+	public void tryMove(Movable event, float deltaTime,
+			EventTrigger eventTrigger) {
+		if (slot == -1)
+			slot = group.add(this, event);
+		group.offerMove(this, deltaTime);
+		if (event instanceof EventObject) {
+			((EventObject) event).animate(group.getMoveX(slot), group
+					.getMoveY(slot), deltaTime);
+		}
+	}
+
+	@Override
+	public void moveBlocked(Movable event) {
+		if (slot != -1)
+			group.moveBlocked(slot);
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		if (slot != -1)
+			group.removeIndex(slot);
+	}
+
+	@Override
+	public void detach(Movable event) {
+		if (slot != -1)
+			group.removeIndex(slot);
+	}
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.movement.auto;
+
+import java.io.Serializable;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.ridiculousRPG.movement.Movable;
+
+/**
+ * A group of {@link Movable}s which share one steering simulation (bird
+ * flocks, fish schools, crowds,...).<br>
+ * All members are updated together in one tight loop. The positions and
+ * velocities are stored in flat float arrays (structure of arrays) to keep the
+ * inner loop free of virtual calls and object accesses.<br>
+ * The computed moves are written back through
+ * {@link Movable#offerMove(float, float)} by the {@link MoveSteeringAdapter}
+ * of every member. Therefore the normal collision detection still applies.<br>
+ * <br>
+ * The following behaviors are combined by their weights:
+ * <ul>
+ * <li>separation: keep distance from near members</li>
+ * <li>cohesion: move towards the center of the neighbors</li>
+ * <li>seek/flee: move towards (or away from) the target</li>
+ * <li>wander: smooth random movement</li>
+ * </ul>
+ * ATTENTION: This class is NOT thread safe. All members have to be computed by
+ * the same thread (which is the default for all events).
+ * 
+ * @see MoveSteeringAdapter
+ * @author Alexander Baumgartner
+ */
+public class SteeringGroup implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final float PI2 = MathUtils.PI * 2;
+
+	public float separationWeight = 1.5f;
+	public float cohesionWeight = .4f;
+	public float seekWeight = 1f;
+	public float wanderWeight = .5f;
+	/**
+	 * Members closer than this radius are pushed away from each other.
+	 */
+	public float separationRadius = 32f;
+	/**
+	 * Members inside this radius are considered neighbors (cohesion).
+	 */
+	public float neighborRadius = 128f;
+	/**
+	 * Maximum change of the wander angle per second (radians).
+	 */
+	public float wanderJitter = 4f;
+	/**
+	 * Limits the change of the velocity per second relative to the maximum
+	 * speed. The lower the value, the smoother the movement.
+	 */
+	public float agility = 4f;
+
+	private Movable target;
+	private boolean flee;
+	private float targetRadius;
+
+	private int size;
+	private MoveSteeringAdapter[] adapter = new MoveSteeringAdapter[INITIAL_CAPACITY];
+	private Movable[] member = new Movable[INITIAL_CAPACITY];
+	private float[] posX = new float[INITIAL_CAPACITY];
+	private float[] posY = new float[INITIAL_CAPACITY];
+	private float[] velX = new float[INITIAL_CAPACITY];
+	private float[] velY = new float[INITIAL_CAPACITY];
+	private float[] forceX = new float[INITIAL_CAPACITY];
+	private float[] forceY = new float[INITIAL_CAPACITY];
+	private float[] maxSpeed = new float[INITIAL_CAPACITY];
+	private float[] wander = new float[INITIAL_CAPACITY];
+	private float[] moveX = new float[INITIAL_CAPACITY];
+	private float[] moveY = new float[INITIAL_CAPACITY];
+	// the frame in which the member has consumed its move the last time
+	private int[] served = new int[INITIAL_CAPACITY];
+	// the current frame of this group (see offerMove)
+	private int frame;
+
+	/**
+	 * Creates a new steering group with the default weights
+	 */
+	public SteeringGroup() {
+	}
+
+	/**
+	 * Sets the target for the seek/flee behavior.
+	 * 
+	 * @param target
+	 *            The target to seek or flee from. Null disables seek/flee.
+	 * @param flee
+	 *            true if the members should flee from the target
+	 * @param radius
+	 *            The target only affects members inside this radius. 0
+	 *            means unlimited radius.
+	 */
+	public void setTarget(Movable target, boolean flee, float radius) {
+		this.target = target;
+		this.flee = flee;
+		this.targetRadius = radius;
+	}
+
+	public Movable getTarget() {
+		return target;
+	}
+
+	public boolean isFlee() {
+		return flee;
+	}
+
+	/**
+	 * Creates a new {@link MoveSteeringAdapter} for this group. The event
+	 * joins the group with the first move.
+	 * 
+	 * @return A new adapter bound to this group
+	 */
+	public MoveSteeringAdapter newAdapter() {
+		return new MoveSteeringAdapter(this);
+	}
+
+	/**
+	 * The amount of members in this group
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes the given event from the group.
+	 * 
+	 * @return true if the event was a member of this group
+	 */
+	public boolean remove(Movable event) {
+		for (int i = 0; i < size; i++) {
+			if (member[i] == event) {
+				removeIndex(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	int add(MoveSteeringAdapter a, Movable event) {
+		if (size == member.length)
+			grow(size << 1);
+		int i = size++;
+		adapter[i] = a;
+		member[i] = event;
+		posX[i] = event.getCenterX();
+		posY[i] = event.getCenterY();
+		velX[i] = 0f;
+		velY[i] = 0f;
+		wander[i] = MathUtils.random() * PI2;
+		moveX[i] = 0f;
+		moveY[i] = 0f;
+		// the new member doesn't move until the next frame
+		served[i] = frame;
+		return i;
+	}
+
+	void removeIndex(int i) {
+		int last = --size;
+		adapter[i].slot = -1;
+		if (i != last) {
+			adapter[i] = adapter[last];
+			adapter[i].slot = i;
+			member[i] = member[last];
+			posX[i] = posX[last];
+			posY[i] = posY[last];
+			velX[i] = velX[last];
+			velY[i] = velY[last];
+			wander[i] = wander[last];
+			moveX[i] = moveX[last];
+			moveY[i] = moveY[last];
+			served[i] = served[last];
+		}
+		adapter[last] = null;
+		member[last] = null;
+	}
+
+	/**
+	 * Offers the computed move for the member of the given adapter. A new
+	 * frame starts if a member asks again after it has already consumed its
+	 * move of the current frame. Then the whole group is recomputed once,
+	 * therefore nobody steps twice.
+	 */
+	void offerMove(MoveSteeringAdapter a, float deltaTime) {
+		if (served[a.slot] == frame)
+			update(deltaTime);
+		int i = a.slot;
+		served[i] = frame;
+		float x = moveX[i];
+		float y = moveY[i];
+		if (x != 0f || y != 0f)
+			member[i].offerMove(x, y);
+	}
+
+	void moveBlocked(int i) {
+		velX[i] = -velX[i] * .5f;
+		velY[i] = -velY[i] * .5f;
+		wander[i] += MathUtils.PI;
+	}
+
+	float getMoveX(int i) {
+		return moveX[i];
+	}
+
+	float getMoveY(int i) {
+		return moveY[i];
+	}
+
+	/**
+	 * Starts a new frame and computes the steering for all members of this
+	 * group. Members which haven't asked for their move within the last
+	 * frame are removed (e.g. their event has left the map or got an other
+	 * move handler).
+	 */
+	protected void update(float deltaTime) {
+		final int[] served = this.served;
+		for (int i = size - 1; i > -1; i--)
+			if (served[i] != frame)
+				removeIndex(i);
+		frame++;
+		final int n = size;
+		if (n == 0)
+			return;
+		if (deltaTime <= 0f) {
+			// nothing to move, don't hand out the moves of the last frame
+			for (int i = 0; i < n; i++) {
+				moveX[i] = 0f;
+				moveY[i] = 0f;
+			}
+			return;
+		}
+		final float[] posX = this.posX, posY = this.posY;
+		final float[] forceX = this.forceX, forceY = this.forceY;
+		final float[] maxSpeed = this.maxSpeed;
+
+		gather(n);
+
+		// separation (symmetric, every pair is visited once)
+		final float sepR = separationRadius;
+		final float sepR2 = sepR * sepR;
+		final float sepW = separationWeight;
+		if (sepW != 0f && sepR > 0f) {
+			for (int i = 0; i < n; i++) {
+				float pX = posX[i], pY = posY[i];
+				float fX = 0f, fY = 0f;
+				for (int j = i + 1; j < n; j++) {
+					float dX = pX - posX[j];
+					float dY = pY - posY[j];
+					float d2 = dX * dX + dY * dY;
+					if (d2 < sepR2) {
+						if (d2 < .0001f) {
+							// same position: push apart in any direction
+							dX = .01f;
+							d2 = .0001f;
+						}
+						// the closer the stronger (1/d)
+						float s = (sepR2 - d2) / (sepR2 * d2);
+						dX *= s;
+						dY *= s;
+						fX += dX;
+						fY += dY;
+						forceX[j] -= dX;
+						forceY[j] -= dY;
+					}
+				}
+				forceX[i] += fX;
+				forceY[i] += fY;
+			}
+			for (int i = 0; i < n; i++) {
+				float s = sepW * sepR * maxSpeed[i];
+				forceX[i] *= s;
+				forceY[i] *= s;
+			}
+		}
+
+		for (int i = 0; i < n; i++)
+			steer(i, n, deltaTime);
+	}
+
+	private void gather(int n) {
+		final Movable[] member = this.member;
+		for (int i = 0; i < n; i++) {
+			Movable m = member[i];
+			posX[i] = m.getCenterX();
+			posY[i] = m.getCenterY();
+			maxSpeed[i] = m.getMoveSpeed().getPixelPerSecond();
+			forceX[i] = 0f;
+			forceY[i] = 0f;
+		}
+	}
+
+	// adds cohesion, seek/flee and wander to the separation force of the
+	// member at index i and integrates its velocity
+	private void steer(int i, int n, float deltaTime) {
+		final float[] posX = this.posX, posY = this.posY;
+		final float pX = posX[i], pY = posY[i];
+		final float max = maxSpeed[i];
+		float fX = forceX[i], fY = forceY[i];
+
+		// cohesion
+		final float cohR = neighborRadius;
+		final float cohW = cohesionWeight;
+		if (cohW != 0f && cohR > 0f && n > 1) {
+			final float cohR2 = cohR * cohR;
+			float sumX = 0f, sumY = 0f;
+			int count = 0;
+			for (int j = 0; j < n; j++) {
+				float dX = posX[j] - pX;
+				float dY = posY[j] - pY;
+				if (j != i && dX * dX + dY * dY < cohR2) {
+					sumX += dX;
+					sumY += dY;
+					count++;
+				}
+			}
+			if (count > 0) {
+				float len = (float) Math.sqrt(sumX * sumX + sumY * sumY);
+				if (len > .0001f) {
+					float s = cohW * max / len;
+					fX += sumX * s;
+					fY += sumY * s;
+				}
+			}
+		}
+
+		// seek / flee
+		final Movable target = this.target;
+		final float seekW = flee ? -seekWeight : seekWeight;
+		if (target != null && seekW != 0f) {
+			float dX = target.getCenterX() - pX;
+			float dY = target.getCenterY() - pY;
+			float d2 = dX * dX + dY * dY;
+			float tR2 = targetRadius * targetRadius;
+			if (d2 > .0001f && (tR2 == 0f || d2 < tR2)) {
+				float s = seekW * max / (float) Math.sqrt(d2);
+				fX += dX * s;
+				fY += dY * s;
+			}
+		}
+
+		// wander
+		final float wanW = wanderWeight;
+		if (wanW != 0f) {
+			float a = wander[i] + (MathUtils.random() - .5f) * wanderJitter
+					* deltaTime;
+			wander[i] = a;
+			float s = wanW * max;
+			fX += MathUtils.cos(a) * s;
+			fY += MathUtils.sin(a) * s;
+		}
+
+		// integrate
+		float maxDelta = max * agility * deltaTime;
+		fX -= velX[i];
+		fY -= velY[i];
+		float f2 = fX * fX + fY * fY;
+		if (f2 > maxDelta * maxDelta) {
+			float s = maxDelta / (float) Math.sqrt(f2);
+			fX *= s;
+			fY *= s;
+		}
+		float vX = velX[i] + fX;
+		float vY = velY[i] + fY;
+		float v2 = vX * vX + vY * vY;
+		if (v2 > max * max) {
+			float s = max / (float) Math.sqrt(v2);
+			vX *= s;
+			vY *= s;
+		}
+		velX[i] = vX;
+		velY[i] = vY;
+		moveX[i] = vX * deltaTime;
+		moveY[i] = vY * deltaTime;
+	}
+
+	private void grow(int capacity) {
+		MoveSteeringAdapter[] a = new MoveSteeringAdapter[capacity];
+		System.arraycopy(adapter, 0, a, 0, size);
+		adapter = a;
+		Movable[] m = new Movable[capacity];
+		System.arraycopy(member, 0, m, 0, size);
+		member = m;
+		posX = grow(posX, capacity);
+		posY = grow(posY, capacity);
+		velX = grow(velX, capacity);
+		velY = grow(velY, capacity);
+		forceX = grow(forceX, capacity);
+		forceY = grow(forceY, capacity);
+		maxSpeed = grow(maxSpeed, capacity);
+		wander = grow(wander, capacity);
+		moveX = grow(moveX, capacity);
+		moveY = grow(moveY, capacity);
+		int[] s = new int[capacity];
+		System.arraycopy(served, 0, s, 0, size);
+		served = s;
+	}
+
+	private float[] grow(float[] src, int capacity) {
+		float[] dst = new float[capacity];
+		System.arraycopy(src, 0, dst, 0, size);
+		return dst;
+	}
+}
@@ -74,7 +74,7 @@ public class MoveAnimateEventAdapter extends MovementHandler {
 	 */
 	public MoveAnimateEventAdapter(String animation, int animationTextureRow) {
 		Array<MapRenderService> services = GameBase.$serviceProvider()
-				.getServices(MapRenderService.class);
+				.getServiceList(MapRenderService.class).snapshot();
 		for (int i = services.size - 1; i >= 0; i--) {
 			Object ev = services.get(i).getMap().get(animation);
 			if (ev instanceof EventObject) {
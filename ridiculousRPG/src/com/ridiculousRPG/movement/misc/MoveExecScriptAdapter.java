@@ -17,6 +17,8 @@
 package com.ridiculousRPG.movement.misc;
 
 import com.ridiculousRPG.event.EventTrigger;
+import com.ridiculousRPG.event.EventTriggerAdapter;
+import com.ridiculousRPG.event.ScriptJobQueue;
 import com.ridiculousRPG.movement.Movable;
 import com.ridiculousRPG.movement.MovementHandler;
 
@@ -70,7 +72,9 @@ public class MoveExecScriptAdapter extends MovementHandler {
 			return;
 
 		if (!scriptApplied) {
-			eventTrigger.postScriptToExec("MoveExecScriptAdapter", script, null);
+			EventTriggerAdapter.postOrdered(eventTrigger, movable,
+					ScriptJobQueue.PRIORITY_NORMAL, false,
+					"MoveExecScriptAdapter", script, null);
 			scriptApplied = true;
 		}
 		if (!waitExec || eventTrigger.isScriptQueueEmpty()) {
@@ -52,4 +52,9 @@ public class MoveNullAdapter extends MovementHandler {
 		if (event != null)
 			event.stop();
 	}
+
+	@Override
+	public boolean isParallelizable() {
+		return true;
+	}
 }
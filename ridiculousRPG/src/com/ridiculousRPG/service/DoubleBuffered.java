@@ -0,0 +1,43 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.service;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.ridiculousRPG.GameOptions;
+import com.ridiculousRPG.GameServiceProvider;
+
+/**
+ * A {@link Computable} {@link GameService} which can be simulated by the
+ * simulation thread while the main thread is drawing.<br>
+ * If {@link GameOptions#pipelinedSimulation} is enabled, the
+ * {@link Computable#compute} method is called by the simulation thread and
+ * the {@link Drawable#draw} method must only use the state copied by the
+ * last {@link #snapshot} call. All other services are computed by the main
+ * thread.
+ * 
+ * @see GameServiceProvider#isPipelined()
+ * @author Alexander Baumgartner
+ */
+public interface DoubleBuffered extends Computable {
+	/**
+	 * Copies the state which is needed for drawing. Called by the main thread
+	 * between two simulated frames (the simulation thread is idle).
+	 * 
+	 * @param camera
+	 */
+	public void snapshot(Camera camera);
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.service;
+
+import com.ridiculousRPG.GameServiceProvider;
+
+/**
+ * A {@link Computable} {@link GameService} which doesn't need to be computed
+ * every frame.<br>
+ * A service which is computed every N frames receives the time elapsed since
+ * its last computation. An on demand service is only computed in the frame
+ * after {@link GameServiceProvider#requestCompute(Computable)} has been
+ * called, otherwise it costs nothing.<br>
+ * The tick interval is read when the service is added. Call
+ * {@link GameServiceProvider#reschedule()} after changing it.
+ * 
+ * @author Alexander Baumgartner
+ */
+public interface Scheduled extends Computable {
+	/**
+	 * The service is only computed on request
+	 */
+	public static final int ON_DEMAND = 0;
+	/**
+	 * The service is computed every frame (like every other service)
+	 */
+	public static final int EVERY_FRAME = 1;
+
+	/**
+	 * @return {@link #EVERY_FRAME}, {@link #ON_DEMAND} or the number of frames
+	 *         between two computations
+	 */
+	public int tickInterval();
+}
@@ -34,6 +34,7 @@ public class DisplayFPSService extends DisplayPlainTextService implements
 	private Alignment horiAlign, vertAlign;
 	private int oldFPS;
 	private BitmapFontCache fontCache;
+	private final StringBuilder text = new StringBuilder("FPS: ");
 
 	/**
 	 * Displays the rendering speed in frames per second.
@@ -64,10 +65,14 @@ public class DisplayFPSService extends DisplayPlainTextService implements
 	public void compute(float deltaTime, boolean actionKeyDown) {
 		if (oldFPS != Gdx.graphics.getFramesPerSecond()) {
 			oldFPS = Gdx.graphics.getFramesPerSecond();
-			if (fontCache != null)
-				removeMessage(fontCache);
-			fontCache = addMessage("FPS: " + oldFPS, colorBits, horiAlign,
-					vertAlign, 5f);
+			text.setLength(5);
+			text.append(oldFPS);
+			// the message is changed in place (no remove and add)
+			if (fontCache == null)
+				fontCache = addMessage(text, colorBits, horiAlign, vertAlign,
+						5f);
+			else
+				setMessageText(fontCache, text, horiAlign, vertAlign, 5f, 0f);
 		}
 	}
 
@@ -30,7 +30,9 @@ import com.ridiculousRPG.service.Drawable;
 import com.ridiculousRPG.service.GameService;
 import com.ridiculousRPG.service.GameServiceDefaultImpl;
 import com.ridiculousRPG.util.BitmapFontCachePool;
+import com.ridiculousRPG.util.DistanceFieldFont;
 import com.ridiculousRPG.util.ExecWithGlContext;
+import com.ridiculousRPG.util.TextLayoutCache;
 
 /**
  * Draws multilined text onto the screen. This class is optimized for
@@ -46,14 +48,24 @@ public abstract class DisplayPlainTextService extends GameServiceDefaultImpl
 	}
 
 	private BitmapFont font;
+	private final DistanceFieldFont distanceField;
 	private final Array<BitmapFontCache> msgDisplay = new Array<BitmapFontCache>(
 			false, 32);
 	private final Array<BitmapFontCache> msgDisplayOnce = new Array<BitmapFontCache>(
 			false, 64);
 	private final BitmapFontCachePool fontCachePool = new BitmapFontCachePool();
+	// layouts of the messages which are displayed for only one frame
+	private final TextLayoutCache layoutCache = new TextLayoutCache(
+			fontCachePool);
 	private float defaultColor = Color.WHITE.toFloatBits();
 
 	protected DisplayPlainTextService() {
+		// all text services share the distance field font (if configured)
+		distanceField = DistanceFieldFont.getShared();
+		if (distanceField != null) {
+			font = distanceField.getFont();
+			return;
+		}
 		new ExecWithGlContext() {
 			@Override
 			public void exec() {
@@ -132,19 +144,51 @@ public abstract class DisplayPlainTextService extends GameServiceDefaultImpl
 	 *            specified bound.
 	 * @param forceRemove
 	 *            to remove the message immediately after displaying it
-	 *            (displays it for only one frame).
+	 *            (displays it for only one frame). The layout of the text is
+	 *            cached, therefore adding the same text every frame is cheap.
 	 * @see {@link Color#toFloatBits()}
 	 */
 	public BitmapFontCache addMessage(CharSequence text, float color,
 			Alignment horizontalAlign, Alignment verticalAlign, float padding,
 			float wrapWidth, boolean forceRemove) {
+		BitmapFontCache bfc = createMsg(text, color, wrapWidth, forceRemove);
+		align(bfc, horizontalAlign, verticalAlign, padding);
+		if (forceRemove)
+			msgDisplayOnce.add(bfc);
+		else
+			msgDisplay.add(bfc);
+		return bfc;
+	}
+
+	/**
+	 * Changes the text of a message which has been added without forceRemove
+	 * and aligns it again. The message keeps its position in the drawing
+	 * order.
+	 * 
+	 * @param msg
+	 * @param text
+	 * @param wrapWidth
+	 *            If wrapWidth > 0 then the text will be wrapped at the
+	 *            specified bound.
+	 */
+	public void setMessageText(BitmapFontCache msg, CharSequence text,
+			Alignment horizontalAlign, Alignment verticalAlign, float padding,
+			float wrapWidth) {
+		if (wrapWidth > 0f)
+			msg.setWrappedText(text, 0f, 0f, wrapWidth);
+		else
+			msg.setMultiLineText(text, 0f, 0f);
+		align(msg, horizontalAlign, verticalAlign, padding);
+	}
+
+	private void align(BitmapFontCache bfc, Alignment horizontalAlign,
+			Alignment verticalAlign, float padding) {
 		Rectangle bounds = GameBase.$().getScreen();
 		Camera cam = GameBase.$().getCamera();
 		if (projectionMatrix(cam) == cam.projection) {
 			bounds = GameBase.$().getPlane();
 		}
 		float x = padding, y = bounds.height - padding;
-		BitmapFontCache bfc = createMsg(text, color, 0f, 0f, wrapWidth);
 		TextBounds b = bfc.getBounds();
 
 		if (horizontalAlign == Alignment.CENTER)
@@ -167,11 +211,6 @@ public abstract class DisplayPlainTextService extends GameServiceDefaultImpl
 		int ix = (int) (x + .5f);
 		int iy = (int) (y + .5f);
 		bfc.setPosition(ix, iy);
-		if (forceRemove)
-			msgDisplayOnce.add(bfc);
-		else
-			msgDisplay.add(bfc);
-		return bfc;
 	}
 
 	/**
@@ -184,12 +223,14 @@ public abstract class DisplayPlainTextService extends GameServiceDefaultImpl
 	 *            specified bound.
 	 * @param forceRemove
 	 *            to remove the message immediately after displaying it
-	 *            (displays it for only one frame).
+	 *            (displays it for only one frame). The layout of the text is
+	 *            cached, therefore adding the same text every frame is cheap.
 	 * @see {@link Color#toFloatBits()}
 	 */
 	public BitmapFontCache addMessage(CharSequence text, float color, float x,
 			float y, float wrapWidth, boolean forceRemove) {
-		BitmapFontCache bfc = createMsg(text, color, x, y, wrapWidth);
+		BitmapFontCache bfc = createMsg(text, color, wrapWidth, forceRemove);
+		bfc.setPosition(x, y);
 		if (forceRemove)
 			msgDisplayOnce.add(bfc);
 		else
@@ -202,14 +243,16 @@ public abstract class DisplayPlainTextService extends GameServiceDefaultImpl
 		msgDisplay.removeValue(msg, true);
 	}
 
-	private BitmapFontCache createMsg(CharSequence text, float color, float x,
-			float y, float wrapWidth) {
+	private BitmapFontCache createMsg(CharSequence text, float color,
+			float wrapWidth, boolean forceRemove) {
+		if (forceRemove)
+			return layoutCache.obtain(font, text, color, wrapWidth);
 		BitmapFontCache bfc = fontCachePool.obtain(font);
 		bfc.setColor(color);
 		if (wrapWidth > 0f)
-			bfc.setWrappedText(text, x, y, wrapWidth);
+			bfc.setWrappedText(text, 0f, 0f, wrapWidth);
 		else
-			bfc.setMultiLineText(text, x, y);
+			bfc.setMultiLineText(text, 0f, 0f);
 		return bfc;
 	}
 
@@ -218,11 +261,18 @@ public abstract class DisplayPlainTextService extends GameServiceDefaultImpl
 	 * {@link GameServiceProvider}.
 	 */
 	public void draw(SpriteBatch spriteBatch, Camera camera, boolean debug) {
+		boolean sdf = distanceField != null && font == distanceField.getFont()
+				&& (msgDisplay.size > 0 || msgDisplayOnce.size > 0);
+		if (sdf)
+			distanceField.begin(spriteBatch);
 		for (int i = msgDisplay.size - 1; i > -1; i--)
 			msgDisplay.get(i).draw(spriteBatch);
 		for (int i = msgDisplayOnce.size - 1; i > -1; i--)
 			msgDisplayOnce.get(i).draw(spriteBatch);
+		if (sdf)
+			distanceField.end(spriteBatch);
 		msgDisplayOnce.clear();
+		layoutCache.endFrame();
 	}
 
 	/**
@@ -256,6 +306,7 @@ public abstract class DisplayPlainTextService extends GameServiceDefaultImpl
 	public void dispose() {
 		msgDisplay.clear();
 		msgDisplayOnce.clear();
+		layoutCache.clear();
 		fontCachePool.clear();
 	}
 }
@@ -42,6 +42,7 @@ import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.IntMap;
 import com.ridiculousRPG.GameBase;
 import com.ridiculousRPG.util.ExecInMainThread;
+import com.ridiculousRPG.util.ScriptScheduler.Condition;
 import com.ridiculousRPG.util.TextureRegionLoader;
 import com.ridiculousRPG.util.TextureRegionLoader.TextureRegionRef;
 
@@ -68,7 +69,8 @@ public class MessagingService extends ActorsOnStageService implements
 	private transient Array<Actor> ownActors;
 	private transient ExecInMainThread determineForaignActors;
 	private transient ExecInMainThread determineOwnActors;
-	private transient ExecInMainThread checkOwnActors;
+	private transient Condition resultOrClosed;
+	private transient Condition ownActorsClosed;
 
 	public static final int MARGIN = 5;
 
@@ -107,12 +109,17 @@ public class MessagingService extends ActorsOnStageService implements
 				}
 			}
 		};
-		checkOwnActors = new ExecInMainThread() {
+		// conditions are stepped by the main thread
+		resultOrClosed = new Condition() {
 			@Override
-			public void exec() throws Exception {
-				for (int i = ownActors.size - 1; i >= 0; i--)
-					if (!getActors().contains(ownActors.get(i), true))
-						ownActors.removeIndex(i);
+			public boolean step(float deltaTime) {
+				return resultPointer[0] != null || dispose || !ownActorsOpen();
+			}
+		};
+		ownActorsClosed = new Condition() {
+			@Override
+			public boolean step(float deltaTime) {
+				return dispose || !ownActorsOpen();
 			}
 		};
 		try {
@@ -265,16 +272,16 @@ public class MessagingService extends ActorsOnStageService implements
 
 				data.lines.clear();
 
-				while (resultPointer[0] == null && !dispose && ownActorsOpen())
-					;
+				GameBase.$serviceProvider().getScriptScheduler().await(
+						resultOrClosed);
 				if (dirty)
 					setViewport(Gdx.graphics.getWidth(), Gdx.graphics
 							.getHeight(), false);
 
 				setAllowNull(true);
 				fadeOutOwnActors();
-				while (!dispose && ownActorsOpen())
-					;
+				GameBase.$serviceProvider().getScriptScheduler().await(
+						ownActorsClosed);
 
 				if (!GameBase.$serviceProvider().releaseAttention(this)) {
 					GameBase.$error("MessagingService.commit",
@@ -294,9 +301,9 @@ public class MessagingService extends ActorsOnStageService implements
 	}
 
 	private boolean ownActorsOpen() {
-		if (ownActors.size > 0) {
-			checkOwnActors.runWait();
-		}
+		for (int i = ownActors.size - 1; i >= 0; i--)
+			if (!getActors().contains(ownActors.get(i), true))
+				ownActors.removeIndex(i);
 		return ownActors.size > 0;
 	}
 
@@ -508,6 +515,5 @@ public class MessagingService extends ActorsOnStageService implements
 		ownActors.clear();
 		determineForaignActors.dispose();
 		determineOwnActors.dispose();
-		checkOwnActors.dispose();
 	}
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.GL10;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Disposable;
+import com.ridiculousRPG.GameBase;
+import com.ridiculousRPG.GameOptions;
+
+/**
+ * A font with a signed distance field atlas. The alpha channel of the atlas
+ * stores the distance to the glyph outline (0.5 = outline), therefore the
+ * glyphs stay sharp at any scale.<br>
+ * With OpenGL 2.0 the outline is computed by a shader with anti-aliasing.
+ * Otherwise the glyphs are rendered with alpha testing (without
+ * anti-aliasing).<br>
+ * The shared font (see {@link #getShared()}) is used by all text services,
+ * therefore all texts share one texture page.<br>
+ * Use {@link DistanceFieldFontGenerator} to generate the font from a TTF file.
+ * 
+ * @see GameOptions#distanceFieldFont
+ * @author Alexander Baumgartner
+ */
+public class DistanceFieldFont implements Disposable {
+	private static final Pattern SPREAD = Pattern.compile("spread=(\\d+)");
+	private static final Pattern SIZE = Pattern.compile("size=(\\d+)");
+	private static final String VERTEX_SHADER = "attribute vec4 "
+			+ ShaderProgram.POSITION_ATTRIBUTE + ";\n" //
+			+ "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n" //
+			+ "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n" //
+			+ "uniform mat4 u_projTrans;\n" //
+			+ "varying vec4 v_color;\n" //
+			+ "varying vec2 v_texCoord;\n" //
+			+ "void main() {\n" //
+			+ "  v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n" //
+			+ "  v_texCoord = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n" //
+			+ "  gl_Position = u_projTrans * "
+			+ ShaderProgram.POSITION_ATTRIBUTE + ";\n" //
+			+ "}\n";
+	private static final String FRAGMENT_SHADER = "#ifdef GL_ES\n" //
+			+ "precision mediump float;\n" //
+			+ "#endif\n" //
+			+ "uniform sampler2D u_texture;\n" //
+			+ "uniform float u_smoothing;\n" //
+			+ "varying vec4 v_color;\n" //
+			+ "varying vec2 v_texCoord;\n" //
+			+ "void main() {\n" //
+			+ "  float distance = texture2D(u_texture, v_texCoord).a;\n" //
+			+ "  float alpha = smoothstep(0.5 - u_smoothing, "
+			+ "0.5 + u_smoothing, distance);\n" //
+			+ "  gl_FragColor = vec4(v_color.rgb, v_color.a * alpha);\n" //
+			+ "}\n";
+
+	private static volatile DistanceFieldFont shared;
+
+	private final BitmapFont font;
+	private final int spread;
+	private final int size;
+	private ShaderProgram shader;
+
+	/**
+	 * Loads the font and creates the shader. Must be called by a thread with
+	 * gl context.
+	 * 
+	 * @param fontFile
+	 *            The .fnt file written by {@link DistanceFieldFontGenerator}
+	 */
+	public DistanceFieldFont(FileHandle fontFile) {
+		font = new BitmapFont(fontFile, false);
+		font.getRegion().getTexture().setFilter(TextureFilter.Linear,
+				TextureFilter.Linear);
+		int[] info = readInfo(fontFile);
+		size = info[0];
+		spread = info[1];
+		if (Gdx.graphics.isGL20Available()) {
+			shader = new ShaderProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+			if (!shader.isCompiled()) {
+				GameBase.$error("DistanceFieldFont.shader",
+						"Could not compile the distance field shader - "
+								+ "using alpha testing\n" + shader.getLog(),
+						null);
+				shader.dispose();
+				shader = null;
+			}
+		}
+	}
+
+	// reads the size and the spread from the info line
+	private static int[] readInfo(FileHandle fontFile) {
+		int[] info = { 32, 4 };
+		try {
+			BufferedReader r = new BufferedReader(fontFile.reader("UTF-8"));
+			try {
+				String line = r.readLine();
+				if (line != null) {
+					Matcher m = SIZE.matcher(line);
+					if (m.find())
+						info[0] = Integer.parseInt(m.group(1));
+					m = SPREAD.matcher(line);
+					if (m.find())
+						info[1] = Integer.parseInt(m.group(1));
+				}
+			} finally {
+				r.close();
+			}
+		} catch (IOException e) {
+			GameBase.$info("DistanceFieldFont.info",
+					"Could not read the font info of " + fontFile, e);
+		}
+		return info;
+	}
+
+	/**
+	 * Returns the font which is shared by all text services. The font is
+	 * loaded by the first call.
+	 * 
+	 * @return the shared font or null if no distance field font is configured
+	 * @see GameOptions#distanceFieldFont
+	 */
+	public static DistanceFieldFont getShared() {
+		DistanceFieldFont font = shared;
+		if (font != null || GameBase.$options().distanceFieldFont == null)
+			return font;
+		// The font is loaded without holding the lock. The gl thread may wait
+		// for the lock while this thread waits for the gl thread.
+		final DistanceFieldFont[] loaded = new DistanceFieldFont[1];
+		new ExecWithGlContext() {
+			@Override
+			public void exec() {
+				GameOptions o = GameBase.$options();
+				loaded[0] = new DistanceFieldFont(Gdx.files
+						.internal(o.distanceFieldFont));
+				loaded[0].setSize(o.distanceFieldFontSize
+						* Gdx.graphics.getDensity());
+			}
+		}.runWait();
+		synchronized (DistanceFieldFont.class) {
+			if (shared == null) {
+				shared = loaded[0];
+				return loaded[0];
+			}
+			font = shared;
+		}
+		// an other thread has loaded the font concurrently
+		new ExecWithGlContext() {
+			@Override
+			public void exec() {
+				loaded[0].dispose();
+			}
+		}.runWait();
+		return font;
+	}
+
+	/**
+	 * Disposes the shared font
+	 */
+	public static synchronized void disposeShared() {
+		if (shared != null) {
+			shared.dispose();
+			shared = null;
+		}
+	}
+
+	public BitmapFont getFont() {
+		return font;
+	}
+
+	/**
+	 * Scales the font to the given text size
+	 * 
+	 * @param pixel
+	 */
+	public void setSize(float pixel) {
+		font.setScale(pixel / size);
+	}
+
+	/**
+	 * Switches the batch to distance field rendering. The batch must be
+	 * drawing. Call {@link #end(SpriteBatch)} after drawing the texts.
+	 * 
+	 * @param spriteBatch
+	 */
+	public void begin(SpriteBatch spriteBatch) {
+		if (shader != null) {
+			spriteBatch.setShader(shader);
+			// the width of the anti-aliased outline (in distance units)
+			shader.setUniformf("u_smoothing", .25f / (spread * font
+					.getScaleX()));
+		} else if (Gdx.gl10 != null) {
+			// the alpha test only applies to the sprites drawn from now on
+			spriteBatch.flush();
+			Gdx.gl10.glEnable(GL10.GL_ALPHA_TEST);
+			Gdx.gl10.glAlphaFunc(GL10.GL_GREATER, .5f);
+		}
+	}
+
+	/**
+	 * Switches the batch back to normal rendering
+	 * 
+	 * @param spriteBatch
+	 */
+	public void end(SpriteBatch spriteBatch) {
+		if (shader != null) {
+			spriteBatch.setShader(null);
+		} else if (Gdx.gl10 != null) {
+			spriteBatch.flush();
+			Gdx.gl10.glDisable(GL10.GL_ALPHA_TEST);
+		}
+	}
+
+	public void dispose() {
+		font.dispose();
+		if (shader != null)
+			shader.dispose();
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Generates a {@link DistanceFieldFont} from a TTF file. This is a build step
+ * which uses AWT, it's not used by the game at runtime.<br>
+ * The glyphs are rendered with a higher resolution and the signed distance to
+ * the outline is computed for every pixel of the atlas. The result is a
+ * BMFont text file (.fnt) and one atlas page (.png) with white color and the
+ * distance in the alpha channel.<br>
+ * Usage:
+ * <code>DistanceFieldFontGenerator ttfFile fntFile [size] [spread] [chars]</code>
+ * <br>
+ * The defaults are size 32, spread 4 and all printable Latin-1 characters.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class DistanceFieldFontGenerator {
+	// resolution of the rendered glyphs relative to the atlas
+	private static final int UPSCALE = 8;
+	private static final int ATLAS_WIDTH = 512;
+
+	private final Font font;
+	private final int size;
+	private final int spread;
+
+	/**
+	 * @param ttfFile
+	 * @param size
+	 *            The font size in the atlas (pixels)
+	 * @param spread
+	 *            The maximum distance to the outline (pixels in the atlas)
+	 * @throws IOException
+	 */
+	public DistanceFieldFontGenerator(File ttfFile, int size, int spread)
+			throws IOException {
+		try {
+			this.font = Font.createFont(Font.TRUETYPE_FONT, ttfFile)
+					.deriveFont((float) size * UPSCALE);
+		} catch (java.awt.FontFormatException e) {
+			throw new IOException("Not a TrueType font: " + ttfFile, e);
+		}
+		this.size = size;
+		this.spread = spread;
+	}
+
+	/**
+	 * Generates the .fnt file and the atlas page next to it (same name with
+	 * the suffix .png).
+	 * 
+	 * @param fntFile
+	 * @param chars
+	 * @return the number of generated glyphs
+	 * @throws IOException
+	 */
+	public int generate(File fntFile, String chars) throws IOException {
+		FontRenderContext frc = new FontRenderContext(null, true, true);
+		List<Glyph> glyphs = new ArrayList<Glyph>();
+		for (int i = 0; i < chars.length(); i++) {
+			char c = chars.charAt(i);
+			if (font.canDisplay(c))
+				glyphs.add(renderGlyph(c, frc));
+		}
+		// pack the glyphs row by row
+		int x = 0, y = 0, rowHeight = 0;
+		for (Glyph g : glyphs) {
+			if (x + g.width > ATLAS_WIDTH) {
+				x = 0;
+				y += rowHeight;
+				rowHeight = 0;
+			}
+			g.x = x;
+			g.y = y;
+			x += g.width;
+			rowHeight = Math.max(rowHeight, g.height);
+		}
+		int atlasHeight = 1;
+		while (atlasHeight < y + rowHeight)
+			atlasHeight <<= 1;
+		BufferedImage atlas = new BufferedImage(ATLAS_WIDTH, atlasHeight,
+				BufferedImage.TYPE_INT_ARGB);
+		for (Glyph g : glyphs)
+			atlas.setRGB(g.x, g.y, g.width, g.height, g.pixels, 0, g.width);
+
+		String name = fntFile.getName();
+		int dot = name.lastIndexOf('.');
+		String pngName = (dot > 0 ? name.substring(0, dot) : name) + ".png";
+		ImageIO.write(atlas, "png", new File(fntFile.getParentFile(),
+				pngName));
+		writeFnt(fntFile, pngName, glyphs, atlasHeight, frc);
+		return glyphs.size();
+	}
+
+	private Glyph renderGlyph(char c, FontRenderContext frc) {
+		GlyphVector gv = font.createGlyphVector(frc, String.valueOf(c));
+		Rectangle2D bounds = gv.getVisualBounds();
+		Glyph g = new Glyph(c);
+		g.xadvance = Math.round((float) gv.getGlyphMetrics(0).getAdvanceX()
+				/ UPSCALE);
+		if (bounds.isEmpty())
+			return g;
+		int pad = spread * UPSCALE;
+		// align the high resolution image to whole atlas pixels
+		int hiX = (int) Math.floor((bounds.getX() - pad) / UPSCALE) * UPSCALE;
+		int hiY = (int) Math.floor((bounds.getY() - pad) / UPSCALE) * UPSCALE;
+		int hiW = ((int) Math.ceil(bounds.getMaxX()) + pad - hiX + UPSCALE - 1)
+				/ UPSCALE * UPSCALE;
+		int hiH = ((int) Math.ceil(bounds.getMaxY()) + pad - hiY + UPSCALE - 1)
+				/ UPSCALE * UPSCALE;
+		BufferedImage hiRes = new BufferedImage(hiW, hiH,
+				BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D g2 = hiRes.createGraphics();
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_OFF);
+		g2.fill(gv.getOutline(-hiX, -hiY));
+		g2.dispose();
+		boolean[] inside = new boolean[hiW * hiH];
+		for (int py = 0; py < hiH; py++)
+			for (int px = 0; px < hiW; px++)
+				inside[py * hiW + px] = (hiRes.getRGB(px, py) & 0xff) > 127;
+
+		g.width = hiW / UPSCALE;
+		g.height = hiH / UPSCALE;
+		g.xoffset = hiX / UPSCALE;
+		// distance from the top of the line to the top of the glyph
+		g.yoffset = hiY / UPSCALE;
+		g.pixels = new int[g.width * g.height];
+		for (int py = 0; py < g.height; py++) {
+			for (int px = 0; px < g.width; px++) {
+				int cx = px * UPSCALE + UPSCALE / 2;
+				int cy = py * UPSCALE + UPSCALE / 2;
+				float d = signedDistance(inside, hiW, hiH, cx, cy, pad)
+						/ UPSCALE;
+				float alpha = Math.max(0f, Math.min(1f, .5f + d
+						/ (2f * spread)));
+				int a = (int) (alpha * 255f);
+				g.pixels[py * g.width + px] = (a << 24) | 0xffffff;
+			}
+		}
+		return g;
+	}
+
+	// distance to the nearest pixel with the opposite state (positive inside)
+	private static float signedDistance(boolean[] inside, int w, int h,
+			int cx, int cy, int radius) {
+		boolean in = inside[cy * w + cx];
+		int best = radius * radius;
+		int x1 = Math.max(0, cx - radius), x2 = Math.min(w - 1, cx + radius);
+		int y1 = Math.max(0, cy - radius), y2 = Math.min(h - 1, cy + radius);
+		for (int y = y1; y <= y2; y++) {
+			int dy = y - cy;
+			if (dy * dy >= best)
+				continue;
+			for (int x = x1; x <= x2; x++) {
+				if (inside[y * w + x] != in) {
+					int dx = x - cx;
+					int d = dx * dx + dy * dy;
+					if (d < best)
+						best = d;
+				}
+			}
+		}
+		float dist = (float) Math.sqrt(best);
+		return in ? dist : -dist;
+	}
+
+	private void writeFnt(File fntFile, String pngName, List<Glyph> glyphs,
+			int atlasHeight, FontRenderContext frc) throws IOException {
+		java.awt.font.LineMetrics lm = font.getLineMetrics("Ag", frc);
+		int base = Math.round(lm.getAscent() / UPSCALE);
+		int lineHeight = Math.round(lm.getHeight() / UPSCALE);
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(
+				new FileOutputStream(fntFile), "UTF-8"));
+		try {
+			// the spread is read by DistanceFieldFont
+			out.println("info face=\"" + font.getFontName() + "\" size="
+					+ size + " bold=0 italic=0 charset=\"\" unicode=1"
+					+ " stretchH=100 smooth=1 aa=1 padding=" + spread + ","
+					+ spread + "," + spread + "," + spread
+					+ " spacing=0,0 spread=" + spread);
+			out.println("common lineHeight=" + lineHeight + " base=" + base
+					+ " scaleW=" + ATLAS_WIDTH + " scaleH=" + atlasHeight
+					+ " pages=1 packed=0");
+			out.println("page id=0 file=\"" + pngName + "\"");
+			out.println("chars count=" + glyphs.size());
+			for (Glyph g : glyphs) {
+				out.println("char id=" + (int) g.c + " x=" + g.x + " y=" + g.y
+						+ " width=" + g.width + " height=" + g.height
+						+ " xoffset=" + g.xoffset + " yoffset="
+						+ (base + g.yoffset) + " xadvance=" + g.xadvance
+						+ " page=0 chnl=0");
+			}
+			out.println("kernings count=0");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * The build step.<br>
+	 * Usage:
+	 * <code>DistanceFieldFontGenerator ttfFile fntFile [size] [spread] [chars]</code>
+	 * 
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: DistanceFieldFontGenerator ttfFile "
+					+ "fntFile [size] [spread] [chars]");
+			return;
+		}
+		int size = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+		int spread = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+		String chars = args.length > 4 ? args[4] : defaultChars();
+		int count = new DistanceFieldFontGenerator(new File(args[0]), size,
+				spread).generate(new File(args[1]), chars);
+		System.out.println(count + " glyphs written to " + args[1]);
+	}
+
+	private static String defaultChars() {
+		StringBuilder chars = new StringBuilder();
+		for (char c = 32; c < 127; c++)
+			chars.append(c);
+		for (char c = 160; c < 256; c++)
+			chars.append(c);
+		return chars.toString();
+	}
+
+	private static class Glyph {
+		private final char c;
+		private int x, y, width, height, xoffset, yoffset, xadvance;
+		private int[] pixels;
+
+		public Glyph(char c) {
+			this.c = c;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+/**
+ * Accumulates the frame time and splits it into simulation ticks of a fixed
+ * length. The remaining time (less than one tick) is used to interpolate the
+ * drawing between the last two simulated states.<br>
+ * If the tick rate is 0, the fixed timestep is disabled. Then every frame is
+ * exactly one tick with the frames delta time, and the interpolation alpha is
+ * always 1.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class FixedTimestep {
+	private int tickRate;
+	private float fixedStep;
+	private float step;
+	private float accumulator;
+	private float alpha = 1f;
+	private int ticks;
+
+	/**
+	 * @param tickRate
+	 *            Simulation ticks per second or 0 for a variable timestep
+	 */
+	public FixedTimestep(int tickRate) {
+		setTickRate(tickRate);
+	}
+
+	/**
+	 * Sets the number of simulation ticks per second. 0 disables the fixed
+	 * timestep.
+	 * 
+	 * @param tickRate
+	 */
+	public void setTickRate(int tickRate) {
+		this.tickRate = Math.max(0, tickRate);
+		this.fixedStep = this.tickRate == 0 ? 0f : 1f / this.tickRate;
+		this.step = fixedStep;
+		reset();
+	}
+
+	public int getTickRate() {
+		return tickRate;
+	}
+
+	/**
+	 * @return true if the simulation runs with a fixed timestep
+	 */
+	public boolean isEnabled() {
+		return tickRate > 0;
+	}
+
+	/**
+	 * Adds the frame time to the accumulator and computes the number of ticks
+	 * to simulate in this frame. Should be called exactly once per frame.
+	 * 
+	 * @param deltaTime
+	 *            The (clamped) time of this frame
+	 * @return The number of ticks to simulate in this frame
+	 */
+	public int advance(float deltaTime) {
+		if (fixedStep == 0f) {
+			step = deltaTime;
+			return ticks = 1;
+		}
+		accumulator += deltaTime;
+		int ticks = (int) (accumulator / fixedStep);
+		accumulator -= ticks * fixedStep;
+		alpha = accumulator / fixedStep;
+		return this.ticks = ticks;
+	}
+
+	/**
+	 * Holds the simulation while the world is frozen. Nothing is simulated
+	 * and the interpolation alpha is pinned to 1, therefore the actual state
+	 * is drawn. The next {@link #advance(float)} simulates at least one tick,
+	 * which restarts the interpolation from the actual state.
+	 */
+	public void hold() {
+		accumulator = fixedStep;
+		alpha = 1f;
+		ticks = 0;
+	}
+
+	/**
+	 * @return The number of ticks to simulate in the actual frame
+	 */
+	public int getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * @return The simulated time per tick. If the fixed timestep is disabled,
+	 *         this is the delta time of the actual frame.
+	 */
+	public float getStep() {
+		return step;
+	}
+
+	/**
+	 * The interpolation factor between the state before the last tick (0) and
+	 * the actual state (1).
+	 * 
+	 * @return A value in the range [0, 1) or 1 if the fixed timestep is
+	 *         disabled
+	 */
+	public float getAlpha() {
+		return alpha;
+	}
+
+	public void reset() {
+		accumulator = 0f;
+		alpha = 1f;
+		ticks = 0;
+	}
+}
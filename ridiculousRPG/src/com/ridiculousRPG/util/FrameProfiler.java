@@ -0,0 +1,313 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.badlogic.gdx.files.FileHandle;
+
+/**
+ * Records nanosecond timings per frame for named sections (e.g. the compute
+ * and draw method of every service or a phase of the map computation).<br>
+ * Every section stores the last {@link #CAPACITY} timings in a ring buffer.
+ * Recording is lock free and allocation free, but every section must only be
+ * recorded by one thread. The timings can be read by any thread at any time,
+ * which may result in a slightly inaccurate snapshot.<br>
+ * If the profiler is disabled, nothing is recorded.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class FrameProfiler {
+	/**
+	 * Number of timings stored per section (power of two)
+	 */
+	public static final int CAPACITY = 512;
+	private static final int MASK = CAPACITY - 1;
+
+	private volatile boolean enabled;
+	private final ConcurrentHashMap<String, Section> sections = new ConcurrentHashMap<String, Section>();
+	private final IdentityHashMap<Object, Section> computeSections = new IdentityHashMap<Object, Section>();
+	// only accessed by the gl thread
+	private final IdentityHashMap<Object, Section> drawSections = new IdentityHashMap<Object, Section>();
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns the section with the given name. The section is created if it
+	 * doesn't exist. Cache the returned section if you record it frequently.
+	 * 
+	 * @param name
+	 * @return the section with the given name
+	 */
+	public Section getSection(String name) {
+		Section s = sections.get(name);
+		if (s == null) {
+			s = new Section(name);
+			Section old = sections.putIfAbsent(name, s);
+			if (old != null)
+				s = old;
+		}
+		return s;
+	}
+
+	/**
+	 * Returns the compute section of the given service. May be called by the
+	 * gl thread and the simulation thread.
+	 * 
+	 * @param service
+	 * @return the compute section of the service
+	 */
+	public Section getComputeSection(Object service) {
+		synchronized (computeSections) {
+			Section s = computeSections.get(service);
+			if (s == null) {
+				s = getSection(service.getClass().getName() + ".compute");
+				computeSections.put(service, s);
+			}
+			return s;
+		}
+	}
+
+	/**
+	 * Returns the draw section of the given service. Must only be called by
+	 * the gl thread.
+	 * 
+	 * @param service
+	 * @return the draw section of the service
+	 */
+	public Section getDrawSection(Object service) {
+		Section s = drawSections.get(service);
+		if (s == null) {
+			s = getSection(service.getClass().getName() + ".draw");
+			drawSections.put(service, s);
+		}
+		return s;
+	}
+
+	/**
+	 * @return All sections sorted by name
+	 */
+	public List<Section> getSections() {
+		return getSections(new ArrayList<Section>(sections.size()));
+	}
+
+	/**
+	 * Adds all sections sorted by name to the given list.
+	 * 
+	 * @param result
+	 *            an empty list
+	 * @return the given list
+	 */
+	public List<Section> getSections(List<Section> result) {
+		result.addAll(sections.values());
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Removes all recorded timings. The sections remain valid.
+	 */
+	public void clear() {
+		for (Section s : sections.values())
+			s.count = 0;
+	}
+
+	/**
+	 * Writes all sections to the given file. If the file name ends with
+	 * ".json" the JSON format is used, otherwise CSV.
+	 * 
+	 * @param file
+	 */
+	public void export(FileHandle file) {
+		Writer w = file.writer(false);
+		try {
+			if (file.name().toLowerCase().endsWith(".json"))
+				writeJson(w);
+			else
+				writeCsv(w);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not export profile to "
+					+ file.path(), e);
+		} finally {
+			try {
+				w.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	/**
+	 * Writes one line per section: name, number of samples, p50, p95, p99 and
+	 * max (in nanoseconds)
+	 * 
+	 * @param w
+	 * @throws IOException
+	 */
+	public void writeCsv(Writer w) throws IOException {
+		w.write("section,samples,p50,p95,p99,max\n");
+		for (Section s : getSections()) {
+			long[] v = s.snapshot();
+			w.write(s.name + "," + v.length + "," + percentile(v, .5) + ","
+					+ percentile(v, .95) + "," + percentile(v, .99) + ","
+					+ percentile(v, 1.) + "\n");
+		}
+	}
+
+	/**
+	 * Writes the statistics and the recorded timings of all sections (in
+	 * nanoseconds)
+	 * 
+	 * @param w
+	 * @throws IOException
+	 */
+	public void writeJson(Writer w) throws IOException {
+		w.write("{\"sections\":[");
+		boolean first = true;
+		for (Section s : getSections()) {
+			long[] timings = s.timings();
+			long[] v = timings.clone();
+			Arrays.sort(v);
+			if (!first)
+				w.write(',');
+			first = false;
+			w.write("\n{\"name\":\"" + s.name + "\",\"samples\":" + v.length
+					+ ",\"p50\":" + percentile(v, .5) + ",\"p95\":"
+					+ percentile(v, .95) + ",\"p99\":" + percentile(v, .99)
+					+ ",\"max\":" + percentile(v, 1.) + ",\"timings\":"
+					+ Arrays.toString(timings).replace(" ", "") + "}");
+		}
+		w.write("\n]}\n");
+	}
+
+	/**
+	 * @param sorted
+	 *            sorted values
+	 * @param p
+	 *            the percentile (0 &lt; p &lt;= 1)
+	 * @return the value at the given percentile or 0 if there are no values
+	 */
+	public static long percentile(long[] sorted, double p) {
+		return percentile(sorted, sorted.length, p);
+	}
+
+	/**
+	 * @param sorted
+	 *            sorted values
+	 * @param len
+	 *            number of valid values in the array
+	 * @param p
+	 *            the percentile (0 &lt; p &lt;= 1)
+	 * @return the value at the given percentile or 0 if there are no values
+	 */
+	public static long percentile(long[] sorted, int len, double p) {
+		if (len == 0)
+			return 0;
+		int i = (int) Math.ceil(p * len) - 1;
+		return sorted[Math.max(0, Math.min(i, len - 1))];
+	}
+
+	/**
+	 * A ring buffer of timings. Must only be recorded by one thread.
+	 * 
+	 * @author Alexander Baumgartner
+	 */
+	public static class Section implements Comparable<Section> {
+		private final String name;
+		private final long[] samples = new long[CAPACITY];
+		private volatile int count;
+
+		protected Section(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Records one timing.
+		 * 
+		 * @param nanos
+		 */
+		public void record(long nanos) {
+			int c = count;
+			samples[c & MASK] = nanos;
+			// publishes the sample
+			count = c + 1;
+		}
+
+		/**
+		 * @return The recorded timings in chronological order (at most
+		 *         {@link FrameProfiler#CAPACITY})
+		 */
+		public long[] timings() {
+			int len = Math.min(count, CAPACITY);
+			long[] result = new long[len];
+			copyTimings(result, len);
+			return result;
+		}
+
+		/**
+		 * @return The recorded timings sorted ascending
+		 */
+		public long[] snapshot() {
+			long[] result = timings();
+			Arrays.sort(result);
+			return result;
+		}
+
+		/**
+		 * Copies the recorded timings sorted ascending into the given buffer.
+		 * Nothing is allocated, use this method if the snapshot is taken
+		 * every frame.
+		 * 
+		 * @param buffer
+		 *            at least {@link FrameProfiler#CAPACITY} long
+		 * @return The number of timings copied into the buffer
+		 */
+		public int snapshot(long[] buffer) {
+			int len = Math.min(count, CAPACITY);
+			copyTimings(buffer, len);
+			Arrays.sort(buffer, 0, len);
+			return len;
+		}
+
+		private void copyTimings(long[] dest, int len) {
+			int c = count;
+			// the count may have increased since len was computed
+			for (int i = 0, j = c - len; i < len; i++, j++)
+				dest[i] = samples[j & MASK];
+		}
+
+		public int compareTo(Section o) {
+			return name.compareTo(o.name);
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL10;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Disposable;
+import com.ridiculousRPG.GameBase;
+
+/**
+ * A retained set of colored lines which is rendered with one draw call.<br>
+ * The lines are collected into a vertex array and uploaded into a mesh by
+ * {@link #upload()}. A static mesh (vertex buffer object) should be used for
+ * lines which rarely change: they are only uploaded again after they have
+ * changed. A dynamic mesh is used to stream lines which change every frame
+ * (e.g. debug rectangles).<br>
+ * Rendering must be done without the sprite batch (see
+ * {@link RenderPassScheduler#suspend()}). All methods must be called by a
+ * thread with gl context.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class LineMesh implements Disposable {
+	// x, y and the packed color
+	private static final int VERTEX_SIZE = 3;
+
+	private static final String VERTEX_SHADER = "attribute vec4 "
+			+ ShaderProgram.POSITION_ATTRIBUTE + ";\n" //
+			+ "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n" //
+			+ "uniform mat4 u_projTrans;\n" //
+			+ "varying vec4 v_color;\n" //
+			+ "void main() {\n" //
+			+ "  v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n" //
+			+ "  gl_Position = u_projTrans * "
+			+ ShaderProgram.POSITION_ATTRIBUTE + ";\n" //
+			+ "}\n";
+	private static final String FRAGMENT_SHADER = "#ifdef GL_ES\n" //
+			+ "precision mediump float;\n" //
+			+ "#endif\n" //
+			+ "varying vec4 v_color;\n" //
+			+ "void main() {\n" //
+			+ "  gl_FragColor = v_color;\n" //
+			+ "}\n";
+
+	private final boolean isStatic;
+	private float[] vertices;
+	private int size;
+	private Mesh mesh;
+	private int uploaded;
+	private ShaderProgram shader;
+	private boolean shaderFailed;
+
+	/**
+	 * @param isStatic
+	 *            true if the lines rarely change
+	 * @param lines
+	 *            The initial capacity
+	 */
+	public LineMesh(boolean isStatic, int lines) {
+		this.isStatic = isStatic;
+		this.vertices = new float[Math.max(1, lines) * 2 * VERTEX_SIZE];
+	}
+
+	/**
+	 * Removes all lines. The mesh isn't changed until the next
+	 * {@link #upload()}.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Adds a line
+	 * 
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param colorBits
+	 *            The packed color
+	 */
+	public void line(float x1, float y1, float x2, float y2, float colorBits) {
+		if (size + 2 * VERTEX_SIZE > vertices.length) {
+			float[] v = new float[vertices.length * 2];
+			System.arraycopy(vertices, 0, v, 0, size);
+			vertices = v;
+		}
+		float[] v = vertices;
+		int i = size;
+		v[i] = x1;
+		v[i + 1] = y1;
+		v[i + 2] = colorBits;
+		v[i + 3] = x2;
+		v[i + 4] = y2;
+		v[i + 5] = colorBits;
+		size = i + 2 * VERTEX_SIZE;
+	}
+
+	/**
+	 * Adds the outline of a rectangle (4 lines)
+	 * 
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param colorBits
+	 *            The packed color
+	 */
+	public void rect(float x, float y, float width, float height,
+			float colorBits) {
+		float x2 = x + width;
+		float y2 = y + height;
+		line(x, y, x2, y, colorBits);
+		line(x2, y, x2, y2, colorBits);
+		line(x2, y2, x, y2, colorBits);
+		line(x, y2, x, y, colorBits);
+	}
+
+	/**
+	 * @return the number of lines (also the ones not uploaded yet)
+	 */
+	public int getLineCount() {
+		return size / (2 * VERTEX_SIZE);
+	}
+
+	/**
+	 * Uploads all lines into the mesh. The mesh is recreated if it's too
+	 * small.
+	 */
+	public void upload() {
+		int vertexCount = size / VERTEX_SIZE;
+		if (mesh == null || mesh.getMaxVertices() < vertexCount) {
+			if (mesh != null)
+				mesh.dispose();
+			mesh = new Mesh(isStatic, vertices.length / VERTEX_SIZE, 0,
+					new VertexAttribute(Usage.Position, 2,
+							ShaderProgram.POSITION_ATTRIBUTE),
+					new VertexAttribute(Usage.ColorPacked, 4,
+							ShaderProgram.COLOR_ATTRIBUTE));
+		}
+		mesh.setVertices(vertices, 0, size);
+		uploaded = vertexCount;
+	}
+
+	/**
+	 * Renders the uploaded lines
+	 * 
+	 * @param projection
+	 */
+	public void render(Matrix4 projection) {
+		if (uploaded == 0 || shaderFailed)
+			return;
+		if (Gdx.graphics.isGL20Available()) {
+			if (shader == null) {
+				shader = new ShaderProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+				if (!shader.isCompiled()) {
+					GameBase.$error("LineMesh.shader",
+							"Could not compile the line shader\n"
+									+ shader.getLog(), null);
+					shader.dispose();
+					shader = null;
+					shaderFailed = true;
+					return;
+				}
+			}
+			shader.begin();
+			shader.setUniformMatrix("u_projTrans", projection);
+			mesh.render(shader, GL20.GL_LINES, 0, uploaded);
+			shader.end();
+		} else {
+			GL10 gl = Gdx.gl10;
+			gl.glMatrixMode(GL10.GL_PROJECTION);
+			gl.glLoadMatrixf(projection.val, 0);
+			gl.glMatrixMode(GL10.GL_MODELVIEW);
+			gl.glLoadIdentity();
+			mesh.render(GL10.GL_LINES, 0, uploaded);
+		}
+	}
+
+	public void dispose() {
+		if (mesh != null) {
+			mesh.dispose();
+			mesh = null;
+		}
+		if (shader != null) {
+			shader.dispose();
+			shader = null;
+		}
+		uploaded = 0;
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock free, unbounded multi producer single consumer queue.<br>
+ * Any thread may {@link #offer(Object)} elements, but only one thread (the
+ * owner/consumer) is allowed to {@link #poll()} them.<br>
+ * Offering never blocks and polling an empty queue is just one volatile read.
+ * Therefore it's well suited for posting requests to a thread which polls them
+ * in every frame.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class MpscQueue<T> {
+	// producers append at the tail
+	private final AtomicReference<Node<T>> tail;
+	// the consumer removes at the head (the head is always a stub node)
+	private volatile Node<T> head;
+
+	public MpscQueue() {
+		Node<T> stub = new Node<T>(null);
+		head = stub;
+		tail = new AtomicReference<Node<T>>(stub);
+	}
+
+	/**
+	 * Appends the value to the queue. This method is thread safe and never
+	 * blocks.
+	 * 
+	 * @param value
+	 *            The value to append (must not be null)
+	 */
+	public void offer(T value) {
+		Node<T> node = new Node<T>(value);
+		Node<T> prev = tail.getAndSet(node);
+		// the queue is temporarily unlinked until the next line is executed.
+		// The consumer sees an empty queue in the meantime.
+		prev.next = node;
+	}
+
+	/**
+	 * Removes and returns the first value. This method must only be called by
+	 * the consumer thread.
+	 * 
+	 * @return The first value or null if the queue is empty
+	 */
+	public T poll() {
+		Node<T> next = head.next;
+		if (next == null)
+			return null;
+		T value = next.value;
+		next.value = null;
+		head = next;
+		return value;
+	}
+
+	/**
+	 * Note: The answer is not 100% time-accurate if it's called by an other
+	 * thread than the consumer thread.
+	 * 
+	 * @return true if there is no value to poll
+	 */
+	public boolean isEmpty() {
+		return head.next == null;
+	}
+
+	private static final class Node<T> {
+		T value;
+		volatile Node<T> next;
+
+		Node(T value) {
+			this.value = value;
+		}
+	}
+}
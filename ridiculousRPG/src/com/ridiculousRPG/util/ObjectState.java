@@ -119,6 +119,20 @@ public class ObjectState implements Serializable {
 		return actVal;
 	}
 
+	/**
+	 * Atomically adds the given value to an integer variable. Useful for
+	 * counters which are shared by scripts running in parallel.
+	 * 
+	 * @param index
+	 * @param delta
+	 * @return the new stored value
+	 */
+	public synchronized int addInt(int index, int delta) {
+		int newVal = getInt(index) + delta;
+		setInt(index, newVal);
+		return newVal;
+	}
+
 	/**
 	 * Reads a boolean variable
 	 * 
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.ParticleEffect;
+import com.badlogic.gdx.graphics.g2d.ParticleEmitter;
+import com.badlogic.gdx.graphics.g2d.ParticleEmitter.ScaledNumericValue;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * This class is used to load and cache particle effects. Every effect file is
+ * loaded only once into a prototype (including its textures). The effects
+ * handed out are copies of the prototype, which share the textures with the
+ * prototype.<br>
+ * Disposing a {@link ParticleEffectRef} returns it to the pool of its
+ * prototype, where it waits to be reused.<br>
+ * The number of active particles of all obtained effects is limited by a
+ * global particle budget. If the budget is exceeded, the emission of all
+ * effects is scaled down.<br>
+ * <br>
+ * The implementation is thread safe.
+ * 
+ * @author Alexander Baumgartner
+ */
+public final class ParticleEffectLoader {
+	private ParticleEffectLoader() {
+	}// static container
+
+	/**
+	 * Maximum number of free effects kept per prototype
+	 */
+	public static final int MAX_FREE_PER_PROTOTYPE = 64;
+
+	static HashMap<String, EffectCache> effectCache = new HashMap<String, EffectCache>(
+			32);
+
+	// active particles of all obtained effects
+	private static final AtomicInteger activeParticles = new AtomicInteger();
+	private static volatile int particleBudget;
+	private static volatile float emissionScale = 1f;
+	// adaption of the emission scale per second
+	private static final float EMISSION_ADAPTION = 3f;
+
+	/**
+	 * Limits the number of active particles of all obtained effects. If the
+	 * limit is exceeded, the emission of all effects is scaled down. Effects
+	 * which don't emit new particles are not affected.
+	 *
+	 * @param budget
+	 *            The maximum number of particles or 0 for no limit
+	 */
+	public static void setParticleBudget(int budget) {
+		particleBudget = Math.max(0, budget);
+		if (budget <= 0)
+			emissionScale = 1f;
+	}
+
+	public static int getParticleBudget() {
+		return particleBudget;
+	}
+
+	/**
+	 * @return The number of active particles of all obtained effects
+	 */
+	public static int getActiveParticles() {
+		return activeParticles.get();
+	}
+
+	/**
+	 * Adapts the emission scale smoothly to the particle budget. Called by
+	 * the main thread once per frame, the effects only read the scale.
+	 * Therefore the adaption doesn't depend on the number of effects and
+	 * the frame rate.
+	 * 
+	 * @param deltaTime
+	 *            time elapsed since the last frame (in seconds)
+	 */
+	public static void updateEmissionScale(float deltaTime) {
+		int budget = particleBudget;
+		if (budget == 0)
+			return;
+		float scale = emissionScale;
+		int active = activeParticles.get();
+		float target = active > budget ? scale * budget / active : 1f;
+		float adaption = Math.min(1f, EMISSION_ADAPTION * deltaTime);
+		emissionScale = scale + (Math.max(.05f, target) - scale) * adaption;
+	}
+
+	/**
+	 * Loads the prototype if it's not cached yet and obtains an effect from
+	 * the prototypes pool. The returned effect is reset.
+	 * 
+	 * @param internalPath
+	 *            The path to the particle effect
+	 * @return A particle effect, which returns to the pool if it's disposed
+	 */
+	public static ParticleEffectRef load(String internalPath) {
+		return load(Gdx.files.internal(internalPath));
+	}
+
+	/**
+	 * Loads the prototype if it's not cached yet and obtains an effect from
+	 * the prototypes pool. The returned effect is reset.
+	 * 
+	 * @param filePath
+	 *            The file to the particle effect
+	 * @return A particle effect, which returns to the pool if it's disposed
+	 */
+	public static synchronized ParticleEffectRef load(FileHandle filePath) {
+		return obtainCache(filePath).obtain();
+	}
+
+	/**
+	 * Disposes all prototypes which have no effects in use. Pooled effects of
+	 * these prototypes are released.
+	 */
+	public static synchronized void clearCache() {
+		Iterator<EffectCache> iter = effectCache.values().iterator();
+		while (iter.hasNext()) {
+			EffectCache cache = iter.next();
+			if (cache.inUse == 0) {
+				cache.freeEffects.clear();
+				cache.prototype.dispose();
+				iter.remove();
+			}
+		}
+	}
+
+	private static EffectCache obtainCache(final FileHandle filePath) {
+		String fileName = filePath.path();
+		EffectCache cache = effectCache.get(fileName);
+		if (cache == null) {
+			final ParticleEffect prototype = new ParticleEffect();
+			new ExecWithGlContext() {
+				@Override
+				public void exec() {
+					prototype.load(filePath, filePath.parent());
+				}
+			}.runWait();
+			cache = new EffectCache(prototype);
+			effectCache.put(fileName, cache);
+		}
+		return cache;
+	}
+
+	/**
+	 * Use {@link ParticleEffectLoader#load} to obtain a particle effect.
+	 * 
+	 * @author Alexander Baumgartner
+	 */
+	public static class ParticleEffectRef extends ParticleEffect {
+		private final EffectCache cache;
+		private boolean pooled;
+		private int particleCount;
+		private float appliedScale = 1f;
+
+		/**
+		 * Use {@link ParticleEffectLoader#load} to obtain a particle effect.
+		 */
+		protected ParticleEffectRef(EffectCache cache) {
+			super(cache.prototype);
+			this.cache = cache;
+		}
+
+		/**
+		 * Updates the effect and accounts the active particles in the global
+		 * particle budget.
+		 */
+		@Override
+		public void update(float delta) {
+			float scale = emissionScale;
+			if (Math.abs(scale - appliedScale) > .01f)
+				applyEmissionScale(scale);
+			super.update(delta);
+			Array<ParticleEmitter> emitters = getEmitters();
+			int count = 0;
+			for (int i = 0, n = emitters.size; i < n; i++)
+				count += emitters.get(i).getActiveCount();
+			activeParticles.addAndGet(count - particleCount);
+			particleCount = count;
+		}
+
+		private void applyEmissionScale(float scale) {
+			Array<ParticleEmitter> emitters = getEmitters();
+			Array<ParticleEmitter> protoEmitters = cache.prototype
+					.getEmitters();
+			for (int i = 0, n = emitters.size; i < n; i++) {
+				ScaledNumericValue proto = protoEmitters.get(i).getEmission();
+				ScaledNumericValue emission = emitters.get(i).getEmission();
+				emission.setHigh(proto.getHighMin() * scale, proto.getHighMax()
+						* scale);
+				emission.setLow(proto.getLowMin() * scale, proto.getLowMax()
+						* scale);
+			}
+			appliedScale = scale;
+		}
+
+		/**
+		 * Returns this effect to the pool. The textures are shared with the
+		 * prototype and therefore not disposed.
+		 */
+		@Override
+		public void dispose() {
+			activeParticles.addAndGet(-particleCount);
+			particleCount = 0;
+			synchronized (ParticleEffectLoader.class) {
+				cache.free(this);
+			}
+		}
+	}
+
+	/**
+	 * The prototype and its pool of free effects
+	 */
+	protected static class EffectCache {
+		private final ParticleEffect prototype;
+		private final Array<ParticleEffectRef> freeEffects = new Array<ParticleEffectRef>(
+				false, 16);
+		// number of effects in use
+		private int inUse;
+
+		protected EffectCache(ParticleEffect prototype) {
+			this.prototype = prototype;
+		}
+
+		ParticleEffectRef obtain() {
+			ParticleEffectRef effect = freeEffects.size == 0 ? new ParticleEffectRef(
+					this)
+					: freeEffects.pop();
+			effect.pooled = false;
+			effect.reset();
+			inUse++;
+			return effect;
+		}
+
+		void free(ParticleEffectRef effect) {
+			if (effect.pooled)
+				return;
+			effect.pooled = true;
+			inUse--;
+			if (freeEffects.size < MAX_FREE_PER_PROTOTYPE)
+				freeEffects.add(effect);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.Matrix4;
+
+/**
+ * Schedules the render passes of one frame onto the sprite batch.<br>
+ * The batch is begun once per frame and stays open as long as possible.
+ * Switching the projection matrix only flushes the batch (no end/begin
+ * cycle) and a projection with the same values as the current one doesn't
+ * flush at all. Code which has to render without the sprite batch (e.g.
+ * shapes) suspends the batch and resumes it afterwards. The order of all
+ * draw calls stays unchanged, therefore the layering is correct.<br>
+ * The number of batch cycles, projection switches and draw calls of the last
+ * frame are recorded.<br>
+ * Must only be used by the main thread.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class RenderPassScheduler {
+	private SpriteBatch batch;
+	private final Matrix4 projection = new Matrix4();
+	private boolean drawing;
+	private boolean suspended;
+
+	private int batchCycles, projectionSwitches, drawCalls;
+	private int lastBatchCycles, lastProjectionSwitches, lastDrawCalls;
+
+	/**
+	 * Starts a new frame. Nothing is drawn until the first pass is started.
+	 * 
+	 * @param batch
+	 */
+	public void beginFrame(SpriteBatch batch) {
+		this.batch = batch;
+		drawing = false;
+		suspended = false;
+		batchCycles = projectionSwitches = drawCalls = 0;
+	}
+
+	/**
+	 * Starts a pass with the given projection. The batch is begun if it's not
+	 * drawing. The batch is only flushed if the values of the projection
+	 * differ from the current one.
+	 * 
+	 * @param projection
+	 */
+	public void pass(Matrix4 projection) {
+		if (!drawing) {
+			this.projection.set(projection);
+			batch.setProjectionMatrix(projection);
+			begin();
+		} else if (!Arrays.equals(this.projection.val, projection.val)) {
+			this.projection.set(projection);
+			// flushes the batch without ending it
+			batch.setProjectionMatrix(projection);
+			projectionSwitches++;
+		}
+	}
+
+	/**
+	 * Ends the batch to render without it. Call {@link #resume()} afterwards.
+	 * 
+	 * @return the projection of the current pass
+	 */
+	public Matrix4 suspend() {
+		if (drawing)
+			end();
+		suspended = true;
+		return projection;
+	}
+
+	/**
+	 * Begins the batch after {@link #suspend()} with the same projection.
+	 */
+	public void resume() {
+		if (suspended && !drawing) {
+			suspended = false;
+			batch.setProjectionMatrix(projection);
+			begin();
+		}
+	}
+
+	/**
+	 * Ends the batch and publishes the statistics of this frame.
+	 */
+	public void endFrame() {
+		if (drawing)
+			end();
+		batch = null;
+		lastBatchCycles = batchCycles;
+		lastProjectionSwitches = projectionSwitches;
+		lastDrawCalls = drawCalls;
+	}
+
+	/**
+	 * @return true if the batch is drawing
+	 */
+	public boolean isDrawing() {
+		return drawing;
+	}
+
+	private void begin() {
+		batch.begin();
+		drawing = true;
+		batchCycles++;
+	}
+
+	private void end() {
+		batch.end();
+		drawing = false;
+		// renderCalls is reset by begin()
+		drawCalls += batch.renderCalls;
+	}
+
+	/**
+	 * @return The number of begin/end cycles of the last frame
+	 */
+	public int getBatchCycles() {
+		return lastBatchCycles;
+	}
+
+	/**
+	 * @return The number of projection switches (flushes without end/begin)
+	 *         of the last frame
+	 */
+	public int getProjectionSwitches() {
+		return lastProjectionSwitches;
+	}
+
+	/**
+	 * @return The number of draw calls of the sprite batch in the last frame
+	 */
+	public int getDrawCalls() {
+		return lastDrawCalls;
+	}
+
+	@Override
+	public String toString() {
+		return "Render passes: " + lastBatchCycles + " batch cycles, "
+				+ lastProjectionSwitches + " projection switches, "
+				+ lastDrawCalls + " draw calls";
+	}
+}
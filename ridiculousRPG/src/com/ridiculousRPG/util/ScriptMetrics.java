@@ -0,0 +1,440 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ridiculousRPG.GameBase;
+import com.ridiculousRPG.event.EventObject;
+import com.ridiculousRPG.event.PolygonObject;
+
+/**
+ * Records the number of invocations, the cumulative and the maximum execution
+ * time and the number of exceptions of every script handler. The handlers are
+ * keyed by the name of the event (or the description of the posted script)
+ * and the handler type (e.g. onTimer, onPush).<br>
+ * If a script takes longer than the slow script threshold, an info message
+ * with an excerpt of the script is logged.<br>
+ * Nothing is recorded if the metrics are disabled.<br>
+ * <br>
+ * The implementation is thread safe. Scripts can query the report by
+ * <code>$.serviceProvider.scriptMetrics.report</code>.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class ScriptMetrics {
+	private static final int EXCERPT_LENGTH = 80;
+
+	private volatile boolean enabled;
+	private volatile long slowThresholdNanos;
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Scripts which take longer are logged. 0 disables the logging.
+	 * 
+	 * @param millis
+	 */
+	public void setSlowThreshold(float millis) {
+		slowThresholdNanos = (long) (Math.max(0f, millis) * 1000000f);
+	}
+
+	public float getSlowThreshold() {
+		return slowThresholdNanos / 1000000f;
+	}
+
+	/**
+	 * Call this before executing a script and pass the returned value to
+	 * {@link #stop(Object, String, long)}.
+	 * 
+	 * @return the start time or 0 if the metrics are disabled
+	 */
+	public long start() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Records the execution time of a script.
+	 * 
+	 * @param owner
+	 *            The event (or any other object) executing the script
+	 * @param handlerType
+	 *            The type of the handler (e.g. onTimer)
+	 * @param start
+	 *            The value returned by {@link #start()}
+	 * @return true if the script exceeded the slow script threshold. Call
+	 *         {@link #logSlowScript(Object, String, String)} in this case.
+	 */
+	public boolean stop(Object owner, String handlerType, long start) {
+		if (start == 0L)
+			return false;
+		return stop(getEntry(owner, handlerType), start);
+	}
+
+	/**
+	 * Records the execution time of a script. Use this method with a cached
+	 * entry if the handler is executed frequently (e.g. every frame).
+	 * 
+	 * @param entry
+	 *            The entry returned by {@link #getEntry(Object, String)}
+	 * @param start
+	 *            The value returned by {@link #start()}
+	 * @return true if the script exceeded the slow script threshold. Call
+	 *         {@link #logSlowScript(Entry, String)} in this case.
+	 */
+	public boolean stop(Entry entry, long start) {
+		if (start == 0L)
+			return false;
+		long nanos = System.nanoTime() - start;
+		entry.record(nanos);
+		long threshold = slowThresholdNanos;
+		return threshold > 0L && nanos > threshold;
+	}
+
+	/**
+	 * Logs an excerpt of a slow script with the last recorded time.
+	 * 
+	 * @param owner
+	 * @param handlerType
+	 * @param script
+	 */
+	public void logSlowScript(Object owner, String handlerType, String script) {
+		logSlowScript(getEntry(owner, handlerType), script);
+	}
+
+	/**
+	 * Logs an excerpt of a slow script with the last recorded time.
+	 * 
+	 * @param entry
+	 * @param script
+	 */
+	public void logSlowScript(Entry entry, String script) {
+		GameBase.$info("ScriptMetrics.slowScript", entry.key + " took "
+				+ entry.lastNanos / 1000000f + " ms: " + excerpt(script), null);
+	}
+
+	/**
+	 * Counts an exception thrown by a script.
+	 * 
+	 * @param owner
+	 * @param handlerType
+	 * @param e
+	 */
+	public void error(Object owner, String handlerType, Exception e) {
+		if (enabled)
+			getEntry(owner, handlerType).error(e);
+	}
+
+	/**
+	 * Counts an exception thrown by a script.
+	 * 
+	 * @param entry
+	 * @param e
+	 */
+	public void error(Entry entry, Exception e) {
+		if (enabled)
+			entry.error(e);
+	}
+
+	/**
+	 * Returns the metrics of the given handler. The entry is created if it
+	 * doesn't exist. The entry remains valid until the metrics are
+	 * discarded, therefore it can be cached by the caller.
+	 * 
+	 * @param owner
+	 *            The event (or any other object) executing the script
+	 * @param handlerType
+	 * @return The metrics of the handler
+	 */
+	public Entry getEntry(Object owner, String handlerType) {
+		String name = nameOf(owner);
+		String key = name + "." + handlerType;
+		Entry e = entries.get(key);
+		if (e == null) {
+			e = new Entry(key, name, handlerType);
+			Entry old = entries.putIfAbsent(key, e);
+			if (old != null)
+				e = old;
+		}
+		return e;
+	}
+
+	/**
+	 * The values of every entry are copied before sorting, because the
+	 * scripts keep recording while the report is built.
+	 * 
+	 * @return All recorded entries sorted by the cumulative time (descending)
+	 */
+	public List<Report> getReport() {
+		List<Report> result = new ArrayList<Report>(entries.size());
+		for (Entry e : entries.values()) {
+			Report r = e.snapshot();
+			if (r.count > 0L || r.errors > 0L)
+				result.add(r);
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Returns a human readable report of the most expensive handlers.
+	 * 
+	 * @param maxLines
+	 *            The maximum number of handlers
+	 * @return One line per handler
+	 */
+	public String getReportText(int maxLines) {
+		return appendReport(new StringBuilder(), maxLines).toString();
+	}
+
+	/**
+	 * Appends the report text to the given builder
+	 * 
+	 * @param text
+	 * @param maxLines
+	 * @return the given builder
+	 * @see #getReportText(int)
+	 */
+	public StringBuilder appendReport(StringBuilder text, int maxLines) {
+		List<Report> report = getReport();
+		for (int i = 0, len = Math.min(maxLines, report.size()); i < len; i++) {
+			if (i > 0)
+				text.append('\n');
+			text.append(report.get(i));
+		}
+		return text;
+	}
+
+	/**
+	 * Removes all recorded metrics. The entries remain valid.
+	 */
+	public void clear() {
+		for (Entry e : entries.values())
+			e.reset();
+	}
+
+	private static String nameOf(Object owner) {
+		if (owner instanceof EventObject) {
+			EventObject ev = (EventObject) owner;
+			return ev.name == null ? "id=" + ev.id : ev.name;
+		}
+		if (owner instanceof PolygonObject) {
+			String name = ((PolygonObject) owner).getName();
+			if (name != null)
+				return name;
+		}
+		return String.valueOf(owner);
+	}
+
+	private static String excerpt(String script) {
+		if (script == null)
+			return "";
+		String excerpt = script.replaceAll("\\s+", " ").trim();
+		if (excerpt.length() > EXCERPT_LENGTH)
+			excerpt = excerpt.substring(0, EXCERPT_LENGTH) + "...";
+		return excerpt;
+	}
+
+	/**
+	 * The metrics of one script handler
+	 * 
+	 * @author Alexander Baumgartner
+	 */
+	public static class Entry {
+		private final String key;
+		private final String eventName;
+		private final String handlerType;
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final AtomicLong errors = new AtomicLong();
+		private volatile String lastError;
+		private volatile long lastNanos;
+
+		protected Entry(String key, String eventName, String handlerType) {
+			this.key = key;
+			this.eventName = eventName;
+			this.handlerType = handlerType;
+		}
+
+		void record(long nanos) {
+			lastNanos = nanos;
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+			long max = maxNanos.get();
+			while (nanos > max && !maxNanos.compareAndSet(max, nanos))
+				max = maxNanos.get();
+		}
+
+		void error(Exception e) {
+			errors.incrementAndGet();
+			lastError = String.valueOf(e);
+		}
+
+		void reset() {
+			count.set(0L);
+			totalNanos.set(0L);
+			maxNanos.set(0L);
+			errors.set(0L);
+			lastError = null;
+			lastNanos = 0L;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public String getEventName() {
+			return eventName;
+		}
+
+		public String getHandlerType() {
+			return handlerType;
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		public long getTotalNanos() {
+			return totalNanos.get();
+		}
+
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+
+		public long getAverageNanos() {
+			long c = count.get();
+			return c == 0L ? 0L : totalNanos.get() / c;
+		}
+
+		public long getErrors() {
+			return errors.get();
+		}
+
+		/**
+		 * @return The message of the last exception or null
+		 */
+		public String getLastError() {
+			return lastError;
+		}
+
+		/**
+		 * @return A copy of the current values
+		 */
+		public Report snapshot() {
+			return new Report(this);
+		}
+
+		@Override
+		public String toString() {
+			return snapshot().toString();
+		}
+	}
+
+	/**
+	 * The values of one {@link Entry} at the time the report has been built.
+	 * The values don't change anymore, therefore reports can be sorted.
+	 * 
+	 * @author Alexander Baumgartner
+	 */
+	public static class Report implements Comparable<Report> {
+		private final String key;
+		private final String eventName;
+		private final String handlerType;
+		private final long count;
+		private final long totalNanos;
+		private final long maxNanos;
+		private final long errors;
+		private final String lastError;
+
+		protected Report(Entry e) {
+			key = e.key;
+			eventName = e.eventName;
+			handlerType = e.handlerType;
+			count = e.getCount();
+			totalNanos = e.getTotalNanos();
+			maxNanos = e.getMaxNanos();
+			errors = e.getErrors();
+			lastError = e.getLastError();
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public String getEventName() {
+			return eventName;
+		}
+
+		public String getHandlerType() {
+			return handlerType;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+
+		public long getAverageNanos() {
+			return count == 0L ? 0L : totalNanos / count;
+		}
+
+		public long getErrors() {
+			return errors;
+		}
+
+		/**
+		 * @return The message of the last exception or null
+		 */
+		public String getLastError() {
+			return lastError;
+		}
+
+		public int compareTo(Report o) {
+			long t1 = totalNanos;
+			long t2 = o.totalNanos;
+			return t1 > t2 ? -1 : (t1 < t2 ? 1 : key.compareTo(o.key));
+		}
+
+		@Override
+		public String toString() {
+			return key + ": " + count + "x, total " + totalNanos / 1000000L
+					+ " ms, avg " + getAverageNanos() / 1000L + " us, max "
+					+ maxNanos / 1000L + " us, errors " + errors;
+		}
+	}
+}
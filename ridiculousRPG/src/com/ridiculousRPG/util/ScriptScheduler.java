@@ -0,0 +1,314 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.ridiculousRPG.GameBase;
+import com.ridiculousRPG.movement.Movable;
+import com.ridiculousRPG.movement.MovementHandler;
+
+/**
+ * Waits for conditions without busy waiting. All pending conditions are
+ * stepped once per frame by the main thread (see {@link #step(float)}).<br>
+ * There are two ways to wait:
+ * <ul>
+ * <li>{@link #await(Condition)} parks the calling thread until the condition
+ * is met. The thread doesn't consume any cpu time while waiting.</li>
+ * <li>{@link #schedule(Condition, Runnable)} returns immediately. The
+ * continuation is executed by the continuation thread after the condition is
+ * met. No thread is blocked while waiting, therefore hundreds of waiting
+ * scripts cost almost nothing.</li>
+ * </ul>
+ * A script example (JavaScript):<br>
+ * <code>$.serviceProvider.scriptScheduler.schedule(<br>
+ * &nbsp;&nbsp;ScriptScheduler.delay(2), new java.lang.Runnable({<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;run: function() { ... }<br>
+ * &nbsp;&nbsp;}));</code>
+ * 
+ * @author Alexander Baumgartner
+ */
+public class ScriptScheduler implements Disposable {
+	private final MpscQueue<Task> posted = new MpscQueue<Task>();
+	// only accessed by the main thread
+	private final Array<Task> pending = new Array<Task>(false, 16);
+	private final MpscQueue<Task> continuations = new MpscQueue<Task>();
+	private Thread continuationThread;
+	private volatile boolean disposed;
+
+	/**
+	 * Steps all pending conditions. Called by the main thread once per frame.
+	 * 
+	 * @param deltaTime
+	 */
+	public void step(float deltaTime) {
+		for (Task t = posted.poll(); t != null; t = posted.poll())
+			pending.add(t);
+		Array<Task> pending = this.pending;
+		for (int i = pending.size - 1; i >= 0; i--) {
+			Task t = pending.get(i);
+			boolean met;
+			try {
+				met = t.cancelled || t.condition.step(deltaTime);
+			} catch (Exception e) {
+				GameBase.$error("ScriptScheduler.step",
+						"Exception in condition " + t.condition, e);
+				met = true;
+			}
+			if (met) {
+				pending.removeIndex(i);
+				complete(t);
+			}
+		}
+	}
+
+	private void complete(Task t) {
+		t.done = true;
+		if (t.waiter != null) {
+			LockSupport.unpark(t.waiter);
+		} else if (t.continuation != null && !t.cancelled) {
+			continuations.offer(t);
+			LockSupport.unpark(obtainContinuationThread());
+		}
+	}
+
+	/**
+	 * Parks the calling thread until the condition is met.<br>
+	 * The main thread must not wait, because no frame would be rendered
+	 * meanwhile. If the main thread calls this method, the condition is
+	 * evaluated once and an error is logged if it isn't met. Use
+	 * {@link #schedule(Condition, Runnable)} instead.
+	 * 
+	 * @param condition
+	 * @return false if the scheduler has been disposed while waiting or the
+	 *         main thread called this method and the condition isn't met
+	 */
+	public boolean await(Condition condition) {
+		if (GameBase.$().isMainThread()) {
+			if (condition.step(0f))
+				return true;
+			GameBase.$error("ScriptScheduler.await",
+					"The main thread must not wait for " + condition
+							+ " - use schedule instead", null);
+			return false;
+		}
+		Task t = new Task(condition, null, Thread.currentThread());
+		posted.offer(t);
+		while (!t.done && !disposed)
+			LockSupport.park(this);
+		return t.done;
+	}
+
+	/**
+	 * Executes the continuation after the condition is met. This method
+	 * returns immediately.
+	 * 
+	 * @param condition
+	 * @param continuation
+	 *            Executed by the continuation thread - may be null
+	 * @return the task, which can be used to cancel the waiting
+	 */
+	public Task schedule(Condition condition, Runnable continuation) {
+		Task t = new Task(condition, continuation, null);
+		posted.offer(t);
+		return t;
+	}
+
+	/**
+	 * Drives the movement handler without event (e.g. a
+	 * {@link com.ridiculousRPG.movement.misc.MoveFadeColorAdapter} which tints
+	 * the entire game) and waits until it has finished.
+	 * 
+	 * @param handler
+	 * @return false if the scheduler has been disposed while waiting
+	 */
+	public boolean drive(MovementHandler handler) {
+		return await(driven(handler, null));
+	}
+
+	/**
+	 * Waits the given time without blocking the main thread.
+	 * 
+	 * @param seconds
+	 * @return false if the scheduler has been disposed while waiting
+	 */
+	public boolean sleep(float seconds) {
+		return await(delay(seconds));
+	}
+
+	/**
+	 * @return The number of pending tasks (only exact for the main thread)
+	 */
+	public int getPendingCount() {
+		return pending.size;
+	}
+
+	/**
+	 * Cancels all pending tasks and wakes up all waiting threads
+	 */
+	public void dispose() {
+		disposed = true;
+		for (Task t = posted.poll(); t != null; t = posted.poll())
+			pending.add(t);
+		for (int i = pending.size - 1; i >= 0; i--) {
+			Task t = pending.get(i);
+			t.cancelled = true;
+			if (t.waiter != null)
+				LockSupport.unpark(t.waiter);
+		}
+		pending.clear();
+		Thread c = continuationThread;
+		if (c != null)
+			LockSupport.unpark(c);
+	}
+
+	private synchronized Thread obtainContinuationThread() {
+		if (continuationThread == null) {
+			continuationThread = new Thread("ScriptContinuation") {
+				@Override
+				public void run() {
+					GameBase.$().registerGlContextThread();
+					while (!disposed) {
+						Task t = continuations.poll();
+						if (t == null) {
+							LockSupport.park(this);
+						} else {
+							try {
+								t.continuation.run();
+							} catch (Exception e) {
+								GameBase.$error("ScriptScheduler.continuation",
+										"Exception in continuation "
+												+ t.continuation, e);
+							}
+						}
+					}
+				}
+			};
+			continuationThread.setDaemon(true);
+			continuationThread.start();
+		}
+		return continuationThread;
+	}
+
+	/**
+	 * The condition is met after the movement handler has finished. The
+	 * handler is driven elsewhere (e.g. by an event).
+	 * 
+	 * @param handler
+	 * @return a new condition
+	 */
+	public static Condition finished(final MovementHandler handler) {
+		return new Condition() {
+			@Override
+			public boolean step(float deltaTime) {
+				return handler.finished;
+			}
+		};
+	}
+
+	/**
+	 * The condition drives the movement handler once per frame and is met
+	 * after the handler has finished.
+	 * 
+	 * @param handler
+	 * @param movable
+	 *            may be null if the handler doesn't need a movable
+	 * @return a new condition
+	 */
+	public static Condition driven(final MovementHandler handler,
+			final Movable movable) {
+		return new Condition() {
+			@Override
+			public boolean step(float deltaTime) {
+				if (!handler.finished)
+					handler.tryMove(movable, deltaTime, null);
+				return handler.finished;
+			}
+		};
+	}
+
+	/**
+	 * The condition is met after the given time
+	 * 
+	 * @param seconds
+	 * @return a new condition
+	 */
+	public static Condition delay(final float seconds) {
+		return new Condition() {
+			private float elapsed;
+
+			@Override
+			public boolean step(float deltaTime) {
+				elapsed += deltaTime;
+				return elapsed >= seconds;
+			}
+		};
+	}
+
+	/**
+	 * A condition which is stepped by the main thread once per frame.
+	 * 
+	 * @author Alexander Baumgartner
+	 */
+	public interface Condition {
+		/**
+		 * Called by the main thread once per frame until the condition is met.
+		 * 
+		 * @param deltaTime
+		 *            time elapsed since the last frame (in seconds)
+		 * @return true if the condition is met
+		 */
+		public boolean step(float deltaTime);
+	}
+
+	/**
+	 * A pending wait
+	 * 
+	 * @author Alexander Baumgartner
+	 */
+	public static class Task {
+		private final Condition condition;
+		private final Runnable continuation;
+		private final Thread waiter;
+		private volatile boolean done;
+		private volatile boolean cancelled;
+
+		protected Task(Condition condition, Runnable continuation,
+				Thread waiter) {
+			this.condition = condition;
+			this.continuation = continuation;
+			this.waiter = waiter;
+		}
+
+		/**
+		 * @return true if the condition is met or the task has been cancelled
+		 */
+		public boolean isDone() {
+			return done;
+		}
+
+		/**
+		 * The continuation will not be executed. It's removed with the next
+		 * step.
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+	}
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.badlogic.gdx.utils.Array;
+import com.ridiculousRPG.service.GameService;
+
+/**
+ * Stores the services by name and by type.<br>
+ * Every name gets a stable integer handle. Looking up a service by its handle
+ * is a simple array access. The handle stays valid if the service is replaced
+ * or removed (the lookup returns null while no service is stored under the
+ * name).<br>
+ * The list of all services of a type is built when it's requested the first
+ * time and updated whenever a service is put or removed. Requesting the list
+ * again doesn't allocate anything.<br>
+ * The lists are copied on write. Therefore every thread can iterate them,
+ * while the main thread puts or removes services.<br>
+ * Putting and removing services is synchronized, looking them up is lock
+ * free.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class ServiceRegistry {
+	private final ConcurrentHashMap<String, Integer> handles = new ConcurrentHashMap<String, Integer>();
+	private volatile GameService[] slots = new GameService[16];
+	private volatile String[] names = new String[16];
+	private int slotCount;
+	// all services in the order they have been added (copied on write)
+	private volatile Array<GameService> services = new Array<GameService>();
+	private final HashMap<Class<?>, ServiceList<?>> types = new HashMap<Class<?>, ServiceList<?>>();
+
+	/**
+	 * Returns the handle of the given name. A new handle is assigned if the
+	 * name is used the first time (also if no service is stored under this
+	 * name).
+	 * 
+	 * @param name
+	 * @return the handle
+	 */
+	public int handle(String name) {
+		Integer h = handles.get(name);
+		return h == null ? newHandle(name) : h.intValue();
+	}
+
+	private synchronized int newHandle(String name) {
+		Integer h = handles.get(name);
+		if (h != null)
+			return h.intValue();
+		if (slotCount == slots.length) {
+			GameService[] s = new GameService[slotCount * 2];
+			String[] n = new String[slotCount * 2];
+			System.arraycopy(slots, 0, s, 0, slotCount);
+			System.arraycopy(names, 0, n, 0, slotCount);
+			slots = s;
+			names = n;
+		}
+		names[slotCount] = name;
+		handles.put(name, slotCount);
+		return slotCount++;
+	}
+
+	/**
+	 * @param handle
+	 * @return the service or null if no service is stored under the name of
+	 *         the handle
+	 * @see #handle(String)
+	 */
+	public GameService get(int handle) {
+		GameService[] s = slots;
+		return handle < 0 || handle >= s.length ? null : s[handle];
+	}
+
+	/**
+	 * @param name
+	 * @return the service or null if no service is stored under this name
+	 */
+	public GameService get(String name) {
+		Integer h = handles.get(name);
+		return h == null ? null : slots[h.intValue()];
+	}
+
+	/**
+	 * @param handle
+	 * @return the name of the handle
+	 */
+	public String getName(int handle) {
+		return names[handle];
+	}
+
+	/**
+	 * @return the number of handles (all handles are less than this number)
+	 */
+	public int getHandleCount() {
+		return slotCount;
+	}
+
+	/**
+	 * Stores the service under the given name. A replaced service keeps its
+	 * position in the type lists.
+	 * 
+	 * @param name
+	 * @param service
+	 * @return the old service or null
+	 */
+	public synchronized GameService put(String name, GameService service) {
+		int h = handle(name);
+		GameService old = slots[h];
+		slots[h] = service;
+		Array<GameService> s = new Array<GameService>(services);
+		if (old == null) {
+			s.add(service);
+		} else {
+			s.set(s.indexOf(old, true), service);
+		}
+		services = s;
+		for (ServiceList<?> list : types.values())
+			list.replace(old, service);
+		return old;
+	}
+
+	/**
+	 * @param name
+	 * @return the removed service or null
+	 */
+	public synchronized GameService remove(String name) {
+		Integer h = handles.get(name);
+		if (h == null)
+			return null;
+		GameService old = slots[h.intValue()];
+		if (old == null)
+			return null;
+		slots[h.intValue()] = null;
+		Array<GameService> s = new Array<GameService>(services);
+		s.removeValue(old, true);
+		services = s;
+		for (ServiceList<?> list : types.values())
+			list.replace(old, null);
+		return old;
+	}
+
+	/**
+	 * Removes all services. The handles stay valid.
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < slotCount; i++)
+			slots[i] = null;
+		services = new Array<GameService>();
+		for (ServiceList<?> list : types.values())
+			list.clear();
+	}
+
+	/**
+	 * The returned array is never modified by the registry, putting or
+	 * removing a service replaces it.
+	 * 
+	 * @return all services in the order they have been added (must not be
+	 *         modified)
+	 */
+	public Array<GameService> getServices() {
+		return services;
+	}
+
+	/**
+	 * Returns the cached list of all services which are from the specified
+	 * type or extend from the specified type.
+	 * 
+	 * @param type
+	 * @return the list (always the same instance for the same type)
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <T> ServiceList<T> list(Class<T> type) {
+		ServiceList<T> list = (ServiceList<T>) types.get(type);
+		if (list == null) {
+			list = new ServiceList<T>(type);
+			Array<GameService> s = services;
+			for (int i = 0; i < s.size; i++)
+				list.replace(null, s.get(i));
+			types.put(type, list);
+		}
+		return list;
+	}
+
+	/**
+	 * A read only list of all services of one type. The list is updated
+	 * whenever a service is put or removed.<br>
+	 * Threads other than the main thread should iterate a {@link #snapshot()}
+	 * because the size may change between {@link #size()} and
+	 * {@link #get(int)}.
+	 * 
+	 * @author Alexander Baumgartner
+	 */
+	public static class ServiceList<T> {
+		private final Class<T> type;
+		// copied on write
+		private volatile Array<T> items = new Array<T>();
+
+		protected ServiceList(Class<T> type) {
+			this.type = type;
+		}
+
+		private void replace(GameService old, GameService service) {
+			int index = type.isInstance(old) ? items.indexOf(type.cast(old),
+					true) : -1;
+			if (index > -1) {
+				Array<T> a = new Array<T>(items);
+				if (type.isInstance(service))
+					a.set(index, type.cast(service));
+				else
+					a.removeIndex(index);
+				items = a;
+			} else if (type.isInstance(service)) {
+				Array<T> a = new Array<T>(items);
+				a.add(type.cast(service));
+				items = a;
+			}
+		}
+
+		private void clear() {
+			items = new Array<T>();
+		}
+
+		public int size() {
+			return items.size;
+		}
+
+		public boolean isEmpty() {
+			return items.size == 0;
+		}
+
+		public T get(int index) {
+			return items.get(index);
+		}
+
+		public boolean contains(T service) {
+			return items.contains(service, true);
+		}
+
+		/**
+		 * @return the type of the services in this list
+		 */
+		public Class<T> getType() {
+			return type;
+		}
+
+		/**
+		 * The returned array is never modified by the registry, putting or
+		 * removing a service replaces it. Doesn't allocate anything.
+		 * 
+		 * @return the current services of this list (must not be modified)
+		 */
+		public Array<T> snapshot() {
+			return items;
+		}
+
+		/**
+		 * @return a new array with all services of this list
+		 */
+		public Array<T> toArray() {
+			return new Array<T>(items);
+		}
+	}
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import java.util.IdentityHashMap;
+
+import com.badlogic.gdx.utils.Array;
+import com.ridiculousRPG.service.Computable;
+import com.ridiculousRPG.service.DoubleBuffered;
+import com.ridiculousRPG.service.Drawable;
+import com.ridiculousRPG.service.GameService;
+import com.ridiculousRPG.service.Scheduled;
+
+/**
+ * Keeps the lists of the services which have to be computed and drawn in the
+ * current state of the game.<br>
+ * Frozen services (if the world is frozen), hidden services (if the screen is
+ * cleared) and on demand services are not contained in these lists. The
+ * lists are only rebuilt after a service has been added or removed, or the
+ * attention or freeze state has changed (see {@link #invalidate()}). All
+ * other frames simply iterate the lists.<br>
+ * The services which are computed by the simulation thread are kept in their
+ * own list (see {@link DoubleBuffered}).
+ * 
+ * @author Alexander Baumgartner
+ */
+public class ServiceScheduler {
+	private final Array<Computable> computables;
+	private final Array<Drawable> drawables;
+	private final State state;
+	// tick state of every known computable (also of frozen ones)
+	private IdentityHashMap<Computable, Tick> ticks = new IdentityHashMap<Computable, Tick>();
+	private volatile boolean dirty = true;
+
+	// the schedule (only accessed by the main thread)
+	private final Array<Tick> mainTicks = new Array<Tick>();
+	private Array<Tick> simulationTicks = new Array<Tick>();
+	private final Array<Drawable> drawOrder = new Array<Drawable>();
+
+	/**
+	 * @param computables
+	 *            All computables in the order of their computation
+	 * @param drawables
+	 *            All drawables in the reverse order of their drawing
+	 * @param state
+	 *            The state of the game, which is read with every rebuild
+	 */
+	public ServiceScheduler(Array<Computable> computables,
+			Array<Drawable> drawables, State state) {
+		this.computables = computables;
+		this.drawables = drawables;
+		this.state = state;
+	}
+
+	/**
+	 * The lists are rebuilt with the next {@link #update} call. May be called
+	 * by any thread.
+	 */
+	public void invalidate() {
+		dirty = true;
+	}
+
+	/**
+	 * Rebuilds the lists if they have been invalidated. Called by the main
+	 * thread before computing or drawing the services.<br>
+	 * The state is read after the invalidation has been consumed. Therefore
+	 * a state change which happens during the rebuild invalidates the lists
+	 * again and is never lost.
+	 * 
+	 * @return true if the lists have been rebuilt
+	 */
+	public boolean update() {
+		if (!dirty)
+			return false;
+		dirty = false;
+		rebuild(state.isFrozen(), state.isScreenCleared(), state
+				.getAttention(), state.isPipelined());
+		return true;
+	}
+
+	private synchronized void rebuild(boolean freeze, boolean clearTheScreen,
+			GameService holdsAttention, boolean pipelined) {
+		IdentityHashMap<Computable, Tick> old = ticks;
+		ticks = new IdentityHashMap<Computable, Tick>();
+		// the simulation thread may still iterate the old list
+		Array<Tick> simulation = new Array<Tick>();
+		mainTicks.clear();
+		GameService holder = holdsAttention;
+		for (int i = 0, len = computables.size; i < len; i++) {
+			Computable c = computables.get(i);
+			Tick t = obtainTick(c, old);
+			if (c == holder) {
+				holder = null;
+			} else if (freeze && !((GameService) c).essential()) {
+				continue;
+			}
+			schedule(t, simulation, pipelined);
+		}
+		// a foreign service which holds the attention is computed last
+		if (holder instanceof Computable)
+			schedule(obtainTick((Computable) holder, old), simulation,
+					pipelined);
+		simulationTicks = simulation;
+
+		drawOrder.clear();
+		holder = holdsAttention;
+		for (int i = drawables.size - 1; i > -1; i--) {
+			Drawable d = drawables.get(i);
+			if (d == holder) {
+				holder = null;
+				drawOrder.add(d);
+			} else if (!clearTheScreen || ((GameService) d).essential()) {
+				drawOrder.add(d);
+			}
+		}
+		// a foreign service which holds the attention is drawn on top
+		if (holder instanceof Drawable)
+			drawOrder.add((Drawable) holder);
+	}
+
+	private Tick obtainTick(Computable c, IdentityHashMap<Computable, Tick> old) {
+		Tick t = old.get(c);
+		if (t == null)
+			t = new Tick(c);
+		t.interval = c instanceof Scheduled ? ((Scheduled) c).tickInterval()
+				: Scheduled.EVERY_FRAME;
+		ticks.put(c, t);
+		return t;
+	}
+
+	private void schedule(Tick t, Array<Tick> simulation, boolean pipelined) {
+		if (pipelined && t.service instanceof DoubleBuffered)
+			simulation.add(t);
+		else
+			mainTicks.add(t);
+	}
+
+	/**
+	 * Requests the computation of the service within the next frame. May be
+	 * called by any thread. A frozen service is computed after the world has
+	 * been unfrozen.
+	 * 
+	 * @param service
+	 * @return false if the service is unknown
+	 */
+	public synchronized boolean request(Computable service) {
+		Tick t = ticks.get(service);
+		if (t == null)
+			return false;
+		t.requested = true;
+		return true;
+	}
+
+	/**
+	 * @return the computables of the main thread in the order of their
+	 *         computation
+	 */
+	public Array<Tick> getMainTicks() {
+		return mainTicks;
+	}
+
+	/**
+	 * A new list is returned after every rebuild, therefore the simulation
+	 * thread can iterate it while the main thread rebuilds the schedule.
+	 * 
+	 * @return the computables of the simulation thread in the order of their
+	 *         computation
+	 */
+	public Array<Tick> getSimulationTicks() {
+		return simulationTicks;
+	}
+
+	/**
+	 * @return the drawables in the order of their drawing
+	 */
+	public Array<Drawable> getDrawOrder() {
+		return drawOrder;
+	}
+
+	/**
+	 * The state of the game which determines the schedule. Every change of
+	 * the state has to be followed by {@link ServiceScheduler#invalidate()}.
+	 * 
+	 * @author Alexander Baumgartner
+	 */
+	public static interface State {
+		/**
+		 * @return true if only essential services (and the one which holds
+		 *         the attention) are computed
+		 */
+		public boolean isFrozen();
+
+		/**
+		 * @return true if only essential services (and the one which holds
+		 *         the attention) are drawn
+		 */
+		public boolean isScreenCleared();
+
+		/**
+		 * @return the service which holds the attention or null
+		 */
+		public GameService getAttention();
+
+		/**
+		 * @return true if the {@link DoubleBuffered} services are computed by
+		 *         the simulation thread
+		 */
+		public boolean isPipelined();
+	}
+
+	/**
+	 * The tick state of a scheduled computable. Only accessed by the thread
+	 * which computes the service (except {@link #requested}).
+	 * 
+	 * @author Alexander Baumgartner
+	 */
+	public static class Tick {
+		private final Computable service;
+		private int interval;
+		private int frames;
+		private float elapsed;
+		private boolean actionKeyDown;
+		private volatile boolean requested;
+
+		protected Tick(Computable service) {
+			this.service = service;
+		}
+
+		/**
+		 * Advances the tick by one frame.
+		 * 
+		 * @param deltaTime
+		 * @param actionKeyDown
+		 * @return true if the service has to be computed within this frame
+		 */
+		public boolean advance(float deltaTime, boolean actionKeyDown) {
+			elapsed += deltaTime;
+			this.actionKeyDown |= actionKeyDown;
+			if (interval == Scheduled.ON_DEMAND) {
+				if (!requested)
+					return false;
+				requested = false;
+				return true;
+			}
+			return ++frames >= interval;
+		}
+
+		/**
+		 * Resets the accumulated time after the service has been computed.
+		 */
+		public void consume() {
+			frames = 0;
+			elapsed = 0f;
+			actionKeyDown = false;
+		}
+
+		public Computable getService() {
+			return service;
+		}
+
+		/**
+		 * @return the time elapsed since the last computation (in seconds)
+		 */
+		public float getElapsed() {
+			return elapsed;
+		}
+
+		/**
+		 * @return true if the action key has been pressed in any frame since
+		 *         the last computation
+		 */
+		public boolean isActionKeyDown() {
+			return actionKeyDown;
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * A uniform grid over a rectangular area which finds all objects overlapping
+ * a given rectangle without testing every object.<br>
+ * Every object is stored in all cells its bounds overlap. Objects outside the
+ * area are stored in the border cells. Updating the bounds of an object only
+ * relinks it if the range of overlapped cells has changed.<br>
+ * This class is not thread safe.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class SpatialGrid<T> {
+	private final float cellWidth, cellHeight;
+	private final int columns, rows;
+	private final Array<Entry<T>>[] cells;
+	private final Array<Entry<T>> entries = new Array<Entry<T>>();
+	private int queryStamp;
+
+	/**
+	 * @param width
+	 *            The width of the area
+	 * @param height
+	 *            The height of the area
+	 * @param cellWidth
+	 * @param cellHeight
+	 */
+	@SuppressWarnings("unchecked")
+	public SpatialGrid(float width, float height, float cellWidth,
+			float cellHeight) {
+		this.cellWidth = cellWidth;
+		this.cellHeight = cellHeight;
+		this.columns = Math.max(1, (int) Math.ceil(width / cellWidth));
+		this.rows = Math.max(1, (int) Math.ceil(height / cellHeight));
+		this.cells = new Array[columns * rows];
+	}
+
+	/**
+	 * Adds an object with the given bounds.
+	 * 
+	 * @param value
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return the entry which is used to update or remove the object
+	 */
+	public Entry<T> insert(T value, float x, float y, float width,
+			float height) {
+		Entry<T> e = new Entry<T>(value, entries.size);
+		entries.add(e);
+		setRange(e, x, y, width, height);
+		link(e);
+		return e;
+	}
+
+	/**
+	 * Updates the bounds of the object. Nothing is done if the object stays
+	 * within the same cells.
+	 * 
+	 * @param e
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 */
+	public void update(Entry<T> e, float x, float y, float width,
+			float height) {
+		int col1 = column(x), row1 = row(y);
+		int col2 = column(x + width), row2 = row(y + height);
+		if (col1 != e.col1 || row1 != e.row1 || col2 != e.col2
+				|| row2 != e.row2) {
+			unlink(e);
+			e.col1 = col1;
+			e.row1 = row1;
+			e.col2 = col2;
+			e.row2 = row2;
+			link(e);
+		}
+	}
+
+	/**
+	 * Removes all objects
+	 */
+	public void clear() {
+		for (int i = 0; i < cells.length; i++)
+			if (cells[i] != null)
+				cells[i].clear();
+		entries.clear();
+	}
+
+	/**
+	 * @return all entries in the order they have been inserted
+	 */
+	public Array<Entry<T>> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Adds all objects which are stored in the cells overlapping the given
+	 * rectangle to the result. Every object is added only once. The result
+	 * may contain objects which don't overlap the rectangle (but are near by).
+	 * 
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param result
+	 */
+	public void query(float x1, float y1, float x2, float y2,
+			Array<Entry<T>> result) {
+		int stamp = ++queryStamp;
+		int col1 = column(x1), col2 = column(x2);
+		int row2 = row(y2);
+		for (int row = row(y1); row <= row2; row++) {
+			for (int col = col1; col <= col2; col++) {
+				Array<Entry<T>> cell = cells[row * columns + col];
+				if (cell == null)
+					continue;
+				for (int i = 0, len = cell.size; i < len; i++) {
+					Entry<T> e = cell.get(i);
+					if (e.stamp != stamp) {
+						e.stamp = stamp;
+						result.add(e);
+					}
+				}
+			}
+		}
+	}
+
+	private void setRange(Entry<T> e, float x, float y, float width,
+			float height) {
+		e.col1 = column(x);
+		e.row1 = row(y);
+		e.col2 = column(x + width);
+		e.row2 = row(y + height);
+	}
+
+	private void link(Entry<T> e) {
+		for (int row = e.row1; row <= e.row2; row++) {
+			for (int col = e.col1; col <= e.col2; col++) {
+				int i = row * columns + col;
+				if (cells[i] == null)
+					cells[i] = new Array<Entry<T>>(false, 4);
+				cells[i].add(e);
+			}
+		}
+	}
+
+	private void unlink(Entry<T> e) {
+		for (int row = e.row1; row <= e.row2; row++)
+			for (int col = e.col1; col <= e.col2; col++)
+				cells[row * columns + col].removeValue(e, true);
+	}
+
+	private int column(float x) {
+		int col = (int) (x / cellWidth);
+		return col < 0 ? 0 : col >= columns ? columns - 1 : col;
+	}
+
+	private int row(float y) {
+		int row = (int) (y / cellHeight);
+		return row < 0 ? 0 : row >= rows ? rows - 1 : row;
+	}
+
+	/**
+	 * An object stored in the grid
+	 * 
+	 * @author Alexander Baumgartner
+	 */
+	public static class Entry<T> {
+		private final T value;
+		private final int sequence;
+		private int col1, row1, col2, row2;
+		private int stamp;
+
+		protected Entry(T value, int sequence) {
+			this.value = value;
+			this.sequence = sequence;
+		}
+
+		public T getValue() {
+			return value;
+		}
+
+		/**
+		 * @return the number of entries inserted before this one
+		 */
+		public int getSequence() {
+			return sequence;
+		}
+	}
+}
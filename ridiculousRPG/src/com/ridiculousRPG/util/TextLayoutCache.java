@@ -0,0 +1,186 @@
+/*
+ * Copyright 2011 Alexander Baumgartner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ridiculousRPG.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Caches the glyph layouts of texts which are displayed again and again (e.g.
+ * debug overlays which are added every frame).<br>
+ * The layouts are cached by font, text, color and wrap width. A layout which
+ * is obtained again in the next frame is reused without computing the glyphs
+ * again, only its position is changed. Layouts which haven't been obtained
+ * within one frame are returned to the pool by {@link #endFrame()}.<br>
+ * Looking up a text doesn't allocate memory, therefore the text may be a
+ * reused {@link StringBuilder}.<br>
+ * Must only be used by the main thread.
+ * 
+ * @author Alexander Baumgartner
+ */
+public class TextLayoutCache {
+	private final BitmapFontCachePool pool;
+	private final HashMap<Key, Entry> entries = new HashMap<Key, Entry>();
+	private final Key probe = new Key();
+	private int frame;
+
+	/**
+	 * @param pool
+	 *            The pool for the layouts
+	 */
+	public TextLayoutCache(BitmapFontCachePool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Returns the layout of the given text. The layout is only valid until
+	 * the next frame has ended (see {@link #endFrame()}) and must not be freed
+	 * by the caller. If the same text is obtained more than once per frame,
+	 * different layouts are returned.
+	 * 
+	 * @param font
+	 * @param text
+	 * @param color
+	 *            The colors float bits
+	 * @param wrapWidth
+	 *            If wrapWidth > 0 then the text will be wrapped at the
+	 *            specified bound.
+	 * @return the layout at the position 0/0 or at the position it had in the
+	 *         last frame
+	 */
+	public BitmapFontCache obtain(BitmapFont font, CharSequence text,
+			float color, float wrapWidth) {
+		probe.set(font, text, color, wrapWidth);
+		Entry e = entries.get(probe);
+		if (e == null) {
+			e = new Entry();
+			entries.put(new Key().set(font, text.toString(), color, wrapWidth),
+					e);
+		}
+		if (e.frame != frame) {
+			e.frame = frame;
+			e.used = 0;
+		}
+		BitmapFontCache bfc;
+		if (e.used < e.layouts.size) {
+			bfc = e.layouts.get(e.used);
+		} else {
+			bfc = pool.obtain(font);
+			bfc.setColor(color);
+			if (wrapWidth > 0f)
+				bfc.setWrappedText(text, 0f, 0f, wrapWidth);
+			else
+				bfc.setMultiLineText(text, 0f, 0f);
+			e.layouts.add(bfc);
+		}
+		e.used++;
+		probe.text = null;
+		return bfc;
+	}
+
+	/**
+	 * Returns all layouts which haven't been obtained since the last call to
+	 * the pool and starts the next frame.
+	 */
+	public void endFrame() {
+		for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+			Entry e = it.next();
+			int keep = e.frame == frame ? e.used : 0;
+			while (e.layouts.size > keep)
+				pool.free(e.layouts.pop());
+			if (keep == 0)
+				it.remove();
+		}
+		frame++;
+	}
+
+	/**
+	 * @return The number of cached texts
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Removes all layouts without returning them to the pool
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	private static class Entry {
+		private final Array<BitmapFontCache> layouts = new Array<BitmapFontCache>(
+				false, 1);
+		private int frame;
+		private int used;
+	}
+
+	private static class Key {
+		private BitmapFont font;
+		private CharSequence text;
+		private float color;
+		private float wrapWidth;
+		private int hash;
+
+		private Key set(BitmapFont font, CharSequence text, float color,
+				float wrapWidth) {
+			this.font = font;
+			this.text = text;
+			this.color = color;
+			this.wrapWidth = wrapWidth;
+			int h = System.identityHashCode(font);
+			h = 31 * h + Float.floatToIntBits(color);
+			h = 31 * h + Float.floatToIntBits(wrapWidth);
+			for (int i = 0, len = text.length(); i < len; i++)
+				h = 31 * h + text.charAt(i);
+			this.hash = h;
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key o = (Key) obj;
+			if (hash != o.hash || font != o.font
+					|| Float.floatToIntBits(color) != Float
+							.floatToIntBits(o.color)
+					|| Float.floatToIntBits(wrapWidth) != Float
+							.floatToIntBits(o.wrapWidth))
+				return false;
+			CharSequence t1 = text, t2 = o.text;
+			int len = t1.length();
+			if (len != t2.length())
+				return false;
+			for (int i = 0; i < len; i++)
+				if (t1.charAt(i) != t2.charAt(i))
+					return false;
+			return true;
+		}
+	}
+}
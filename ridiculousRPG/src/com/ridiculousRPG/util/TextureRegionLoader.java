@@ -16,7 +16,8 @@
 
 package com.ridiculousRPG.util;
 
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
@@ -43,9 +44,11 @@ public final class TextureRegionLoader {
 	private TextureRegionLoader() {
 	}// static container
 
-	static HashMap<String, TextureCache> textureCache = new HashMap<String, TextureCache>(
+	// concurrent maps, the hot reload iterates the cache while textures are
+	// loaded by other threads
+	static ConcurrentHashMap<String, TextureCache> textureCache = new ConcurrentHashMap<String, TextureCache>(
 			128);
-	static HashMap<TextureCache, String> textureReverseCache = new HashMap<TextureCache, String>(
+	static ConcurrentHashMap<TextureCache, String> textureReverseCache = new ConcurrentHashMap<TextureCache, String>(
 			128);
 	static Pool<TextureRegionRef> textureRegionPool = new Pool<TextureRegionRef>(
 			512, 8192) {
@@ -167,6 +170,42 @@ public final class TextureRegionLoader {
 		return tCache.obtainRegion(0, 0, width, height);
 	}
 
+	/**
+	 * Reloads a cached texture from its file in place. All
+	 * {@link TextureRegionRef}s obtained from this texture show the new
+	 * picture immediately. The new picture must fit into the texture (the
+	 * size including the padding). Must be called by a thread with GL
+	 * context.
+	 * 
+	 * @param path
+	 *            The path of the modified picture
+	 * @return false if the texture isn't cached or the new picture is too
+	 *         large
+	 */
+	public static boolean reload(String path) {
+		TextureCache tCache = textureCache.get(path);
+		if (tCache == null)
+			return false;
+		Pixmap pm = new Pixmap(Gdx.files.internal(path));
+		if (pm.getWidth() > tCache.getWidth()
+				|| pm.getHeight() > tCache.getHeight()) {
+			pm.dispose();
+			return false;
+		}
+		tCache.drawPixmap(pm, true);
+		return true;
+	}
+
+	/**
+	 * Adds the paths of all cached textures to the given collection. May be
+	 * called while other threads load textures.
+	 * 
+	 * @param paths
+	 */
+	public static void collectCachedPaths(Collection<String> paths) {
+		paths.addAll(textureCache.keySet());
+	}
+
 	private static TextureCache obtainCache(FileHandle filePath) {
 		String fileName = filePath.path();
 		TextureCache tCache = textureCache.get(fileName);
@@ -352,7 +391,10 @@ public final class TextureRegionLoader {
 		public void dispose() {
 			count--;
 			if (count == 0) {
-				textureCache.remove(textureReverseCache.remove(this));
+				String path = textureReverseCache.remove(this);
+				// empty regions aren't cached
+				if (path != null)
+					textureCache.remove(path);
 				if (GameBase.$().isGlContextThread()) {
 					super.dispose();
 					if (pixmap != null)
@@ -36,13 +36,8 @@ function mapTransition(mapPath, playerX, playerY, stopWeatherEffect, speed) {
 	}
 }
 function fadeColor(fadeAdapter) {
-	var nanoTimeOld = System.nanoTime();
-	while (!fadeAdapter.finished) {
-		Thread.yield(); // let other threads do their work
-		var nanoTimeNew = System.nanoTime();
-		fadeAdapter.tryMove(null, (nanoTimeNew - nanoTimeOld) * 1e-9, null);
-		nanoTimeOld = nanoTimeNew;
-	}
+	// the fade is driven by the main thread, this thread waits parked
+	$.serviceProvider.scriptScheduler.drive(fadeAdapter);
 }
 function setPlayerPosition(playerX, playerY, trackService, movePlayer) {
 	var globEv = $.globalEvents.values().toArray();
@@ -14,8 +14,9 @@
 scriptFactory = Packages.com.ridiculousRPG.GameBase.$scriptFactory();
 scriptFactory.evalAllGlobalScripts("data/script/global", false);
 
-//It's highly recommended to comment this line out for production release.
-new ridiculousRPG.map.OnChangeMapPacker("work/map", "data/map").packOnChange();
+//It's highly recommended to comment these lines out for production release.
+var mapPacker = new ridiculousRPG.map.OnChangeMapPacker("work/map", "data/map");
+mapPacker.packOnChange();
 //Set background from pitch black to dark gray
 $.backgroundColor = new gdx.graphics.Color(0x16/0xFF, 0x16/0xFF, 0x16/0xFF, 1);
 
@@ -27,6 +28,8 @@ $.serviceProvider.putService("cameraTrack", new ridiculousRPG.camera.CameraTrack
 $.serviceProvider.putService("toggleFullscreen", new ridiculousRPG.camera.CameraToggleFullscreenService());
 //Allow toggling between debug and normal mode (Alt+D)
 $.serviceProvider.putService("toggleDebug", new ridiculousRPG.misc.ToggleDebugModeService());
+//Reload modified maps, scripts and pictures in debug mode
+$.serviceProvider.putService("hotReload", new ridiculousRPG.misc.HotReloadService(mapPacker));
 //Add the DisplayFPSService to the service provider
 $.serviceProvider.putService("displayFPS", new ridiculousRPG.ui.DisplayFPSService());
 //Add the StandardMenuService to the service provider